@@ -0,0 +1,37 @@
+package com.guardianMed.patientRecordManagement.system.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class MongoConfig {
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoClientSettingsCustomizer(
+            @Value("${sprngsec.app.mongoServerSelectionTimeoutMillis:30000}") long serverSelectionTimeoutMillis,
+            @Value("${sprngsec.app.unindexedQueryWarnings:true}") boolean unindexedQueryWarnings) {
+        return builder -> {
+            builder.applyToClusterSettings(cluster -> cluster.serverSelectionTimeout(serverSelectionTimeoutMillis, TimeUnit.MILLISECONDS));
+            if (unindexedQueryWarnings) {
+                builder.addCommandListener(new UnindexedQueryListener());
+            }
+        };
+    }
+
+    /**
+     * Multi-document transactions for billing. Off by default because a standalone mongod rejects them;
+     * enable it when the database runs as a replica set.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "sprngsec.app.billingTransactions", havingValue = "true")
+    public MongoTransactionManager transactionManager(MongoDatabaseFactory databaseFactory) {
+        return new MongoTransactionManager(databaseFactory);
+    }
+}
@@ -0,0 +1,97 @@
+package com.guardianMed.patientRecordManagement.system.config;
+
+import com.guardianMed.patientRecordManagement.system.services.IndexCatalog;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Logs a warning, once per query shape, for find, count and aggregate commands whose filter and sort are not
+ * covered by an index declared in IndexCatalog. Filters it cannot reason about, such as $or or $expr, are skipped.
+ */
+public class UnindexedQueryListener implements CommandListener {
+    private static final Logger logger = LoggerFactory.getLogger(UnindexedQueryListener.class);
+
+    private final Set<String> reported = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        BsonDocument command = event.getCommand();
+        String collection;
+        BsonDocument filter;
+        BsonDocument sort = null;
+        switch (event.getCommandName()) {
+            case "find" -> {
+                collection = command.getString("find").getValue();
+                filter = command.getDocument("filter", new BsonDocument());
+                sort = command.getDocument("sort", null);
+            }
+            case "count" -> {
+                collection = command.getString("count").getValue();
+                filter = command.getDocument("query", new BsonDocument());
+            }
+            case "aggregate" -> {
+                if (!command.isString("aggregate") || command.getArray("pipeline").isEmpty()) {
+                    return;
+                }
+                collection = command.getString("aggregate").getValue();
+                BsonDocument firstStage = command.getArray("pipeline").get(0).asDocument();
+                if (!firstStage.containsKey("$match")) {
+                    return;
+                }
+                filter = firstStage.getDocument("$match");
+            }
+            default -> {
+                return;
+            }
+        }
+
+        Set<String> fields = new LinkedHashSet<>();
+        if (!collectFields(filter, fields)) {
+            return;
+        }
+        String sortField = sort == null || sort.isEmpty() ? null : sort.getFirstKey();
+        if (!IndexCatalog.covers(collection, fields, sortField)) {
+            String shape = collection + " " + fields + (sortField != null ? " sort " + sortField : "");
+            if (reported.add(shape)) {
+                logger.warn("Unindexed query on {}; declare an index for it in IndexCatalog", shape);
+            }
+        }
+    }
+
+    /**
+     * Query shapes warned about so far.
+     */
+    public Set<String> getReportedShapes() {
+        return Set.copyOf(reported);
+    }
+
+    /**
+     * Add the filter's field names, looking through $and. Returns false for filters that cannot be analysed.
+     */
+    static boolean collectFields(BsonDocument filter, Set<String> fields) {
+        for (String key : filter.keySet()) {
+            if ("$and".equals(key)) {
+                BsonArray clauses = filter.getArray(key);
+                for (BsonValue clause : clauses) {
+                    if (!clause.isDocument() || !collectFields(clause.asDocument(), fields)) {
+                        return false;
+                    }
+                }
+            } else if (key.startsWith("$")) {
+                return false;
+            } else {
+                fields.add(key);
+            }
+        }
+        return true;
+    }
+}
@@ -3,6 +3,8 @@ package com.guardianMed.patientRecordManagement.system.controllers;
 import com.guardianMed.patientRecordManagement.system.exception.NotFoundException;
 import com.guardianMed.patientRecordManagement.system.models.User;
 import com.guardianMed.patientRecordManagement.system.payload.requests.PasswordResetRequest;
+import com.guardianMed.patientRecordManagement.system.payload.response.AdminResponse;
+import com.guardianMed.patientRecordManagement.system.payload.response.CursorPage;
 import com.guardianMed.patientRecordManagement.system.services.AdminService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,6 +15,7 @@ import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.security.RolesAllowed;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/admin")
@@ -25,14 +28,17 @@ public class AdminController {
     private AdminService adminService;
 
     /**
-     * Get an admin by ID
+     * Get an admin by ID, optionally only some fields
      */
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> getAdminById(@PathVariable("id") String id) {
+    public ResponseEntity<?> getAdminById(@PathVariable("id") String id, @RequestParam(required = false) String fields) {
         try {
-            User admin = adminService.getAdminById(id);
+            AdminResponse admin = adminService.getAdminById(id, fields);
             return ResponseEntity.ok(admin);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid fields: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         } catch (NotFoundException e) {
             logger.error("Admin not found for ID: {}", id);
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
@@ -95,6 +101,9 @@ public class AdminController {
         } catch (IllegalArgumentException e) {
             logger.error("Invalid request to reset password for admin with ID: {}", id);
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            logger.error("Password hashing capacity exhausted, rejecting password reset for admin with ID: {}", id);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Server is busy, please try again");
         } catch (Exception e) {
             logger.error("An error occurred while resetting password for admin with ID: {}", id, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to reset password");
@@ -117,14 +126,39 @@ public class AdminController {
     }
 
     /**
-     * Get all admins
+     * Reload roles into the role registry
+     */
+
+    @PostMapping("/roles/refresh")
+    public ResponseEntity<?> refreshRoles() {
+        try {
+            return ResponseEntity.ok(adminService.refreshRoles());
+        } catch (Exception e) {
+            logger.error("An error occurred while refreshing roles", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to refresh roles");
+        }
+    }
+
+    /**
+     * Get admins one page at a time, or all of them with unpaged=true, optionally only some fields
      */
 
     @GetMapping("/all")
-    public ResponseEntity<?> getAllAdmins() {
+    public ResponseEntity<?> getAllAdmins(@RequestParam(required = false) String cursor,
+                                          @RequestParam(required = false) Integer limit,
+                                          @RequestParam(defaultValue = "asc") String sort,
+                                          @RequestParam(defaultValue = "false") boolean unpaged,
+                                          @RequestParam(required = false) String fields) {
         try {
-            List<User> admins = adminService.getAllAdmins();
-            return ResponseEntity.ok(admins);
+            if (unpaged) {
+                List<AdminResponse> admins = adminService.getAllAdmins(fields);
+                return ResponseEntity.ok(admins);
+            }
+            CursorPage<AdminResponse> page = adminService.getAllAdmins(cursor, limit, sort, fields);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid page request: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         } catch (Exception e) {
             logger.error("An error occurred while retrieving all admins", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to retrieve admins");
@@ -6,14 +6,15 @@ import com.guardianMed.patientRecordManagement.system.payload.requests.SignupReq
 import com.guardianMed.patientRecordManagement.system.payload.response.ApiResponse;
 import com.guardianMed.patientRecordManagement.system.payload.response.JwtResponse;
 import com.guardianMed.patientRecordManagement.system.payload.response.OTPResponse;
-import com.guardianMed.patientRecordManagement.system.repositories.RoleRepository;
 import com.guardianMed.patientRecordManagement.system.repositories.UserRepository;
 import com.guardianMed.patientRecordManagement.system.models.ERole;
 import com.guardianMed.patientRecordManagement.system.models.User;
 import com.guardianMed.patientRecordManagement.system.payload.response.MessageResponse;
 import com.guardianMed.patientRecordManagement.system.security.OtpService;
+import com.guardianMed.patientRecordManagement.system.security.RoleRegistry;
 import com.guardianMed.patientRecordManagement.system.services.UserDetailsImpl;
 import com.guardianMed.patientRecordManagement.system.security.jwt.JwtUtils;
+import io.jsonwebtoken.Claims;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -33,6 +34,7 @@ import org.springframework.security.core.GrantedAuthority;
 import javax.annotation.security.RolesAllowed;
 import javax.validation.Valid;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 @RestController
@@ -50,7 +52,7 @@ public class AuthController {
     OtpService otpService;
 
     @Autowired
-    RoleRepository roleRepository;
+    RoleRegistry roleRegistry;
 
     @Autowired
     PasswordEncoder encoder;
@@ -73,15 +75,14 @@ public class AuthController {
             User user = userRepository.findByUsername(loginRequest.username())
                     .orElseThrow(() -> new RuntimeException("User not found"));
             String otp = otpService.generateOtp();
-            Calendar cal = Calendar.getInstance();
-            cal.add(Calendar.MINUTE, 2);
-            Date otpExpiryTime = cal.getTime();
-            user.setOtp(otp);
-            user.setOtpExpiryTime(otpExpiryTime);
-            userRepository.save(user);
+            String attemptId = otpService.storeOtp(user.getUsername(), otp);
             otpService.sendOtp(otp, user.getEmail());
+            String challengeToken = jwtUtils.generateLoginChallengeToken(user.getUsername(), attemptId);
             logger.info("OTP sent ");
-            return ResponseEntity.ok(new OTPResponse(true, "OTP sent to your email for verification"));
+            return ResponseEntity.ok(new OTPResponse(true, "OTP sent to your email for verification", challengeToken));
+        } catch (RejectedExecutionException e) {
+            logger.error("Password hashing capacity exhausted, rejecting sign-in");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new ApiResponse<>(false, "Server is busy, please try again"));
         } catch (BadCredentialsException e) {
             logger.error("Invalid username or password provided for authentication", e);
             return ResponseEntity.status(HttpStatus.CONFLICT).body(new ApiResponse<>(false, "Invalid username or password"));
@@ -94,46 +95,78 @@ public class AuthController {
         }
     }
 
+    /**
+     * Verify the emailed OTP. Clients send the challengeToken returned by signin together with the OTP;
+     * the older username + password form is still accepted but costs a second password check.
+     */
     @PostMapping("/verify-otp")
     @CrossOrigin(origins = "http://localhost:4200")
     @RolesAllowed({"", ""})
     public ResponseEntity<?> verifyOtp(@RequestBody Map<String, String> otpData) {
 
         try {
-            String username = otpData.get("username");
             String otp = otpData.get("otp");
+            String challengeToken = otpData.get("challengeToken");
+            if (challengeToken != null) {
+                return verifyOtpWithChallenge(challengeToken, otp);
+            }
+
+            String username = otpData.get("username");
             String password = otpData.get("password");
             User user = userRepository.findByUsername(username)
                     .orElseThrow(() -> new RuntimeException("User not found"));
-            if (otpService.validateOtp(username, otp) && encoder.matches(password, user.getPassword())) {
-                UserDetailsImpl userDetails = UserDetailsImpl.build(user);
-                Authentication authentication = new UsernamePasswordAuthenticationToken(userDetails, null);
-                SecurityContextHolder.getContext().setAuthentication(authentication);
-                String jwt = jwtUtils.generateJwtToken(authentication);
-                String successMessage = "Successfully signed in as " + userDetails.getUsername();
-                logger.info("Successfully signed in as " + userDetails.getUsername());
-                JwtResponse response = new JwtResponse(jwt,
-                        userDetails.getId(),
-                        userDetails.getUsername(),
-                        userDetails.getEmail(),
-                        userDetails.getAuthorities().stream()
-                                .map(GrantedAuthority::getAuthority)
-                                .collect(Collectors.toList()));
-                response.setSuccessMessage(successMessage);
-                user.setOtp(null);
-                user.setOtpExpiryTime(null);
-                userRepository.save(user);
-                return ResponseEntity.ok(response);
+            // A matching OTP is used up, so it is only checked once the password is known to be right
+            if (encoder.matches(password, user.getPassword()) && otpService.validateOtp(username, otp)) {
+                return ResponseEntity.ok(signIn(user));
             } else {
                 logger.error("Invalid OTP or password");
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new ApiResponse<>(false, "Invalid OTP or password"));
             }
+        } catch (RejectedExecutionException e) {
+            logger.error("Password hashing capacity exhausted, rejecting OTP verification");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new ApiResponse<>(false, "Server is busy, please try again"));
         } catch (Exception e) {
             logger.error("Error occurred during OTP verification", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new ApiResponse<>(false, "An error occurred"));
         }
     }
 
+    private ResponseEntity<?> verifyOtpWithChallenge(String challengeToken, String otp) {
+        Claims challenge = jwtUtils.parseLoginChallengeToken(challengeToken);
+        if (challenge == null) {
+            logger.error("Invalid or expired login challenge");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new ApiResponse<>(false, "Invalid or expired login challenge"));
+        }
+
+        String username = challenge.getSubject();
+        if (!otpService.validateOtp(username, otp, jwtUtils.getAttemptIdFromChallenge(challenge))) {
+            logger.error("Invalid OTP");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new ApiResponse<>(false, "Invalid OTP"));
+        }
+
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        return ResponseEntity.ok(signIn(user));
+    }
+
+    private JwtResponse signIn(User user) {
+        UserDetailsImpl userDetails = UserDetailsImpl.build(user);
+        Authentication authentication = new UsernamePasswordAuthenticationToken(userDetails, null);
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        String jwt = jwtUtils.generateJwtToken(authentication);
+        String successMessage = "Successfully signed in as " + userDetails.getUsername();
+        logger.info("Successfully signed in as " + userDetails.getUsername());
+        JwtResponse response = new JwtResponse(jwt,
+                userDetails.getId(),
+                userDetails.getUsername(),
+                userDetails.getEmail(),
+                userDetails.getAuthorities().stream()
+                        .map(GrantedAuthority::getAuthority)
+                        .collect(Collectors.toList()));
+        response.setSuccessMessage(successMessage);
+        return response;
+    }
+
     @PostMapping("/signup")
     @CrossOrigin(origins = "http://localhost:4200")
     @RolesAllowed({"", ""})
@@ -150,34 +183,35 @@ public class AuthController {
                     .badRequest()
                     .body(new MessageResponse("Error: Email is already in use!"));
         }
+        String encodedPassword;
+        try {
+            encodedPassword = encoder.encode(signUpRequest.getPassword());
+        } catch (RejectedExecutionException e) {
+            logger.error("Password hashing capacity exhausted, rejecting registration");
+            return ResponseEntity
+                    .status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(new MessageResponse("Error: Server is busy, please try again"));
+        }
         User user = new User(signUpRequest.getUsername(),
                 signUpRequest.getEmail(),
-                encoder.encode(signUpRequest.getPassword()));
+                encodedPassword);
 
         Set<String> strRoles = signUpRequest.getRoles();
         Set<Role> roles = new HashSet<>();
 
         if (strRoles == null || strRoles.isEmpty()) {
-            Role patientRole = roleRepository.findByName(ERole.ROLE_USER)
-                    .orElseThrow(() -> new RuntimeException("Error: Role is not found."));
-            roles.add(patientRole);
+            roles.add(roleRegistry.get(ERole.ROLE_USER));
         } else {
             strRoles.forEach(role -> {
                 switch (role.toLowerCase()) {
                     case "superadmin":
-                        Role superAdminRole = roleRepository.findByName(ERole.ROLE_SUPER_ADMIN)
-                                .orElseThrow(() -> new RuntimeException("Error: Role is not found."));
-                        roles.add(superAdminRole);
+                        roles.add(roleRegistry.get(ERole.ROLE_SUPER_ADMIN));
                         break;
                     case "admin":
-                        Role adminRole = roleRepository.findByName(ERole.ROLE_ADMIN)
-                                .orElseThrow(() -> new RuntimeException("Error: Role is not found."));
-                        roles.add(adminRole);
+                        roles.add(roleRegistry.get(ERole.ROLE_ADMIN));
                         break;
                     case "user":
-                        Role userRole = roleRepository.findByName(ERole.ROLE_USER)
-                                .orElseThrow(() -> new RuntimeException("Error: Role is not found."));
-                        roles.add(userRole);
+                        roles.add(roleRegistry.get(ERole.ROLE_USER));
                         break;
                     default:
                         throw new RuntimeException("Error: Invalid role provided.");
@@ -1,22 +1,26 @@
 package com.guardianMed.patientRecordManagement.system.controllers;
 
+import com.guardianMed.patientRecordManagement.system.exception.ServiceUnavailableException;
 import com.guardianMed.patientRecordManagement.system.models.Bill;
-import com.guardianMed.patientRecordManagement.system.models.Prescription;
 import com.guardianMed.patientRecordManagement.system.payload.requests.BillRequest;
+import com.guardianMed.patientRecordManagement.system.payload.response.CursorPage;
 import com.guardianMed.patientRecordManagement.system.repositories.PrescriptionRepository;
 import com.guardianMed.patientRecordManagement.system.services.BillService;
-import com.guardianMed.patientRecordManagement.system.services.PrescriptionService;
+import com.guardianMed.patientRecordManagement.system.services.DocumentStreamer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.security.RolesAllowed;
 import javax.validation.Valid;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 @RestController
 @RequestMapping("/bills")
@@ -28,9 +32,6 @@ public class BillController {
     @Autowired
     private BillService billService;
 
-    @Autowired
-    private PrescriptionService prescriptionService;
-
     @Autowired
     private PrescriptionRepository prescriptionRepository;
 
@@ -44,24 +45,22 @@ public class BillController {
         try {
             logger.info("Adding bill: {}", billRequest);
 
-            Prescription existingPrescription = prescriptionService.getPrescriptionById(prescriptionId);
-            if (existingPrescription == null) {
-                logger.error("Prescription not found");
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Prescription not found");
-            } else if (existingPrescription.getState().equals(Prescription.State.INACTIVE)) {
-                logger.error("Prescription is already inactive");
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Prescription is already inactive");
-            }
-
             Bill savedBill = billService.createBillFromRequest(authentication, billRequest, prescriptionId);
 
-            if (savedBill != null) {
-                logger.info("Bill added successfully");
-                return ResponseEntity.status(HttpStatus.CREATED).body(savedBill);
-            } else {
-                logger.error("Failed to add bill");
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Failed to add bill");
-            }
+            logger.info("Bill added successfully");
+            return ResponseEntity.status(HttpStatus.CREATED).body(savedBill);
+        } catch (NoSuchElementException e) {
+            logger.error("Prescription not found");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Prescription not found");
+        } catch (IllegalStateException e) {
+            logger.error("Prescription is already inactive");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Prescription is already inactive");
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid bill medications: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (ServiceUnavailableException e) {
+            logger.error("Cannot add bill: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
         } catch (Exception e) {
             logger.error("Error occurred while adding bill: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error occurred while adding bill");
@@ -69,30 +68,67 @@ public class BillController {
     }
 
     /**
-     * Endpoint to get all bills.
+     * Endpoint to get bills one page at a time, or all of them with unpaged=true.
      */
 
     @GetMapping("/all")
-    public ResponseEntity<List<Bill>> getBills() {
+    public ResponseEntity<?> getBills(@RequestParam(required = false) String cursor,
+                                      @RequestParam(required = false) Integer limit,
+                                      @RequestParam(defaultValue = "asc") String sort,
+                                      @RequestParam(defaultValue = "false") boolean unpaged,
+                                      @RequestParam(required = false) String fields) {
         try {
-            logger.info("Retrieving all bills");
-            List<Bill> bills = billService.getBills();
-            return ResponseEntity.ok(bills);
+            if (unpaged) {
+                logger.info("Retrieving all bills");
+                List<?> bills = fields != null ? billService.getBills(fields) : billService.getBills();
+                return ResponseEntity.ok(bills);
+            }
+            logger.info("Retrieving a page of bills");
+            CursorPage<?> page = fields != null ? billService.getBills(cursor, limit, sort, fields)
+                    : billService.getBills(cursor, limit, sort);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid page request: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         } catch (Exception e) {
             logger.error("Error occurred while retrieving bills: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         }
     }
 
+    /**
+     * Endpoint to stream every bill as a JSON array or as NDJSON.
+     */
+    @GetMapping("/all/stream")
+    public ResponseEntity<?> streamBills(@RequestParam(defaultValue = "json") String format,
+                                         @RequestParam(required = false) String fields) {
+        boolean ndjson = "ndjson".equalsIgnoreCase(format);
+        if (!ndjson && !"json".equalsIgnoreCase(format)) {
+            logger.error("Unsupported stream format: {}", format);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("format must be json or ndjson");
+        }
+        logger.info("Streaming bills as {}", format);
+        StreamingResponseBody body;
+        try {
+            body = fields != null ? billService.streamBills(ndjson, fields) : billService.streamBills(ndjson);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid fields: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+        return ResponseEntity.ok()
+                .contentType(ndjson ? DocumentStreamer.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
     /**
      * Endpoint to find a bill by ID.
      */
 
     @GetMapping("/byID/{id}")
-    public ResponseEntity<?> findBillById(@PathVariable String id) {
+    public ResponseEntity<?> findBillById(@PathVariable String id, @RequestParam(required = false) String fields) {
         try {
             logger.info("Retrieving bill with ID: {}", id);
-            Bill bill = billService.getBillById(id);
+            Object bill = fields != null ? billService.getBillById(id, fields) : billService.getBillById(id);
             if (bill != null) {
                 logger.info("Bill found");
                 return ResponseEntity.ok(bill);
@@ -100,6 +136,9 @@ public class BillController {
                 logger.error("Bill not found");
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Bill not found");
             }
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid fields: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         } catch (Exception e) {
             logger.error("Error occurred while retrieving bill: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
@@ -110,10 +149,11 @@ public class BillController {
      * Endpoint to find bills by patient NIC.
      */
     @GetMapping("/byNIC/{patientNIC}")
-    public ResponseEntity<?> findBillsByPatientNIC(@PathVariable String patientNIC) {
+    public ResponseEntity<?> findBillsByPatientNIC(@PathVariable String patientNIC, @RequestParam(required = false) String fields) {
         try {
             logger.info("Retrieving bills with patient NIC: {}", patientNIC);
-            List<Bill> bills = billService.getBillsByPatientNIC(patientNIC);
+            List<?> bills = fields != null ? billService.getBillsByPatientNIC(patientNIC, fields)
+                    : billService.getBillsByPatientNIC(patientNIC);
             if (!bills.isEmpty()) {
                 logger.info("Bills found");
                 return ResponseEntity.ok(bills);
@@ -121,6 +161,9 @@ public class BillController {
                 logger.error("Bills not found");
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Bills not found");
             }
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid fields: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         } catch (Exception e) {
             logger.error("Error occurred while retrieving bills: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
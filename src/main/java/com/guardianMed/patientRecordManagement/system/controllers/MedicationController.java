@@ -0,0 +1,86 @@
+package com.guardianMed.patientRecordManagement.system.controllers;
+
+import com.guardianMed.patientRecordManagement.system.exception.ServiceUnavailableException;
+import com.guardianMed.patientRecordManagement.system.models.CatalogMedication;
+import com.guardianMed.patientRecordManagement.system.payload.response.MedicationImportReport;
+import com.guardianMed.patientRecordManagement.system.services.MedicationCatalog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.annotation.security.RolesAllowed;
+import javax.servlet.http.HttpServletRequest;
+
+@RestController
+@CrossOrigin(origins = "http://localhost:4200")
+@RolesAllowed({"", ""})
+@RequestMapping("/medications")
+public class MedicationController {
+    private static final Logger logger = LoggerFactory.getLogger(MedicationController.class);
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
+    @Autowired
+    private MedicationCatalog medicationCatalog;
+
+    /**
+     * Endpoint to upload a price list as CSV with the columns id, name and unitPrice.
+     */
+    @PostMapping("/import")
+    public ResponseEntity<?> importPriceList(HttpServletRequest request) {
+        MediaType contentType;
+        try {
+            contentType = MediaType.parseMediaType(request.getContentType());
+        } catch (Exception e) {
+            contentType = null;
+        }
+        if (contentType == null || !contentType.isCompatibleWith(TEXT_CSV)) {
+            logger.error("Unsupported price list content type: {}", request.getContentType());
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body("Send the price list as text/csv");
+        }
+        try {
+            MedicationImportReport report = medicationCatalog.importCsv(request.getInputStream());
+            logger.info("Medication price list import completed");
+            return ResponseEntity.ok(report);
+        } catch (Exception e) {
+            logger.error("Failed to import the medication price list", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to import the medication price list");
+        }
+    }
+
+    /**
+     * Endpoint to get the whole catalog, ordered by id.
+     */
+    @GetMapping("/all")
+    public ResponseEntity<?> getMedications() {
+        logger.info("Retrieving the medication catalog");
+        try {
+            return ResponseEntity.ok(medicationCatalog.getAll());
+        } catch (ServiceUnavailableException e) {
+            logger.error("Cannot list medications: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Endpoint to find a catalog medication by id or name.
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getMedication(@PathVariable String id) {
+        CatalogMedication medication;
+        try {
+            medication = medicationCatalog.resolve(id);
+        } catch (ServiceUnavailableException e) {
+            logger.error("Cannot look up medication {}: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
+        if (medication == null) {
+            logger.error("Medication not found: {}", id);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Medication not found");
+        }
+        return ResponseEntity.ok(medication);
+    }
+}
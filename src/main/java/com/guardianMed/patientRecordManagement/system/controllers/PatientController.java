@@ -2,16 +2,25 @@ package com.guardianMed.patientRecordManagement.system.controllers;
 
 import com.guardianMed.patientRecordManagement.system.models.Patient;
 import com.guardianMed.patientRecordManagement.system.payload.requests.PatientRequest;
+import com.guardianMed.patientRecordManagement.system.payload.response.CursorPage;
+import com.guardianMed.patientRecordManagement.system.payload.response.PatientImportReport;
+import com.guardianMed.patientRecordManagement.system.payload.response.PatientOverview;
+import com.guardianMed.patientRecordManagement.system.payload.response.PatientSearchResult;
+import com.guardianMed.patientRecordManagement.system.services.DocumentStreamer;
+import com.guardianMed.patientRecordManagement.system.services.PatientImportService;
 import com.guardianMed.patientRecordManagement.system.services.PatientService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.annotation.security.RolesAllowed;
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import java.util.List;
 
@@ -23,6 +32,12 @@ public class PatientController {
 
     @Autowired
     private PatientService patientService;
+    @Autowired
+    private PatientImportService patientImportService;
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+    private static final int MAX_SEARCH_OFFSET = 10000;
+    private static final int MAX_RECENT_PRESCRIPTIONS = 50;
     private static final Logger logger = LoggerFactory.getLogger(PatientController.class);
 
     @PostMapping("/add")
@@ -41,22 +56,98 @@ public class PatientController {
         }
     }
 
+    @PostMapping("/import")
+    public ResponseEntity<?> importPatients(HttpServletRequest request) {
+        MediaType contentType;
+        try {
+            contentType = MediaType.parseMediaType(request.getContentType());
+        } catch (Exception e) {
+            contentType = null;
+        }
+        boolean csv = contentType != null && contentType.isCompatibleWith(TEXT_CSV);
+        if (!csv && (contentType == null || !contentType.isCompatibleWith(DocumentStreamer.APPLICATION_NDJSON))) {
+            logger.error("Unsupported import content type: {}", request.getContentType());
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body("Send patients as text/csv or application/x-ndjson");
+        }
+        try {
+            PatientImportReport report = patientImportService.importPatients(request.getInputStream(), csv);
+            logger.info("Patient import completed");
+            return ResponseEntity.ok(report);
+        } catch (Exception e) {
+            logger.error("Failed to import patients", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to import patients");
+        }
+    }
+
     @GetMapping("/all")
-    public ResponseEntity<List<Patient>> getPatients() {
+    public ResponseEntity<?> getPatients(@RequestParam(required = false) String cursor,
+                                         @RequestParam(required = false) Integer limit,
+                                         @RequestParam(defaultValue = "asc") String sort,
+                                         @RequestParam(defaultValue = "false") boolean unpaged,
+                                         @RequestParam(required = false) String fields) {
         try {
-            List<Patient> patients = patientService.getPatients();
-            logger.info("Patients retrieved");
-            return ResponseEntity.ok(patients);
+            if (unpaged) {
+                List<?> patients = fields != null ? patientService.getPatients(fields) : patientService.getPatients();
+                logger.info("Patients retrieved");
+                return ResponseEntity.ok(patients);
+            }
+            CursorPage<?> page = fields != null ? patientService.getPatients(cursor, limit, sort, fields)
+                    : patientService.getPatients(cursor, limit, sort);
+            logger.info("Patients page retrieved");
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid page request: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         } catch (Exception e) {
             logger.error("Failed to retrieve patients");
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         }
     }
 
+    @GetMapping("/all/stream")
+    public ResponseEntity<?> streamPatients(@RequestParam(defaultValue = "json") String format,
+                                            @RequestParam(required = false) String fields) {
+        boolean ndjson = "ndjson".equalsIgnoreCase(format);
+        if (!ndjson && !"json".equalsIgnoreCase(format)) {
+            logger.error("Unsupported stream format: {}", format);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("format must be json or ndjson");
+        }
+        logger.info("Streaming patients as {}", format);
+        StreamingResponseBody body;
+        try {
+            body = fields != null ? patientService.streamPatients(ndjson, fields) : patientService.streamPatients(ndjson);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid fields: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+        return ResponseEntity.ok()
+                .contentType(ndjson ? DocumentStreamer.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<?> searchPatients(@RequestParam("q") String query,
+                                            @RequestParam(defaultValue = "0") int page,
+                                            @RequestParam(defaultValue = "20") int size) {
+        if (page < 0 || size < 1 || size > MAX_SEARCH_PAGE_SIZE || page * size > MAX_SEARCH_OFFSET) {
+            logger.error("Invalid search page: page={}, size={}", page, size);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("size must be between 1 and " + MAX_SEARCH_PAGE_SIZE + " and page * size at most " + MAX_SEARCH_OFFSET);
+        }
+        try {
+            PatientSearchResult result = patientService.searchPatients(query, page, size);
+            logger.info("Patient search returned {} hit(s)", result.getTotal());
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            logger.error("Failed to search patients");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+        }
+    }
+
     @GetMapping("/byID/{id}")
-    public ResponseEntity<?> findPatientById(@PathVariable String id) {
+    public ResponseEntity<?> findPatientById(@PathVariable String id, @RequestParam(required = false) String fields) {
         try {
-            Patient patient = patientService.getPatientById(id);
+            Object patient = fields != null ? patientService.getPatientById(id, fields) : patientService.getPatientById(id);
             if (patient != null) {
                 logger.info("Patient found");
                 return ResponseEntity.ok(patient);
@@ -64,6 +155,9 @@ public class PatientController {
                 logger.error("Patient not found");
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Patient not found");
             }
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid fields: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         } catch (Exception e) {
             logger.error("Unexpected error");
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
@@ -71,9 +165,11 @@ public class PatientController {
     }
 
     @GetMapping("/byNIC/{patientNIC}")
-    public ResponseEntity<?> findPatientByPatientNIC(@PathVariable String patientNIC) {
+    public ResponseEntity<?> findPatientByPatientNIC(@PathVariable String patientNIC, @RequestParam(required = false) String fields) {
         try {
-            Patient patient = patientService.getPatientByPatientNIC(patientNIC);
+            // Whole records come from the patient cache; a field selection is projected by Mongo instead
+            Object patient = fields != null ? patientService.getPatientByPatientNIC(patientNIC, fields)
+                    : patientService.getPatientByPatientNIC(patientNIC);
             if (patient != null) {
                 logger.info("Patient found");
                 return ResponseEntity.ok(patient);
@@ -81,6 +177,9 @@ public class PatientController {
                 logger.error("Patient not found");
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Patient not found");
             }
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid fields: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         } catch (Exception e) {
             logger.error("Unexpected error");
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
@@ -104,6 +203,28 @@ public class PatientController {
         }
     }
 
+    @GetMapping("/{patientNIC}/overview")
+    public ResponseEntity<?> getPatientOverview(@PathVariable String patientNIC,
+                                                @RequestParam(defaultValue = "5") int recent) {
+        if (recent < 1 || recent > MAX_RECENT_PRESCRIPTIONS) {
+            logger.error("Invalid recent prescription count: {}", recent);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("recent must be between 1 and " + MAX_RECENT_PRESCRIPTIONS);
+        }
+        try {
+            PatientOverview overview = patientService.getPatientOverview(patientNIC, recent);
+            if (overview != null) {
+                logger.info("Patient overview retrieved");
+                return ResponseEntity.ok(overview);
+            } else {
+                logger.error("Patient not found");
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Patient not found");
+            }
+        } catch (Exception e) {
+            logger.error("Failed to retrieve patient overview");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+        }
+    }
+
     @PutMapping("/update/{patientNIC}")
     public ResponseEntity<?> updatePatient(@PathVariable String patientNIC, @RequestBody Patient patient) {
         try {
@@ -118,9 +239,6 @@ public class PatientController {
         } catch (IllegalArgumentException e) {
             logger.error("NIC cannot be blank");
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("NIC cannot be blank");
-        } catch (DuplicateKeyException e) {
-            logger.error("Patient with NIC " + patient.getPatientNIC() + " already exists");
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Patient with NIC " + patient.getPatientNIC() + " already exists");
         } catch (Exception e) {
             logger.error("Failed to update patient");
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to update patient");
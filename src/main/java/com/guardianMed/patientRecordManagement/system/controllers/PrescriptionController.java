@@ -1,12 +1,17 @@
 package com.guardianMed.patientRecordManagement.system.controllers;
 
+import com.guardianMed.patientRecordManagement.system.exception.ServiceUnavailableException;
 import com.guardianMed.patientRecordManagement.system.models.Prescription;
 import com.guardianMed.patientRecordManagement.system.payload.requests.PrescriptionRequest;
+import com.guardianMed.patientRecordManagement.system.payload.response.CursorPage;
+import com.guardianMed.patientRecordManagement.system.services.DocumentStreamer;
 import com.guardianMed.patientRecordManagement.system.services.PrescriptionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,7 +34,16 @@ public class PrescriptionController {
 
     @PostMapping("/add")
     public ResponseEntity<Object> savePrescription(@Valid @RequestBody PrescriptionRequest prescriptionRequest) {
-        Prescription savedPrescription = prescriptionService.savePrescription(prescriptionRequest);
+        Prescription savedPrescription;
+        try {
+            savedPrescription = prescriptionService.savePrescription(prescriptionRequest);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid prescription: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (ServiceUnavailableException e) {
+            logger.error("Cannot save prescription: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
         if (savedPrescription != null) {
             logger.info("Prescription saved successfully with ID: {}", savedPrescription.getId());
             return ResponseEntity.status(HttpStatus.CREATED).body(savedPrescription);
@@ -40,14 +54,58 @@ public class PrescriptionController {
     }
 
     @GetMapping("/all")
-    public ResponseEntity<List<Prescription>> getPrescriptions() {
-        List<Prescription> prescriptions = prescriptionService.getPrescriptions();
-        return ResponseEntity.ok(prescriptions);
+    public ResponseEntity<?> getPrescriptions(@RequestParam(required = false) String cursor,
+                                              @RequestParam(required = false) Integer limit,
+                                              @RequestParam(defaultValue = "asc") String sort,
+                                              @RequestParam(defaultValue = "false") boolean unpaged,
+                                              @RequestParam(required = false) String fields) {
+        try {
+            if (unpaged) {
+                List<?> prescriptions = fields != null ? prescriptionService.getPrescriptions(fields)
+                        : prescriptionService.getPrescriptions();
+                return ResponseEntity.ok(prescriptions);
+            }
+            CursorPage<?> page = fields != null ? prescriptionService.getPrescriptions(cursor, limit, sort, fields)
+                    : prescriptionService.getPrescriptions(cursor, limit, sort);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid page request: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/all/stream")
+    public ResponseEntity<?> streamPrescriptions(@RequestParam(defaultValue = "json") String format,
+                                                 @RequestParam(required = false) String fields) {
+        boolean ndjson = "ndjson".equalsIgnoreCase(format);
+        if (!ndjson && !"json".equalsIgnoreCase(format)) {
+            logger.error("Unsupported stream format: {}", format);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("format must be json or ndjson");
+        }
+        logger.info("Streaming prescriptions as {}", format);
+        StreamingResponseBody body;
+        try {
+            body = fields != null ? prescriptionService.streamPrescriptions(ndjson, fields)
+                    : prescriptionService.streamPrescriptions(ndjson);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid fields: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+        return ResponseEntity.ok()
+                .contentType(ndjson ? DocumentStreamer.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                .body(body);
     }
 
     @GetMapping("/byID/{id}")
-    public ResponseEntity<?> findPrescriptionById(@PathVariable String id) {
-        Prescription prescription = prescriptionService.getPrescriptionById(id);
+    public ResponseEntity<?> findPrescriptionById(@PathVariable String id, @RequestParam(required = false) String fields) {
+        Object prescription;
+        try {
+            prescription = fields != null ? prescriptionService.getPrescriptionById(id, fields)
+                    : prescriptionService.getPrescriptionById(id);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid fields: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
         if (prescription != null) {
             logger.info("Prescription found");
             return ResponseEntity.ok(prescription);
@@ -70,8 +128,16 @@ public class PrescriptionController {
     }
 
     @GetMapping("/byNIC/{patientNIC}")
-    public ResponseEntity<?> findPrescriptionsByPatientNIC(@PathVariable String patientNIC) {
-        List<Prescription> prescriptions = prescriptionService.getPrescriptionsByPatientNIC(patientNIC);
+    public ResponseEntity<?> findPrescriptionsByPatientNIC(@PathVariable String patientNIC,
+                                                           @RequestParam(required = false) String fields) {
+        List<?> prescriptions;
+        try {
+            prescriptions = fields != null ? prescriptionService.getPrescriptionsByPatientNIC(patientNIC, fields)
+                    : prescriptionService.getPrescriptionsByPatientNIC(patientNIC);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid fields: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
         if (!prescriptions.isEmpty()) {
             logger.info("Prescriptions found");
             return ResponseEntity.ok(prescriptions);
@@ -83,7 +149,16 @@ public class PrescriptionController {
 
     @PutMapping("/update/{id}")
     public ResponseEntity<?> updatePrescription(@PathVariable String id, @RequestBody Prescription prescription) {
-        Prescription updatedPrescription = prescriptionService.updatePrescription(id, prescription);
+        Prescription updatedPrescription;
+        try {
+            updatedPrescription = prescriptionService.updatePrescription(id, prescription);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid prescription: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (ServiceUnavailableException e) {
+            logger.error("Cannot update prescription: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
         if (updatedPrescription != null) {
             logger.info("Prescription successfully updated");
             return ResponseEntity.ok(updatedPrescription);
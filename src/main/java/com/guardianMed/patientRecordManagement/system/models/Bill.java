@@ -33,6 +33,19 @@ public class Bill {
     
     private List<String> doctorsMedication;
 
+    // Exact amounts in cents; totalAmount repeats totalCents in rupees for display and older clients
+    private long subtotalCents;
+
+    private int discountBasisPoints;
+
+    private long discountCents;
+
+    private List<TaxLine> taxes;
+
+    private long taxCents;
+
+    private long totalCents;
+
     private double totalAmount;
 
 }
@@ -0,0 +1,25 @@
+package com.guardianMed.patientRecordManagement.system.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * One entry of the medication price list. The id is the short catalog code that prescriptions and bills
+ * refer to, e.g. PARA500. Prices are kept in cents so bill totals are exact.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "medications")
+public class CatalogMedication {
+
+    @Id
+    private String id;
+
+    private String name;
+
+    private long unitPriceCents;
+}
@@ -1,25 +1,33 @@
 package com.guardianMed.patientRecordManagement.system.models;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import javax.validation.constraints.Min;
-import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 
+/**
+ * A bill line. Requests identify the medication by catalog id (or by its catalog name) and quantity; the price
+ * is always taken from the catalog, and stored lines keep only the id, quantity and the price charged.
+ * unitPriceCents is the exact price; price is the same amount in rupees for display.
+ */
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
 
 public class Medication {
 
-    @NotBlank
+    private String medicationId;
+
     private String name;
 
-    @NotNull
     private Double price;
 
+    private Long unitPriceCents;
+
     @NotNull
     @Min(0)
     private Integer quantity;
@@ -0,0 +1,28 @@
+package com.guardianMed.patientRecordManagement.system.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+@Document(collection = "otp_tokens")
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+
+public class OtpToken {
+
+    @Id
+    private String username;
+
+    private String otpHash;
+
+    private String attemptId;
+
+    private Date expiresAt;
+}
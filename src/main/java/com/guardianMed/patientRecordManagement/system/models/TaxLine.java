@@ -0,0 +1,20 @@
+package com.guardianMed.patientRecordManagement.system.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One tax on a bill: its name, the rate in basis points (1800 = 18%) and the amount charged in cents.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TaxLine {
+
+    private String name;
+
+    private int basisPoints;
+
+    private long amountCents;
+}
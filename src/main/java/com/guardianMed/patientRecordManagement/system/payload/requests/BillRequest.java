@@ -5,6 +5,9 @@ import lombok.Data;
 import org.springframework.data.annotation.Id;
 import org.springframework.stereotype.Component;
 
+import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotEmpty;
 import java.time.LocalDate;
 import java.util.List;
@@ -25,8 +28,13 @@ public class BillRequest {
     private LocalDate date;
 
     @NotEmpty(message = "Medications are required")
-    private List<Medication> medications;
+    private List<@Valid Medication> medications;
 
     private double totalAmount;
 
+    // Optional discount off the subtotal, in basis points (1000 = 10%)
+    @Min(0)
+    @Max(10000)
+    private Integer discountBasisPoints;
+
 }
@@ -0,0 +1,28 @@
+package com.guardianMed.patientRecordManagement.system.payload.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.guardianMed.patientRecordManagement.system.models.Role;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Set;
+
+/**
+ * Admin account as returned by the admin read endpoints. It has no password or OTP properties, so those
+ * fields are never part of the projection and never read from the database.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@AllArgsConstructor
+@NoArgsConstructor
+public class AdminResponse {
+
+    private String id;
+
+    private String username;
+
+    private String email;
+
+    private Set<Role> roles;
+}
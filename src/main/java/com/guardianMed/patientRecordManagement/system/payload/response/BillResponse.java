@@ -1,5 +1,6 @@
 package com.guardianMed.patientRecordManagement.system.payload.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.guardianMed.patientRecordManagement.system.models.Medication;
 import lombok.Data;
 import org.springframework.stereotype.Component;
@@ -7,13 +8,19 @@ import org.springframework.stereotype.Component;
 import java.time.LocalDate;
 import java.util.List;
 
+/**
+ * Bill as returned by projected reads. Fields left out of a fields= selection are null and not serialized.
+ */
 @Component
 @Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
 
 public class BillResponse {
 
     private String id;
 
+    private String customerBillId;
+
     private String adminId;
 
     private String patientNIC;
@@ -24,6 +31,8 @@ public class BillResponse {
 
     private List<Medication> medications;
 
-    private double totalAmount;
+    private Double totalAmount;
+
+    private Long totalCents;
 
 }
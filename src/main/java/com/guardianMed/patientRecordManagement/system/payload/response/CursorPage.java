@@ -0,0 +1,18 @@
+package com.guardianMed.patientRecordManagement.system.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of a list endpoint. nextCursor is null on the last page; otherwise pass it back as the
+ * cursor parameter to continue from the last item of this page.
+ */
+@Data
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> items;
+    private String nextCursor;
+    private int limit;
+}
@@ -0,0 +1,43 @@
+package com.guardianMed.patientRecordManagement.system.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a medication price list upload. Only rejected rows are listed; row numbers are line numbers in
+ * the uploaded file, so the header is line 1.
+ */
+@Data
+@NoArgsConstructor
+public class MedicationImportReport {
+    private int total;
+    private int imported;
+    private int failed;
+    private int catalogSize;
+    private long elapsedMillis;
+    private List<RowError> errors = new ArrayList<>();
+
+    public void succeeded(int count) {
+        imported += count;
+        total += count;
+    }
+
+    public void failed(int row, String medicationId, String error) {
+        errors.add(new RowError(row, medicationId, error));
+        failed++;
+        total++;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class RowError {
+        private int row;
+        private String medicationId;
+        private String error;
+    }
+}
@@ -9,8 +9,15 @@ public class OTPResponse {
 
     private boolean otpSent;
     private String message;
+    private String challengeToken;
     public OTPResponse(boolean otpSent, String message) {
         this.otpSent = otpSent;
         this.message = message;
     }
+
+    public OTPResponse(boolean otpSent, String message, String challengeToken) {
+        this.otpSent = otpSent;
+        this.message = message;
+        this.challengeToken = challengeToken;
+    }
 }
@@ -0,0 +1,52 @@
+package com.guardianMed.patientRecordManagement.system.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Outcome of a bulk patient import, with one entry per input row. Row numbers are line numbers in the
+ * uploaded file, so for CSV the header is line 1.
+ */
+@Data
+@NoArgsConstructor
+public class PatientImportReport {
+    private int total;
+    private int imported;
+    private int failed;
+    private long elapsedMillis;
+    private long patientsPerSecond;
+    private List<RowResult> rows = new ArrayList<>();
+
+    public void succeeded(int row, String patientNIC) {
+        rows.add(new RowResult(row, patientNIC, true, null));
+        imported++;
+        total++;
+    }
+
+    public void failed(int row, String patientNIC, String error) {
+        rows.add(new RowResult(row, patientNIC, false, error));
+        failed++;
+        total++;
+    }
+
+    public void finish(long elapsedNanos) {
+        rows.sort(Comparator.comparingInt(RowResult::getRow));
+        elapsedMillis = elapsedNanos / 1_000_000;
+        patientsPerSecond = elapsedNanos > 0 ? imported * 1_000_000_000L / elapsedNanos : imported;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class RowResult {
+        private int row;
+        private String patientNIC;
+        private boolean imported;
+        private String error;
+    }
+}
@@ -0,0 +1,34 @@
+package com.guardianMed.patientRecordManagement.system.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Everything the patient page shows: the patient, their latest prescriptions, prescription counts and bill
+ * totals. lastBillDate is null when the patient has no bills.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientOverview {
+
+    private PatientResponse patient;
+
+    private List<PrescriptionResponse> recentPrescriptions;
+
+    private long prescriptionCount;
+
+    private long activePrescriptionCount;
+
+    private long billCount;
+
+    private double billTotal;
+
+    private long billTotalCents;
+
+    private LocalDate lastBillDate;
+}
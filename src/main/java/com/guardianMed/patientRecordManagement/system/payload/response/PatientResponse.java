@@ -1,12 +1,17 @@
 package com.guardianMed.patientRecordManagement.system.payload.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import javax.validation.constraints.NotBlank;
 
+/**
+ * Patient as returned by projected reads. Fields left out of a fields= selection are null and not serialized.
+ */
 @Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @AllArgsConstructor
 @NoArgsConstructor
 public class PatientResponse {
@@ -20,13 +25,13 @@ public class PatientResponse {
 
     private String gender;
 
-    private int age;
+    private Integer age;
 
     private String address;
 
     private String email;
 
-    private long contactNumber;
+    private Long contactNumber;
 
 
 }
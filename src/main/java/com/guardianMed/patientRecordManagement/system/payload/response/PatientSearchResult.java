@@ -0,0 +1,32 @@
+package com.guardianMed.patientRecordManagement.system.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of ranked name search hits. total counts every match, not just this page; for very broad
+ * queries counting stops early and totalExact is false, making total a lower bound.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientSearchResult {
+    private String query;
+    private int total;
+    private boolean totalExact;
+    private int page;
+    private int size;
+    private List<Hit> hits;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Hit {
+        private String patientNIC;
+        private String patientName;
+        private int score;
+    }
+}
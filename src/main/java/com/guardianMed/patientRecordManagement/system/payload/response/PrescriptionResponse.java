@@ -1,5 +1,6 @@
 package com.guardianMed.patientRecordManagement.system.payload.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.guardianMed.patientRecordManagement.system.models.Prescription;
 import lombok.Data;
 import org.springframework.stereotype.Component;
@@ -7,8 +8,12 @@ import org.springframework.stereotype.Component;
 import java.time.LocalDate;
 import java.util.List;
 
+/**
+ * Prescription as returned by projected reads, without the embedded patient snapshot.
+ */
 @Component
 @Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class PrescriptionResponse {
 
     private String id;
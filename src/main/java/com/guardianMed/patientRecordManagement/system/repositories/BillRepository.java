@@ -9,5 +9,6 @@ public interface BillRepository extends MongoRepository<Bill, String> {
     Bill findBillByPatientNIC(String patientNIC);
     Bill findBillByPatientName(String patientName);
     List<Bill> findAllByPatientNIC(String patientNIC);
+    boolean existsByCustomerBillId(String customerBillId);
 
 }
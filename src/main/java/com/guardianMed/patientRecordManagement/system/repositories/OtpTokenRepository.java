@@ -0,0 +1,7 @@
+package com.guardianMed.patientRecordManagement.system.repositories;
+
+import com.guardianMed.patientRecordManagement.system.models.OtpToken;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface OtpTokenRepository extends MongoRepository<OtpToken, String> {
+}
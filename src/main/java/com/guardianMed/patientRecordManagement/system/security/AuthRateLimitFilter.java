@@ -0,0 +1,236 @@
+package com.guardianMed.patientRecordManagement.system.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guardianMed.patientRecordManagement.system.payload.response.MessageResponse;
+import com.guardianMed.patientRecordManagement.system.security.jwt.JwtUtils;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control for the unauthenticated auth endpoints. Every request spends a token from its client
+ * IP bucket and, when the body names a user (directly or through a login challenge token), from that user's
+ * bucket, before any BCrypt work, Mongo write or email happens. Requests over either limit get a 429 with a
+ * Retry-After header; bodies larger than maxBodyBytes are refused with a 413 without being buffered.
+ */
+public class AuthRateLimitFilter extends OncePerRequestFilter {
+    private static final Logger logger = LoggerFactory.getLogger(AuthRateLimitFilter.class);
+    private static final Set<String> LIMITED_PATHS = Set.of("/api/auth/signin", "/api/auth/verify-otp", "/api/auth/signup");
+
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private JwtUtils jwtUtils;
+    @Value("${sprngsec.app.authRateLimitEnabled:true}")
+    private boolean enabled;
+    @Value("${sprngsec.app.authRateLimitIpPerMinute:30}")
+    private int ipPerMinute;
+    @Value("${sprngsec.app.authRateLimitIpBurst:20}")
+    private int ipBurst;
+    @Value("${sprngsec.app.authRateLimitUserPerMinute:10}")
+    private int userPerMinute;
+    @Value("${sprngsec.app.authRateLimitUserBurst:6}")
+    private int userBurst;
+    @Value("${sprngsec.app.authRateLimitMaxKeys:100000}")
+    private int maxKeys;
+    @Value("${sprngsec.app.authRateLimitMaxBodyBytes:4096}")
+    private int maxBodyBytes;
+
+    private TokenBucketRateLimiter ipLimiter;
+    private TokenBucketRateLimiter userLimiter;
+    private ScheduledExecutorService sweeper;
+    private Counter ipRejected;
+    private Counter userRejected;
+
+    /**
+     * Builds the limiters and starts the sweeper once per bean. Not done in initFilterBean(), which runs again
+     * whenever a servlet container calls init() on the filter.
+     */
+    @PostConstruct
+    public void start() {
+        ipLimiter = new TokenBucketRateLimiter(ipPerMinute, ipBurst, maxKeys);
+        userLimiter = new TokenBucketRateLimiter(userPerMinute, userBurst, maxKeys);
+        ipRejected = meterRegistry.counter("auth.ratelimit.rejected", "key", "ip");
+        userRejected = meterRegistry.counter("auth.ratelimit.rejected", "key", "user");
+        meterRegistry.gauge("auth.ratelimit.keys", this, filter -> filter.ipLimiter.size() + filter.userLimiter.size());
+
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "auth-ratelimit-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(() -> {
+            ipLimiter.evictIdle();
+            userLimiter.evictIdle();
+        }, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public void destroy() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !"POST".equals(request.getMethod()) || !LIMITED_PATHS.contains(request.getServletPath());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        long waitNanos = ipLimiter.tryAcquire(request.getRemoteAddr());
+        if (waitNanos > 0) {
+            ipRejected.increment();
+            reject(request, response, waitNanos);
+            return;
+        }
+
+        byte[] body = readBody(request);
+        if (body == null) {
+            logger.warn("Oversized body for {} from {}", request.getServletPath(), request.getRemoteAddr());
+            response.setStatus(HttpStatus.PAYLOAD_TOO_LARGE.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(), new MessageResponse("Error: Request body is too large."));
+            return;
+        }
+        CachedBodyRequest cachedRequest = new CachedBodyRequest(request, body);
+        String username = extractUsername(body);
+        if (username != null) {
+            waitNanos = userLimiter.tryAcquire(username);
+            if (waitNanos > 0) {
+                userRejected.increment();
+                reject(request, response, waitNanos);
+                return;
+            }
+        }
+        filterChain.doFilter(cachedRequest, response);
+    }
+
+    /**
+     * The request body, or null when it is larger than maxBodyBytes. At most one byte past the limit is read.
+     */
+    private byte[] readBody(HttpServletRequest request) throws IOException {
+        if (request.getContentLengthLong() > maxBodyBytes) {
+            return null;
+        }
+        byte[] body = request.getInputStream().readNBytes(maxBodyBytes + 1);
+        return body.length > maxBodyBytes ? null : body;
+    }
+
+    private String extractUsername(byte[] body) {
+        if (body.length == 0) {
+            return null;
+        }
+        try {
+            JsonNode json = objectMapper.readTree(body);
+            String username = text(json.get("username"));
+            if (username == null) {
+                // verify-otp names the user through the signed challenge token issued by signin
+                String challengeToken = text(json.get("challengeToken"));
+                Claims challenge = challengeToken == null ? null : jwtUtils.parseLoginChallengeToken(challengeToken);
+                username = challenge == null ? null : challenge.getSubject();
+            }
+            if (username == null || username.isBlank()) {
+                return null;
+            }
+            return username.trim().toLowerCase(Locale.ROOT);
+        } catch (IOException e) {
+            // Malformed bodies are rejected by the controller; they still count against the IP
+            return null;
+        }
+    }
+
+    private static String text(JsonNode node) {
+        return node != null && node.isTextual() && !node.asText().isBlank() ? node.asText() : null;
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response, long waitNanos) throws IOException {
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        logger.warn("Rate limit exceeded for {} from {}", request.getServletPath(), request.getRemoteAddr());
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new MessageResponse("Error: Too many requests, please try again later."));
+    }
+
+    /**
+     * Replays the body read by the filter so the controller still sees the full payload.
+     */
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return input.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8));
+        }
+    }
+}
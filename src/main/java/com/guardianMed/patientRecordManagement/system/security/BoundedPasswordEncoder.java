@@ -0,0 +1,159 @@
+package com.guardianMed.patientRecordManagement.system.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BCrypt encoder that runs every hash and verification on its own bounded pool instead of the request
+ * thread. When the pool and its queue are full the call fails fast with a RejectedExecutionException.
+ * The cost factor is calibrated at startup against a target latency; upgradeEncoding reports older,
+ * cheaper hashes so they are re-hashed on the next successful login.
+ */
+@Component
+public class BoundedPasswordEncoder implements PasswordEncoder {
+    private static final Logger logger = LoggerFactory.getLogger(BoundedPasswordEncoder.class);
+
+    private final BCryptPasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final int strength;
+    private final Timer encodeQueueWait;
+    private final Timer encodeDuration;
+    private final Timer matchesQueueWait;
+    private final Timer matchesDuration;
+    private final Counter rejectedCounter;
+
+    @Autowired
+    public BoundedPasswordEncoder(MeterRegistry meterRegistry,
+                                  @Value("${sprngsec.app.passwordHashingThreads:0}") int threads,
+                                  @Value("${sprngsec.app.passwordHashingQueueCapacity:32}") int queueCapacity,
+                                  @Value("${sprngsec.app.bcryptTargetMillis:250}") long targetMillis,
+                                  @Value("${sprngsec.app.bcryptMinStrength:10}") int minStrength,
+                                  @Value("${sprngsec.app.bcryptMaxStrength:14}") int maxStrength) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.strength = calibrateStrength(targetMillis, minStrength, maxStrength);
+        this.delegate = new BCryptPasswordEncoder(strength);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), namedThreads(), new ThreadPoolExecutor.AbortPolicy());
+        logger.info("Password hashing uses BCrypt strength {} on {} thread(s)", strength, poolSize);
+
+        Gauge.builder("password.hashing.queue.depth", executor, pool -> pool.getQueue().size()).register(meterRegistry);
+        this.encodeQueueWait = queueWaitTimer(meterRegistry, "encode");
+        this.encodeDuration = durationTimer(meterRegistry, "encode");
+        this.matchesQueueWait = queueWaitTimer(meterRegistry, "matches");
+        this.matchesDuration = durationTimer(meterRegistry, "matches");
+        this.rejectedCounter = meterRegistry.counter("password.hashing.rejected");
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> delegate.encode(rawPassword), encodeQueueWait, encodeDuration);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> delegate.matches(rawPassword, encodedPassword), matchesQueueWait, matchesDuration);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T run(Callable<T> task, Timer queueWait, Timer duration) {
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long startedAt = System.nanoTime();
+                queueWait.record(startedAt - submittedAt, TimeUnit.NANOSECONDS);
+                try {
+                    return task.call();
+                } finally {
+                    duration.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            logger.warn("Password hashing pool is full, rejecting request");
+            throw e;
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    /**
+     * Pick the highest strength whose hash time stays within the target, never going below minStrength.
+     */
+    static int calibrateStrength(long targetMillis, int minStrength, int maxStrength) {
+        // Warm up so the first measurement is not dominated by class loading and JIT
+        new BCryptPasswordEncoder(4).encode("calibration");
+
+        int chosen = minStrength;
+        for (int candidate = minStrength; candidate <= maxStrength; candidate++) {
+            long start = System.nanoTime();
+            new BCryptPasswordEncoder(candidate).encode("calibration");
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (elapsedMillis > targetMillis) {
+                break;
+            }
+            chosen = candidate;
+        }
+        return chosen;
+    }
+
+    private static Timer queueWaitTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("password.hashing.queue.wait")
+                .description("Time a hashing task waited for a free hashing thread")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    private static Timer durationTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("password.hashing.duration")
+                .description("Time spent computing BCrypt")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    private static ThreadFactory namedThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "password-hashing-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
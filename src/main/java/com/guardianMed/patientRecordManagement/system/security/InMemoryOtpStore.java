@@ -0,0 +1,76 @@
+package com.guardianMed.patientRecordManagement.system.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-node OTP store. Expired entries are ignored on read and purged in the background.
+ */
+@Component
+@ConditionalOnProperty(name = "sprngsec.app.otpStore", havingValue = "memory", matchIfMissing = true)
+public class InMemoryOtpStore implements OtpStore {
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryOtpStore.class);
+
+    private final Map<String, OtpEntry> entries = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService purger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "otp-store-purger");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${sprngsec.app.otpPurgeIntervalSeconds:30}")
+    private long purgeIntervalSeconds = 30;
+
+    @PostConstruct
+    public void start() {
+        purger.scheduleWithFixedDelay(this::purgeExpired, purgeIntervalSeconds, purgeIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        purger.shutdownNow();
+    }
+
+    @Override
+    public void save(String username, OtpEntry entry) {
+        entries.put(username, entry);
+    }
+
+    @Override
+    public Optional<OtpEntry> find(String username) {
+        OtpEntry entry = entries.get(username);
+        if (entry == null || entry.isExpired(Instant.now())) {
+            return Optional.empty();
+        }
+        return Optional.of(entry);
+    }
+
+    @Override
+    public boolean consume(String username, OtpEntry entry) {
+        return entries.remove(username, entry);
+    }
+
+    @Override
+    public void purgeExpired() {
+        Instant now = Instant.now();
+        int before = entries.size();
+        entries.values().removeIf(entry -> entry.isExpired(now));
+        int purged = before - entries.size();
+        if (purged > 0) {
+            logger.debug("Purged {} expired OTP(s)", purged);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.guardianMed.patientRecordManagement.system.security;
+
+import com.guardianMed.patientRecordManagement.system.models.OtpToken;
+import com.guardianMed.patientRecordManagement.system.repositories.OtpTokenRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OTP store shared by every node, backed by a collection with a TTL index on expiresAt.
+ */
+@Component
+@ConditionalOnProperty(name = "sprngsec.app.otpStore", havingValue = "mongo")
+public class MongoOtpStore implements OtpStore {
+    private final OtpTokenRepository otpTokenRepository;
+    private final MongoTemplate mongoTemplate;
+
+    @Autowired
+    public MongoOtpStore(OtpTokenRepository otpTokenRepository, MongoTemplate mongoTemplate) {
+        this.otpTokenRepository = otpTokenRepository;
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @PostConstruct
+    public void ensureTtlIndex() {
+        mongoTemplate.indexOps(OtpToken.class)
+                .ensureIndex(new Index().on("expiresAt", Sort.Direction.ASC).expire(0, TimeUnit.SECONDS));
+    }
+
+    @Override
+    public void save(String username, OtpEntry entry) {
+        otpTokenRepository.save(new OtpToken(username, entry.otpHash(), entry.attemptId(), Date.from(entry.expiresAt())));
+    }
+
+    @Override
+    public Optional<OtpEntry> find(String username) {
+        // The TTL monitor only runs once a minute, so expiry is still checked on read
+        return otpTokenRepository.findById(username)
+                .map(token -> new OtpEntry(token.getOtpHash(), token.getAttemptId(), token.getExpiresAt().toInstant()))
+                .filter(entry -> !entry.isExpired(Instant.now()));
+    }
+
+    @Override
+    public boolean consume(String username, OtpEntry entry) {
+        Query query = new Query(Criteria.where("_id").is(username).and("otpHash").is(entry.otpHash()));
+        return mongoTemplate.remove(query, OtpToken.class).getDeletedCount() == 1;
+    }
+
+    @Override
+    public void purgeExpired() {
+        mongoTemplate.remove(new Query(Criteria.where("expiresAt").lt(new Date())), OtpToken.class);
+    }
+}
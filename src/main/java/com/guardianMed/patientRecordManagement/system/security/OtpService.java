@@ -1,58 +1,101 @@
 package com.guardianMed.patientRecordManagement.system.security;
 
-import java.util.Calendar;
-import java.util.Date;
-import java.util.Random;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
 
-import com.guardianMed.patientRecordManagement.system.controllers.AuthController;
-import com.guardianMed.patientRecordManagement.system.models.User;
-import com.guardianMed.patientRecordManagement.system.repositories.UserRepository;
 import com.guardianMed.patientRecordManagement.system.services.EmailService;
+import com.guardianMed.patientRecordManagement.system.services.NotificationTemplates;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
 public class OtpService {
     private static final Logger logger = LoggerFactory.getLogger(OtpService.class);
+    private final SecureRandom random = new SecureRandom();
     @Autowired
-    private UserRepository userRepository;
+    private OtpStore otpStore;
     @Autowired
     private EmailService emailService;
+    @Autowired
+    private NotificationTemplates notificationTemplates;
+    @Value("${sprngsec.app.otpValiditySeconds:120}")
+    private long otpValiditySeconds = 120;
 
     public String generateOtp() {
-        Random random = new Random();
         int otp = 100000 + random.nextInt(900000);
         return String.valueOf(otp);
     }
 
+    /**
+     * Keep a hash of the OTP for the user until it is redeemed or expires.
+     * Returns the id of this OTP attempt, which the login challenge token carries.
+     */
+    public String storeOtp(String username, String otp) {
+        String attemptId = UUID.randomUUID().toString();
+        Instant expiresAt = Instant.now().plus(Duration.ofSeconds(otpValiditySeconds));
+        otpStore.save(username, new OtpStore.OtpEntry(hashOtp(username, otp), attemptId, expiresAt));
+        return attemptId;
+    }
+
     public void sendOtp(String otp, String destination) {
         String subject = "Your One-Time Password (OTP) for Login";
-        String message = "Your OTP for login is: " + otp + ".\n\nPlease use this OTP to complete the login process. This OTP is valid for 2 minutes.\n\nIf you did not request this OTP, please contact us immediately to secure your account.\n\nBest regards,\nThe GuardianMed Team";
-        emailService.sendEmail(destination, subject, message);
+        long validMinutes = Math.max(1, (otpValiditySeconds + 59) / 60);
+        emailService.sendEmail(destination, subject, notificationTemplates.render("otp", Map.of("otp", otp, "validMinutes", validMinutes)));
     }
+
     public boolean validateOtp(String username, String otp) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        return validateOtp(username, otp, null);
+    }
 
-        String userOtp = user.getOtp();
-        if (userOtp == null) {
-            logger.info("OTP is not set for the user");
+    /**
+     * Validate the OTP for the given attempt; a null attemptId accepts whichever attempt is pending.
+     */
+    public boolean validateOtp(String username, String otp, String attemptId) {
+        Optional<OtpStore.OtpEntry> entry = otpStore.find(username);
+        if (entry.isEmpty()) {
+            logger.info("OTP is not set for the user or has expired");
             return false;
         }
 
-        if (!userOtp.equals(otp)) {
+        if (attemptId != null && !attemptId.equals(entry.get().attemptId())) {
+            logger.info("OTP belongs to a different login attempt");
+            return false;
+        }
+
+        byte[] expected = entry.get().otpHash().getBytes(StandardCharsets.UTF_8);
+        byte[] actual = hashOtp(username, otp).getBytes(StandardCharsets.UTF_8);
+        if (otp == null || !MessageDigest.isEqual(expected, actual)) {
             logger.info("OTP does not match");
             return false;
         }
 
-        Date otpExpiryTime = user.getOtpExpiryTime();
-        if (otpExpiryTime == null || otpExpiryTime.before(new Date())) {
+        if (!otpStore.consume(username, entry.get())) {
+            logger.info("OTP was already used");
             return false;
         }
         logger.info("OTP verified");
         return true;
     }
 
+    private static String hashOtp(String username, String otp) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((username + ":" + otp).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
 }
@@ -0,0 +1,31 @@
+package com.guardianMed.patientRecordManagement.system.security;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Storage for pending login OTPs, keyed by username. Only a hash of the OTP is ever stored.
+ */
+public interface OtpStore {
+
+    void save(String username, OtpEntry entry);
+
+    /**
+     * Return the pending entry for the user, if one exists and has not expired.
+     */
+    Optional<OtpEntry> find(String username);
+
+    /**
+     * Remove the entry only if it is still the one that was read, so a code can be redeemed once.
+     */
+    boolean consume(String username, OtpEntry entry);
+
+    void purgeExpired();
+
+    record OtpEntry(String otpHash, String attemptId, Instant expiresAt) {
+
+        public boolean isExpired(Instant now) {
+            return !expiresAt.isAfter(now);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.guardianMed.patientRecordManagement.system.security;
+
+import com.guardianMed.patientRecordManagement.system.models.ERole;
+import com.guardianMed.patientRecordManagement.system.models.Role;
+import com.guardianMed.patientRecordManagement.system.repositories.RoleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Immutable, enum-indexed view of the roles collection. It is loaded once at startup, creating any
+ * ERole that is missing, and only reloaded when an admin asks for it.
+ */
+@Component
+public class RoleRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(RoleRegistry.class);
+
+    private final RoleRepository roleRepository;
+    private volatile Map<ERole, Role> roles;
+
+    @Autowired
+    public RoleRegistry(RoleRepository roleRepository) {
+        this.roleRepository = roleRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            refresh();
+        } catch (DataAccessException e) {
+            logger.error("Could not load roles at startup, they will be loaded on first use: {}", e.getMessage());
+        }
+    }
+
+    public synchronized Map<ERole, Role> refresh() {
+        EnumMap<ERole, Role> loaded = new EnumMap<>(ERole.class);
+        for (Role role : roleRepository.findAll()) {
+            if (role.getName() == null) {
+                continue;
+            }
+            if (loaded.putIfAbsent(role.getName(), role) != null) {
+                logger.warn("Duplicate role document for {} with ID: {}", role.getName(), role.getId());
+            }
+        }
+        for (ERole name : ERole.values()) {
+            if (!loaded.containsKey(name)) {
+                Role role = new Role();
+                role.setName(name);
+                loaded.put(name, roleRepository.save(role));
+                logger.info("Created missing role {}", name);
+            }
+        }
+        roles = Collections.unmodifiableMap(loaded);
+        logger.info("Role registry loaded with {} role(s)", loaded.size());
+        return roles;
+    }
+
+    public Role get(ERole name) {
+        Map<ERole, Role> current = roles;
+        if (current == null) {
+            current = refresh();
+        }
+        Role role = current.get(name);
+        if (role == null) {
+            throw new RuntimeException("Error: Role is not found.");
+        }
+        return role;
+    }
+}
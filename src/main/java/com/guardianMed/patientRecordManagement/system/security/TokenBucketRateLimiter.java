@@ -0,0 +1,110 @@
+package com.guardianMed.patientRecordManagement.system.security;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket per key. Each bucket is a single AtomicLong holding the time at which it will be
+ * full again (the GCRA form of a token bucket), so a request costs one CAS and never takes a lock.
+ * A bucket that is already full carries no state, which is what lets idle keys be evicted safely.
+ * <p>
+ * At most maxKeys buckets are tracked. Once that many exist, keys without a bucket share a single overflow
+ * bucket until the background sweep frees room, so a flood of new keys is limited as one client instead of
+ * growing the map or scanning it on the request thread.
+ */
+public class TokenBucketRateLimiter {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int maxKeys;
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicInteger tracked = new AtomicInteger();
+    private final AtomicLong overflow;
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    /**
+     * @param permitsPerMinute sustained rate per key
+     * @param burst            requests a key may make back to back from a full bucket
+     * @param maxKeys          keys with a bucket of their own; further keys share the overflow bucket
+     */
+    public TokenBucketRateLimiter(int permitsPerMinute, int burst, int maxKeys) {
+        this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / permitsPerMinute;
+        this.burstNanos = intervalNanos * burst;
+        this.maxKeys = maxKeys;
+        this.overflow = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Take a token for the key. Returns 0 if the request is allowed, otherwise the nanoseconds until it would be.
+     */
+    public long tryAcquire(String key) {
+        return tryAcquire(key, System.nanoTime());
+    }
+
+    /**
+     * Same as {@link #tryAcquire(String)} against a caller supplied System.nanoTime() reading.
+     */
+    public long tryAcquire(String key, long now) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = bucketFor(key, now);
+        }
+
+        while (true) {
+            long fullAt = bucket.get();
+            long next = Math.max(fullAt - now, 0) + now + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private AtomicLong bucketFor(String key, long now) {
+        // Reserve a slot first so concurrent new keys can never take the map past maxKeys
+        if (tracked.incrementAndGet() > maxKeys) {
+            tracked.decrementAndGet();
+            return overflow;
+        }
+        AtomicLong created = new AtomicLong(now);
+        AtomicLong existing = buckets.putIfAbsent(key, created);
+        if (existing != null) {
+            tracked.decrementAndGet();
+            return existing;
+        }
+        return created;
+    }
+
+    /**
+     * Drop buckets that have refilled completely; they hold no information a fresh bucket would not.
+     */
+    public void evictIdle() {
+        evictIdle(System.nanoTime());
+    }
+
+    public void evictIdle(long now) {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            for (Map.Entry<String, AtomicLong> entry : buckets.entrySet()) {
+                if (entry.getValue().get() - now <= 0 && buckets.remove(entry.getKey(), entry.getValue())) {
+                    tracked.decrementAndGet();
+                }
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+}
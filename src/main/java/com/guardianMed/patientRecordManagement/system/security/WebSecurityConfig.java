@@ -4,6 +4,7 @@ import com.guardianMed.patientRecordManagement.system.security.jwt.AuthEntryPoin
 import com.guardianMed.patientRecordManagement.system.security.jwt.AuthTokenFilter;
 import com.guardianMed.patientRecordManagement.system.services.UserDetailsServiceImpl;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -13,8 +14,6 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 @Configuration
 @EnableWebSecurity
@@ -24,15 +23,32 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     UserDetailsServiceImpl userDetailsService;
     @Autowired
     private AuthEntryPoint unauthorizedHandler;
+    @Autowired
+    private BoundedPasswordEncoder passwordEncoder;
 
     @Bean
     public AuthTokenFilter authenticationJwtTokenFilter() {
         return new AuthTokenFilter();
     }
 
+    @Bean
+    public AuthRateLimitFilter authRateLimitFilter() {
+        return new AuthRateLimitFilter();
+    }
+
+    // Filter beans are also registered with the servlet container by default; this one only belongs in the security chain
+    @Bean
+    public FilterRegistrationBean<AuthRateLimitFilter> authRateLimitFilterRegistration(AuthRateLimitFilter authRateLimitFilter) {
+        FilterRegistrationBean<AuthRateLimitFilter> registration = new FilterRegistrationBean<>(authRateLimitFilter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
     @Override
     public void configure(AuthenticationManagerBuilder authenticationManagerBuilder) throws Exception {
-        authenticationManagerBuilder.userDetailsService(userDetailsService).passwordEncoder(passwordEncoder());
+        authenticationManagerBuilder.userDetailsService(userDetailsService)
+                .passwordEncoder(passwordEncoder)
+                .userDetailsPasswordManager(userDetailsService);
     }
 
     @Bean
@@ -41,11 +57,6 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
         return super.authenticationManagerBean();
     }
 
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
-    }
-
     @Override
     protected void configure(HttpSecurity http) throws Exception {
         http.cors().and().csrf().disable()
@@ -63,14 +74,19 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
 //             patients
                 .antMatchers("/patients/all").hasAnyAuthority("ROLE_SUPER_ADMIN","ROLE_ADMIN")
+                .antMatchers("/patients/all/stream").hasAnyAuthority("ROLE_SUPER_ADMIN","ROLE_ADMIN")
                 .antMatchers("/patients/add").hasAnyAuthority("ROLE_SUPER_ADMIN")
+                .antMatchers("/patients/import").hasAnyAuthority("ROLE_SUPER_ADMIN")
+                .antMatchers("/patients/search").hasAnyAuthority("ROLE_SUPER_ADMIN","ROLE_ADMIN")
                 .antMatchers("/patients/byNIC/{patientNIC}").hasAnyAuthority("ROLE_SUPER_ADMIN","ROLE_ADMIN")
+                .antMatchers("/patients/{patientNIC}/overview").hasAnyAuthority("ROLE_SUPER_ADMIN","ROLE_ADMIN")
                 .antMatchers("/patients/update/{patientNIC}").hasAnyAuthority("ROLE_SUPER_ADMIN")
                 .antMatchers("/patients/{patientNIC}").hasAnyAuthority("ROLE_SUPER_ADMIN","ROLE_ADMIN")
 
 //             prescriptions
                 .antMatchers("/prescription/add").hasAnyAuthority("ROLE_SUPER_ADMIN")
                 .antMatchers("/prescription/all").hasAnyAuthority("ROLE_SUPER_ADMIN","ROLE_ADMIN")
+                .antMatchers("/prescription/all/stream").hasAnyAuthority("ROLE_SUPER_ADMIN","ROLE_ADMIN")
                 .antMatchers("/prescription/byID/{id}").hasAnyAuthority("ROLE_SUPER_ADMIN","ROLE_ADMIN")
                 .antMatchers("/prescription/byNIC/{patientNIC}").hasAnyAuthority("ROLE_SUPER_ADMIN","ROLE_ADMIN")
                 .antMatchers("/prescription/update/{id}").hasAnyAuthority("ROLE_SUPER_ADMIN")
@@ -81,15 +97,23 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
                 .antMatchers("/api/admin/reset-password/{id}").hasAnyAuthority("ROLE_SUPER_ADMIN")
                 .antMatchers("/api/admin/delete/{username}").hasAnyAuthority("ROLE_SUPER_ADMIN")
                 .antMatchers("/api/admin/all").hasAnyAuthority("ROLE_SUPER_ADMIN")
+                .antMatchers("/api/admin/roles/refresh").hasAnyAuthority("ROLE_SUPER_ADMIN")
 
 //             Bills
                 .antMatchers("/bills/add/{prescriptionId}").hasAnyAuthority("ROLE_ADMIN")
                 .antMatchers("/bills/all").hasAnyAuthority("ROLE_ADMIN")
+                .antMatchers("/bills/all/stream").hasAnyAuthority("ROLE_ADMIN")
                 .antMatchers("/bills/byID/{id}").hasAnyAuthority("ROLE_ADMIN")
                 .antMatchers("/bills/{id}").hasAnyAuthority("ROLE_ADMIN")
 
+//             Medication catalog
+                .antMatchers("/medications/import").hasAnyAuthority("ROLE_SUPER_ADMIN")
+                .antMatchers("/medications/all").hasAnyAuthority("ROLE_SUPER_ADMIN","ROLE_ADMIN")
+                .antMatchers("/medications/{id}").hasAnyAuthority("ROLE_SUPER_ADMIN","ROLE_ADMIN")
+
                 .anyRequest().authenticated();
 
+        http.addFilterBefore(authRateLimitFilter(), UsernamePasswordAuthenticationFilter.class);
         http.addFilterBefore(authenticationJwtTokenFilter(), UsernamePasswordAuthenticationFilter.class);
     }
 }
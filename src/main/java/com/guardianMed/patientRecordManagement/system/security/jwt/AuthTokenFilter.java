@@ -1,9 +1,12 @@
 package com.guardianMed.patientRecordManagement.system.security.jwt;
 
+import com.guardianMed.patientRecordManagement.system.services.UserDetailsImpl;
 import com.guardianMed.patientRecordManagement.system.services.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -22,15 +25,17 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     private JwtUtils jwtUtils;
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
+    @Value("${sprngsec.app.jwtStatelessPrincipal:true}")
+    private boolean statelessPrincipal;
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-                String username = jwtUtils.getUserNameFromJwtToken(jwt);
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            Claims claims = jwt != null ? jwtUtils.parseJwtToken(jwt) : null;
+            if (claims != null) {
+                UserDetails userDetails = resolveUserDetails(claims);
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(userDetails, null,
                         userDetails.getAuthorities());
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -42,6 +47,20 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * In stateless mode the principal comes straight from the token claims; tokens without
+     * embedded roles, or deployments that need the live user record, still go to the user store.
+     */
+    private UserDetails resolveUserDetails(Claims claims) {
+        if (statelessPrincipal) {
+            UserDetailsImpl userDetails = jwtUtils.buildUserDetailsFromClaims(claims);
+            if (userDetails != null) {
+                return userDetails;
+            }
+        }
+        return userDetailsService.loadUserByUsername(claims.getSubject());
+    }
+
     private String parseJwt(HttpServletRequest request) {
         String headerAuth = request.getHeader("Authorization");
 
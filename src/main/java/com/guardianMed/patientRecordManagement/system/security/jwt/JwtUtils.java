@@ -4,38 +4,112 @@ import com.guardianMed.patientRecordManagement.system.services.UserDetailsImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 
 import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
 import io.jsonwebtoken.*;
 
 @Component
 public class JwtUtils {
     private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
+    private static final String CLAIM_USER_ID = "id";
+    private static final String CLAIM_ROLES = "roles";
+    private static final String CLAIM_TOKEN_TYPE = "tokenType";
+    private static final String CLAIM_ATTEMPT_ID = "attempt";
+    private static final String LOGIN_CHALLENGE_TYPE = "login-challenge";
+
     private String jwtSecret = "myPass";
 
     private int jwtExpirationMs = 86400000;
 
+    private int challengeExpirationMs = 120000;
+
+    // The parser holds no per-token state, so one instance is shared by every request
+    private final JwtParser jwtParser = Jwts.parser().setSigningKey(jwtSecret);
+
     public String generateJwtToken(Authentication authentication) {
 
         UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
+        List<String> roles = userPrincipal.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toList());
 
         return Jwts.builder()
                 .setSubject((userPrincipal.getUsername()))
+                .claim(CLAIM_USER_ID, userPrincipal.getId())
+                .claim(CLAIM_ROLES, roles)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
                 .signWith(SignatureAlgorithm.HS512, jwtSecret)
                 .compact();
     }
 
+    /**
+     * Short-lived token returned by signin once the password has been checked. It names the user and
+     * the OTP attempt, so verify-otp can trust it instead of checking the password a second time.
+     */
+    public String generateLoginChallengeToken(String username, String attemptId) {
+        Date now = new Date();
+        return Jwts.builder()
+                .setSubject(username)
+                .claim(CLAIM_TOKEN_TYPE, LOGIN_CHALLENGE_TYPE)
+                .claim(CLAIM_ATTEMPT_ID, attemptId)
+                .setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + challengeExpirationMs))
+                .signWith(SignatureAlgorithm.HS512, jwtSecret)
+                .compact();
+    }
+
+    /**
+     * Return the claims of a valid login challenge token, or null if it is invalid, expired or not a challenge.
+     */
+    public Claims parseLoginChallengeToken(String challengeToken) {
+        Claims claims = parseSignedToken(challengeToken);
+        if (claims == null || !isLoginChallenge(claims)) {
+            return null;
+        }
+        return claims;
+    }
+
+    public String getAttemptIdFromChallenge(Claims claims) {
+        return claims.get(CLAIM_ATTEMPT_ID, String.class);
+    }
+
     public String getUserNameFromJwtToken(String token) {
-        return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getSubject();
+        return jwtParser.parseClaimsJws(token).getBody().getSubject();
     }
 
     public boolean validateJwtToken(String authToken) {
+        return parseJwtToken(authToken) != null;
+    }
+
+    /**
+     * Verify the token signature and expiry once and return its claims, or null if the token is not valid.
+     * Login challenge tokens are rejected here so they can never be used as access tokens.
+     */
+    public Claims parseJwtToken(String authToken) {
+        Claims claims = parseSignedToken(authToken);
+        if (claims != null && isLoginChallenge(claims)) {
+            logger.error("Login challenge token used as an access token");
+            return null;
+        }
+        return claims;
+    }
+
+    private boolean isLoginChallenge(Claims claims) {
+        return LOGIN_CHALLENGE_TYPE.equals(claims.get(CLAIM_TOKEN_TYPE, String.class));
+    }
+
+    private Claims parseSignedToken(String authToken) {
         try {
-            Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-            return true;
+            return jwtParser.parseClaimsJws(authToken).getBody();
+        } catch (SignatureException e) {
+            logger.error("Invalid JWT signature: {}", e.getMessage());
         } catch (MalformedJwtException e) {
             logger.error("Invalid JWT token: {}", e.getMessage());
         } catch (ExpiredJwtException e) {
@@ -46,6 +120,24 @@ public class JwtUtils {
             logger.error("JWT claims string is empty: {}", e.getMessage());
         }
 
-        return false;
+        return null;
+    }
+
+    /**
+     * Build the request principal from the id and role claims written by generateJwtToken.
+     * Returns null for tokens issued without those claims so the caller can fall back to a user lookup.
+     */
+    public UserDetailsImpl buildUserDetailsFromClaims(Claims claims) {
+        String id = claims.get(CLAIM_USER_ID, String.class);
+        Object roles = claims.get(CLAIM_ROLES);
+        if (id == null || !(roles instanceof List)) {
+            return null;
+        }
+
+        List<GrantedAuthority> authorities = ((List<?>) roles).stream()
+                .map(role -> new SimpleGrantedAuthority(String.valueOf(role)))
+                .collect(Collectors.toList());
+
+        return new UserDetailsImpl(id, claims.getSubject(), null, null, authorities);
     }
 }
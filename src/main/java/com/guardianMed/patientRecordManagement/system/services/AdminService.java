@@ -1,18 +1,23 @@
 package com.guardianMed.patientRecordManagement.system.services;
 
 import com.guardianMed.patientRecordManagement.system.exception.NotFoundException;
-import com.guardianMed.patientRecordManagement.system.repositories.RoleRepository;
+import com.guardianMed.patientRecordManagement.system.models.Role;
+import com.guardianMed.patientRecordManagement.system.payload.response.AdminResponse;
+import com.guardianMed.patientRecordManagement.system.payload.response.CursorPage;
+import com.guardianMed.patientRecordManagement.system.security.RoleRegistry;
 import com.guardianMed.patientRecordManagement.system.repositories.UserRepository;
 import com.guardianMed.patientRecordManagement.system.models.ERole;
 import com.guardianMed.patientRecordManagement.system.models.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,14 +26,19 @@ public class AdminService {
     private static final Logger logger = LoggerFactory.getLogger(AdminService.class);
 
     private final UserRepository userRepository;
-    private final RoleRepository roleRepository;
+    private final RoleRegistry roleRegistry;
     private final PasswordEncoder passwordEncoder;
+    private final UserDetailsServiceImpl userDetailsService;
+    private final FieldProjector fieldProjector;
 
     @Autowired
-    public AdminService(UserRepository userRepository, RoleRepository roleRepository, PasswordEncoder passwordEncoder) {
+    public AdminService(UserRepository userRepository, RoleRegistry roleRegistry, PasswordEncoder passwordEncoder,
+                        UserDetailsServiceImpl userDetailsService, FieldProjector fieldProjector) {
         this.userRepository = userRepository;
-        this.roleRepository = roleRepository;
+        this.roleRegistry = roleRegistry;
         this.passwordEncoder = passwordEncoder;
+        this.userDetailsService = userDetailsService;
+        this.fieldProjector = fieldProjector;
     }
 
     public User getAdminById(String id) {
@@ -41,6 +51,17 @@ public class AdminService {
         }
     }
 
+    /**
+     * Get an admin by ID with only the requested AdminResponse fields; the password and OTP are never read
+     */
+    public AdminResponse getAdminById(String id, String fields) {
+        AdminResponse admin = fieldProjector.findOne(AdminResponse.class, User.class, Criteria.where("_id").is(id), fields);
+        if (admin == null) {
+            throw new NotFoundException("Admin not found");
+        }
+        return admin;
+    }
+
     public User getAdminByName(String name) throws NotFoundException {
         Optional<User> adminOptional = userRepository.findByUsername(name);
         User admin = adminOptional.orElseThrow(() -> new NotFoundException("Admin not found"));
@@ -68,11 +89,14 @@ public class AdminService {
                 throw new IllegalArgumentException("Email already exists");
             }
 
+            String previousUsername = admin.getUsername();
             admin.setUsername(adminDetails.getUsername());
             admin.setEmail(adminDetails.getEmail());
 
             logger.info("Updating admin with ID: {}", admin.getId());
             User updatedAdmin = userRepository.save(admin);
+            userDetailsService.evict(previousUsername);
+            userDetailsService.evict(updatedAdmin.getUsername());
             logger.info("Admin updated successfully");
 
             return updatedAdmin;
@@ -104,6 +128,7 @@ public class AdminService {
 
         logger.info("Resetting password for admin with ID: {}", admin.getId());
         userRepository.save(admin);
+        userDetailsService.evict(admin.getUsername());
         logger.info("Password reset successful");
     }
 
@@ -121,6 +146,7 @@ public class AdminService {
 
             logger.info("Deleting admin with username: {}", username);
             userRepository.delete(admin);
+            userDetailsService.evict(username);
             logger.info("Admin deleted successfully");
 
             return ResponseEntity.ok().body("Admin with username " + username + " deleted successfully");
@@ -143,8 +169,24 @@ public class AdminService {
 //        return userInput.equals("yes");
 //    }
 
-    public List<User> getAllAdmins() {
-        return userRepository.findAllByRoles_Name(String.valueOf(ERole.ROLE_ADMIN));
+    /**
+     * Admin listings are always projected to AdminResponse, so password and OTP fields are never fetched
+     */
+    public List<AdminResponse> getAllAdmins(String fields) {
+        return fieldProjector.find(AdminResponse.class, User.class, Criteria.where("roles.name").is(ERole.ROLE_ADMIN), fields);
+    }
+
+    public CursorPage<AdminResponse> getAllAdmins(String cursor, Integer limit, String sort, String fields) {
+        return fieldProjector.page(AdminResponse.class, User.class, Criteria.where("roles.name").is(ERole.ROLE_ADMIN),
+                AdminResponse::getId, fields, cursor, limit, sort);
+    }
+
+    /**
+     * Reload the role registry from the roles collection
+     */
+    public Collection<Role> refreshRoles() {
+        logger.info("Refreshing role registry");
+        return roleRegistry.refresh().values();
     }
 
     public void resetPassword(String id) {
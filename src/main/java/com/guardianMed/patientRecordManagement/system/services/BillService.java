@@ -1,33 +1,48 @@
 package com.guardianMed.patientRecordManagement.system.services;
 
 import com.guardianMed.patientRecordManagement.system.models.Bill;
+import com.guardianMed.patientRecordManagement.system.models.Patient;
 import com.guardianMed.patientRecordManagement.system.models.Prescription;
+import com.guardianMed.patientRecordManagement.system.models.TaxLine;
 import com.guardianMed.patientRecordManagement.system.payload.requests.BillRequest;
+import com.guardianMed.patientRecordManagement.system.payload.response.BillResponse;
+import com.guardianMed.patientRecordManagement.system.payload.response.CursorPage;
 import com.guardianMed.patientRecordManagement.system.repositories.BillRepository;
-import com.guardianMed.patientRecordManagement.system.repositories.PrescriptionRepository;
 import com.guardianMed.patientRecordManagement.system.models.Medication;
+import com.mongodb.MongoException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
 public class BillService {
 
     private static final Logger log = (Logger) LoggerFactory.getLogger(Bill.class);
-    @Autowired
-    private BillRepository billRepository;
+    private static final int TRANSACTION_ATTEMPTS = 3;
 
     @Autowired
-    private PrescriptionRepository prescriptionRepository;
+    private BillRepository billRepository;
 
     @Autowired
     private PrescriptionService prescriptionService;
@@ -38,135 +53,282 @@ public class BillService {
     @Autowired
     private PatientService patientService;
 
+    @Autowired
+    private KeysetPager keysetPager;
 
-    //create a bill
-    public Bill createBillFromRequest(Authentication authentication, BillRequest billRequest, String prescriptionId) {
-        Bill bill = null;
+    @Autowired
+    private DocumentStreamer documentStreamer;
 
-        String userId = authentication.getName(); // Get the user ID from the authenticated user
+    @Autowired
+    private FieldProjector fieldProjector;
 
-        // Retrieve patient NIC and patient name from the prescription
-        Prescription existingPrescription = prescriptionService.getPrescriptionById(prescriptionId);
-        if (existingPrescription == null) {
-            log.error("Prescription not found");
-        } else if (existingPrescription.getState().equals(Prescription.State.INACTIVE)) {
-            log.error("Prescription is already inactive");
-        } else {
-            String patientNIC = existingPrescription.getPatientNIC();
-            String patientName = existingPrescription.getPatientName();
-            double totalAmount = calculateTotalAmount(billRequest.getMedications());
+    @Autowired
+    private RecordArchiver recordArchiver;
 
-            bill = new Bill();
-            bill.setAdminId(userId); // Set the admin ID to the logged-in user ID
-            bill.setCustomerBillId(generateBillId());
-            bill.setPatientNIC(patientNIC);
-            bill.setPatientName(patientName);
-            bill.setDate(LocalDate.now());
-            bill.setMedications(billRequest.getMedications());
-            bill.setTotalAmount(totalAmount);
-            bill.setDoctorsMedication(existingPrescription.getMedications());
+    @Autowired
+    private MedicationCatalog medicationCatalog;
 
-            log.info("Bill created with ID: " + bill.getCustomerBillId());
+    @Autowired
+    private SequenceService sequenceService;
 
-            existingPrescription.setState(Prescription.State.INACTIVE);
-            prescriptionRepository.save(existingPrescription);
+    @Autowired
+    private NotificationTemplates notificationTemplates;
 
-            bill = billRepository.save(bill); // Save the bill and retrieve its ID
+    // Optional branch code put in every bill number, so each branch has its own series
+    @Value("${sprngsec.app.billIdBranch:}")
+    private String billIdBranch;
 
-            log.info("Bill saved with ID: " + bill.getId());
-            // Retrieve the prescription and bill details
-            String prescriptionDetails = getPrescriptionDetails(existingPrescription);
-            String billDetails = getBillDetails(bill);
+    // Start a new series each day: BILL-20240601-000001
+    @Value("${sprngsec.app.billIdPerDay:true}")
+    private boolean billIdPerDay;
 
-            // Construct the message with prescription and bill details
-            try {
-                // Construct the message with prescription and bill details
-                StringBuilder messageBuilder = new StringBuilder();
-                messageBuilder.append("Dear Patient,\n");
-                messageBuilder.append("We hope this email finds you well. We are writing to confirm the successful payment for your recent medical consultation and prescribed \n");
-                messageBuilder.append("medications. Thank you for promptly settling the bill. Please find below the summary of prescription details and payment confirmation:\n\n");
-                messageBuilder.append(prescriptionDetails).append("\n");
-                messageBuilder.append("Bill Details:\n");
-                messageBuilder.append(billDetails).append("\n");
-                messageBuilder.append("Should you have any further queries or require additional information, please do not hesitate to contact our dedicated support team \n");
-                messageBuilder.append("at +9481 456 7890 or via email at guardianMed@gmail.com. We are here to assist you with any concerns you may have.\n\n");
-                messageBuilder.append("Thank you once again for choosing our services. We value your trust in our healthcare provider and remain committed \n");
-                messageBuilder.append("to delivering high-quality care to our patients.\n\n");
-                messageBuilder.append("Wishing you continued good health and well-being.\n\n");
-                messageBuilder.append("Warm regards,\n\n");
-                messageBuilder.append("Healthcare Provider/GuardianMed\n");
+    // Taxes added to every bill as name:basisPoints pairs, e.g. VAT:1800,NBT:200 (1800 = 18%)
+    @Value("${sprngsec.app.billTaxRates:}")
+    private String billTaxRates;
 
+    // The MongoTransactionManager from MongoConfig, only present with sprngsec.app.billingTransactions=true
+    @Autowired(required = false)
+    private PlatformTransactionManager transactionManager;
 
+    private TransactionTemplate transactionTemplate;
 
-                String patientEmail = patientService.getEmailByPatientNIC(patientNIC);// Replace with the patient's email address
-                String subject = "Your Bill and Prescription Details";
-                String message = messageBuilder.toString();
-                emailService.sendEmail(patientEmail, subject, message);
+    private String[] taxNames = new String[0];
+    private int[] taxBasisPoints = new int[0];
+
+    @PostConstruct
+    public void initTaxRates() {
+        if (billTaxRates == null || billTaxRates.isBlank()) {
+            return;
+        }
+        String[] rates = billTaxRates.split(",");
+        taxNames = new String[rates.length];
+        taxBasisPoints = new int[rates.length];
+        for (int i = 0; i < rates.length; i++) {
+            String[] rate = rates[i].split(":");
+            if (rate.length != 2 || rate[0].isBlank()) {
+                throw new IllegalStateException("sprngsec.app.billTaxRates must look like VAT:1800,NBT:200 but was " + billTaxRates);
+            }
+            taxNames[i] = rate[0].trim();
+            taxBasisPoints[i] = Integer.parseInt(rate[1].trim());
+        }
+    }
 
 
-                log.info("Email sent to patient: " + patientEmail);
-            } catch (Exception e) {
+    @PostConstruct
+    public void initTransactions() {
+        if (transactionManager != null) {
+            transactionTemplate = new TransactionTemplate(transactionManager);
+        }
+    }
 
-                log.error("Failed to send email to patient: " + e.getMessage());
+    //create a bill
+    // One pass: the prescription is read once, by the atomic claim (ACTIVE -> INACTIVE), and its embedded patient
+    // supplies the email address. With transactions enabled the claim and the bill insert commit together;
+    // without them a failed insert releases the claim again.
+    public Bill createBillFromRequest(Authentication authentication, BillRequest billRequest, String prescriptionId) {
+        String userId = authentication.getName(); // Get the user ID from the authenticated user
 
+        // Prices come from the catalog, never from the request; an unknown medication is rejected before the claim
+        List<Medication> medications = medicationCatalog.price(billRequest.getMedications());
+        int discountBasisPoints = billRequest.getDiscountBasisPoints() == null ? 0 : billRequest.getDiscountBasisPoints();
+        PricingEngine.LineItems items = new PricingEngine.LineItems(medications.size());
+        for (Medication medication : medications) {
+            items.add(medication.getUnitPriceCents(), medication.getQuantity());
+        }
+        PricingEngine.Totals totals = new PricingEngine.Totals(taxBasisPoints.length);
+        PricingEngine.price(items, discountBasisPoints, taxBasisPoints, totals);
+
+        // Outside the transaction: a block leased by the sequence must never be rolled back while this node uses it
+        String customerBillId = generateBillId();
+
+        Billed billed;
+        if (transactionTemplate != null) {
+            billed = inTransaction(() -> {
+                // Throws NoSuchElementException or IllegalStateException when the prescription cannot be billed
+                Prescription claimed = prescriptionService.claimPrescription(prescriptionId);
+                Bill inserted = billRepository.insert(newBill(claimed, userId, customerBillId, medications, discountBasisPoints, totals));
+                return new Billed(claimed, inserted);
+            });
+        } else {
+            // Throws NoSuchElementException or IllegalStateException when the prescription cannot be billed
+            Prescription claimed = prescriptionService.claimPrescription(prescriptionId);
+            try {
+                Bill inserted = billRepository.insert(newBill(claimed, userId, customerBillId, medications, discountBasisPoints, totals));
+                billed = new Billed(claimed, inserted);
+            } catch (RuntimeException e) {
+                // The insert may have reached the server before the error (a timeout or lost connection); releasing
+                // the claim then would let the prescription be billed twice
+                if (billWasSaved(customerBillId, e)) {
+                    log.error("Failed to confirm bill " + customerBillId + ", keeping prescription " + prescriptionId + " claimed: " + e.getMessage());
+                } else {
+                    log.error("Failed to save bill, releasing prescription " + prescriptionId + ": " + e.getMessage());
+                    prescriptionService.releasePrescription(prescriptionId);
+                }
+                throw e;
             }
+        }
+        Prescription existingPrescription = billed.prescription();
+        Bill bill = billed.bill();
+        String patientNIC = existingPrescription.getPatientNIC();
+
+        log.info("Bill saved with ID: " + bill.getId());
+
+        try {
+            // The prescription embeds the patient; older prescriptions without a copy fall back to a lookup
+            String patientEmail = existingPrescription.getPatient() != null && existingPrescription.getPatient().getEmail() != null
+                    ? existingPrescription.getPatient().getEmail()
+                    : patientService.getEmailByPatientNIC(patientNIC);
+            String subject = "Your Bill and Prescription Details";
+            emailService.sendEmail(patientEmail, subject,
+                    notificationTemplates.render("bill-confirmation", billConfirmation(existingPrescription, bill)));
+
+            log.info("Email queued for patient: " + patientEmail);
+        } catch (Exception e) {
+
+            log.error("Failed to send email to patient: " + e.getMessage());
 
         }
 
         return bill;
     }
 
-    public String generateBillId() {
-        int min = 100;
-        int max = 999;
+    private Bill newBill(Prescription prescription, String userId, String customerBillId, List<Medication> medications,
+                         int discountBasisPoints, PricingEngine.Totals totals) {
+        Bill bill = new Bill();
+        bill.setAdminId(userId); // Set the admin ID to the logged-in user ID
+        bill.setCustomerBillId(customerBillId);
+        bill.setPatientNIC(prescription.getPatientNIC());
+        bill.setPatientName(prescription.getPatientName());
+        bill.setDate(LocalDate.now());
+        bill.setMedications(medications);
+        bill.setSubtotalCents(totals.getSubtotalCents());
+        bill.setDiscountBasisPoints(discountBasisPoints);
+        bill.setDiscountCents(totals.getDiscountCents());
+        List<TaxLine> taxes = new ArrayList<>(taxBasisPoints.length);
+        for (int i = 0; i < taxBasisPoints.length; i++) {
+            taxes.add(new TaxLine(taxNames[i], taxBasisPoints[i], totals.getTaxLineCents(i)));
+        }
+        bill.setTaxes(taxes);
+        bill.setTaxCents(totals.getTaxCents());
+        bill.setTotalCents(totals.getTotalCents());
+        bill.setTotalAmount(PricingEngine.toMajor(totals.getTotalCents()));
+        bill.setDoctorsMedication(prescription.getMedications());
 
-        Random random = new Random();
-        String formattedBillNumber = String.format("%02d", random.nextInt(max - min + 1) + min);
-        return "BILL-" + formattedBillNumber;
+        log.info("Bill created with ID: " + bill.getCustomerBillId());
+        return bill;
     }
 
-    private String getPrescriptionDetails(Prescription prescription) {
-        StringBuilder prescriptionDetailsBuilder = new StringBuilder();
+    // True when the bill is in the collection, or when that cannot be checked and the claim is safer kept
+    private boolean billWasSaved(String customerBillId, RuntimeException insertFailure) {
+        try {
+            return billRepository.existsByCustomerBillId(customerBillId);
+        } catch (RuntimeException e) {
+            insertFailure.addSuppressed(e);
+            return true;
+        }
+    }
 
-//        prescriptionDetailsBuilder.append("Patient NIC: ").append(prescription.getPatientNIC()).append("\n");
-        if (prescription.getPatient() != null) {
-            prescriptionDetailsBuilder.append("Patient Details: ").append("\n");
-            prescriptionDetailsBuilder.append("  Patient Name: ").append(prescription.getPatient().getPatientName()).append("\n");
-            prescriptionDetailsBuilder.append("  Patient NIC: ").append(prescription.getPatient().getPatientNIC()).append("\n");
-            prescriptionDetailsBuilder.append("  Gender: ").append(prescription.getPatient().getGender()).append("\n");
-            prescriptionDetailsBuilder.append("  Age: ").append(prescription.getPatient().getAge()).append("\n");
-            prescriptionDetailsBuilder.append("  Address: ").append(prescription.getPatient().getAddress()).append("\n");
-            prescriptionDetailsBuilder.append("  Email: ").append(prescription.getPatient().getEmail()).append("\n");
-            prescriptionDetailsBuilder.append("  Contact Number: ").append(prescription.getPatient().getContactNumber()).append("\n\n");
+    // Runs the work in a Mongo transaction, retrying when the server labels the failure transient,
+    // e.g. a write conflict with another request billing the same prescription
+    private <T> T inTransaction(Supplier<T> work) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (RuntimeException e) {
+                if (attempt >= TRANSACTION_ATTEMPTS || !hasErrorLabel(e, MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)) {
+                    throw e;
+                }
+                log.warn("Retrying billing transaction after a transient error: " + e.getMessage());
+            }
+        }
+    }
 
+    private static boolean hasErrorLabel(Throwable e, String label) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoException mongoException && mongoException.hasErrorLabel(label)) {
+                return true;
+            }
         }
-//        prescriptionDetailsBuilder.append("Prescription Details: ").append("\n");
-        prescriptionDetailsBuilder.append("Prescription ID: ").append(prescription.getId()).append("\n");
-        prescriptionDetailsBuilder.append("Date: ").append(prescription.getDate()).append("\n");
-        prescriptionDetailsBuilder.append("Doctor ID: ").append(prescription.getDoctorID()).append("\n");
-        prescriptionDetailsBuilder.append("Doctor Name: ").append(prescription.getDoctorName()).append("\n");
-        prescriptionDetailsBuilder.append("Diagnosis: ").append(prescription.getDiagnosis()).append("\n");
-        prescriptionDetailsBuilder.append("Medications: ").append(prescription.getMedications()).append("\n");
-        prescriptionDetailsBuilder.append("Instructions: ").append(prescription.getInstructions()).append("\n");// Include other prescription details as needed
-        return prescriptionDetailsBuilder.toString();
+        return false;
+    }
+
+    private record Billed(Prescription prescription, Bill bill) {
     }
 
-    private String getBillDetails(Bill bill) {
-        StringBuilder billDetailsBuilder = new StringBuilder();
-//        billDetailsBuilder.append("Bill Details: ").append("\n");
-        billDetailsBuilder.append("Bill ID: ").append(bill.getCustomerBillId()).append("\n");
-        billDetailsBuilder.append("Admin ID: ").append(bill.getAdminId()).append("\n");
-        billDetailsBuilder.append("Patient NIC: ").append(bill.getPatientNIC()).append("\n");
-        billDetailsBuilder.append("Patient Name: ").append(bill.getPatientName()).append("\n");
-        billDetailsBuilder.append("Date: ").append(bill.getDate()).append("\n");
-        billDetailsBuilder.append("Prescribed medications").append(bill.getDoctorsMedication()).append("\n");
-        billDetailsBuilder.append("Issued medications: ").append(bill.getMedications()).append("\n");
-        billDetailsBuilder.append("Total Amount (Rs): ").append(bill.getTotalAmount()).append("\n");
+    // Bill numbers come from a sequence leased in blocks, so they are unique across nodes and most calls
+    // do not touch the database. Numbers are increasing but may have gaps after a restart.
+    public String generateBillId() {
+        StringBuilder prefix = new StringBuilder("BILL-");
+        if (billIdBranch != null && !billIdBranch.isBlank()) {
+            prefix.append(billIdBranch.trim()).append('-');
+        }
+        if (billIdPerDay) {
+            prefix.append(LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE)).append('-');
+        }
+        String series = prefix.toString();
+        return series + String.format("%06d", sequenceService.next(series));
+    }
 
-        return billDetailsBuilder.toString();
+    // Values for the bill-confirmation notification template
+    private Map<String, Object> billConfirmation(Prescription prescription, Bill bill) {
+        Map<String, Object> model = new HashMap<>();
+        Patient patient = prescription.getPatient();
+        if (patient != null) {
+            Map<String, Object> patientDetails = new HashMap<>();
+            patientDetails.put("patientName", patient.getPatientName());
+            patientDetails.put("patientNIC", patient.getPatientNIC());
+            patientDetails.put("gender", patient.getGender());
+            patientDetails.put("age", patient.getAge());
+            patientDetails.put("address", patient.getAddress());
+            patientDetails.put("email", patient.getEmail());
+            patientDetails.put("contactNumber", patient.getContactNumber());
+            model.put("patient", patientDetails);
+        }
+        model.put("prescriptionId", prescription.getId());
+        model.put("prescriptionDate", prescription.getDate());
+        model.put("doctorId", prescription.getDoctorID());
+        model.put("doctorName", prescription.getDoctorName());
+        model.put("diagnosis", prescription.getDiagnosis());
+        model.put("prescribedMedications", describe(prescription.getMedications()));
+        model.put("instructions", prescription.getInstructions());
+
+        model.put("billId", bill.getCustomerBillId());
+        model.put("adminId", bill.getAdminId());
+        model.put("billPatientNIC", bill.getPatientNIC());
+        model.put("billPatientName", bill.getPatientName());
+        model.put("billDate", bill.getDate());
+        List<Map<String, Object>> lines = new ArrayList<>(bill.getMedications().size());
+        for (Medication medication : bill.getMedications()) {
+            lines.add(Map.of("name", medicationCatalog.nameOf(medication.getMedicationId()),
+                    "quantity", medication.getQuantity(),
+                    "unitPrice", formatCents(medication.getUnitPriceCents())));
+        }
+        model.put("lines", lines);
+        if (bill.getDiscountCents() > 0) {
+            model.put("discount", formatCents(bill.getDiscountCents()));
+        }
+        List<Map<String, Object>> taxes = new ArrayList<>();
+        if (bill.getTaxes() != null) {
+            for (TaxLine tax : bill.getTaxes()) {
+                taxes.add(Map.of("name", tax.getName(), "amount", formatCents(tax.getAmountCents())));
+            }
+        }
+        model.put("taxes", taxes);
+        model.put("total", formatCents(bill.getTotalCents()));
+        return model;
     }
 
+    private static String formatCents(long cents) {
+        return BigDecimal.valueOf(cents, 2).toPlainString();
+    }
 
+    // Catalog names for medication ids, for the patient email
+    private String describe(List<String> medicationIds) {
+        if (medicationIds == null) {
+            return "";
+        }
+        return medicationIds.stream().map(medicationCatalog::nameOf).collect(Collectors.joining(", "));
+    }
 
     // Get all bills
     public List<Bill> getBills() {
@@ -174,20 +336,69 @@ public class BillService {
         return billRepository.findAll();
     }
 
-    // Get a specific bill using bill id
+    // Get one page of bills ordered by bill id
+    public CursorPage<Bill> getBills(String cursor, Integer limit, String sort) {
+        log.info("Retrieving a page of bills");
+        return keysetPager.page(Bill.class, null, Bill::getId, cursor, limit, sort);
+    }
+
+    // Stream all bills straight from the database cursor
+    public StreamingResponseBody streamBills(boolean ndjson) {
+        log.info("Streaming all bills");
+        return documentStreamer.streamAll(Bill.class, ndjson);
+    }
+
+    // Projected reads: only the requested BillResponse fields, or all of them when fields is blank
+    public List<BillResponse> getBills(String fields) {
+        log.info("Retrieving all bills with fields: " + fields);
+        return fieldProjector.find(BillResponse.class, Bill.class, null, fields);
+    }
+
+    public CursorPage<BillResponse> getBills(String cursor, Integer limit, String sort, String fields) {
+        log.info("Retrieving a page of bills with fields: " + fields);
+        return fieldProjector.page(BillResponse.class, Bill.class, null, BillResponse::getId, fields, cursor, limit, sort);
+    }
+
+    public StreamingResponseBody streamBills(boolean ndjson, String fields) {
+        log.info("Streaming all bills with fields: " + fields);
+        return fieldProjector.stream(BillResponse.class, Bill.class, null, fields, ndjson);
+    }
+
+    public BillResponse getBillById(String id, String fields) {
+        log.info("Retrieving bill by ID: " + id + " with fields: " + fields);
+        BillResponse bill = fieldProjector.findOne(BillResponse.class, Bill.class, Criteria.where("_id").is(id), fields);
+        if (bill == null) {
+            bill = fieldProjector.findOne(BillResponse.class, recordArchiver.archiveCollection(Bill.class),
+                    Criteria.where("_id").is(id), fields);
+        }
+        return bill;
+    }
+
+    public List<BillResponse> getBillsByPatientNIC(String patientNIC, String fields) {
+        log.info("Retrieving bills by patient NIC: " + patientNIC + " with fields: " + fields);
+        List<BillResponse> bills = new ArrayList<>(fieldProjector.find(BillResponse.class, Bill.class,
+                Criteria.where("patientNIC").is(patientNIC), fields));
+        bills.addAll(fieldProjector.find(BillResponse.class, recordArchiver.archiveCollection(Bill.class),
+                Criteria.where("patientNIC").is(patientNIC), fields));
+        return bills;
+    }
+
+    // Get a specific bill using bill id, falling back to the archive for old bills
     public Bill getBillById(String id) {
         log.info("Retrieving bill by ID: " + id);
-        return billRepository.findById(id).orElse(null);
+        return billRepository.findById(id).orElseGet(() -> recordArchiver.findArchivedById(id, Bill.class));
     }
 
-    // Get all bills by patient NIC
+    // Get all bills by patient NIC, including archived ones
     public List<Bill> getBillsByPatientNIC(String patientNIC) {
 
         log.info("Retrieving bills by patient NIC: " + patientNIC);
-        return billRepository.findAllByPatientNIC(patientNIC);
+        List<Bill> bills = new ArrayList<>(billRepository.findAllByPatientNIC(patientNIC));
+        bills.addAll(recordArchiver.findArchivedByPatientNIC(patientNIC, Bill.class));
+        return bills;
     }
 
-    // Delete bill by bill id
+    // Delete bill by bill id, from the archive if it has been moved there
     public ResponseEntity<?> deleteBill(String id) {
         Optional<Bill> optionalBill = billRepository.findById(id);
         if (optionalBill.isPresent()) {
@@ -195,6 +406,10 @@ public class BillService {
             billRepository.delete(bill);
             return ResponseEntity.ok("Bill with ID " + id + " deleted successfully");
         }
+        if (recordArchiver.deleteArchived(id, Bill.class)) {
+            log.info("Deleted archived bill with ID: " + id);
+            return ResponseEntity.ok("Bill with ID " + id + " deleted successfully");
+        }
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Bill with ID " + id + " not found");
     }
 
@@ -204,18 +419,5 @@ public class BillService {
         return bill;
     }
 
-    // Calculate total amount for a list of medications
-    public double calculateTotalAmount(List<Medication> medications) {
-        double totalAmount = 0.0;
-        for (Medication medication : medications) {
-            double price = medication.getPrice();
-            int quantity = medication.getQuantity();
-            double medicationTotal = price * quantity;
-            totalAmount += medicationTotal;
-        }
-        log.info("Total amount calculated: " + totalAmount);
-        return totalAmount;
-    }
-
 }
 
@@ -0,0 +1,96 @@
+package com.guardianMed.patientRecordManagement.system.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+
+/**
+ * Writes a whole collection to the response as it is read from a Mongo cursor, either as one JSON array or
+ * as newline-delimited JSON. Only one cursor batch and the generator buffer are held in memory. Writes
+ * block while the client is not reading, which in turn stops the next batch being fetched.
+ */
+@Component
+public class DocumentStreamer {
+    private static final Logger logger = LoggerFactory.getLogger(DocumentStreamer.class);
+
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final int flushEvery;
+
+    @Autowired
+    public DocumentStreamer(MongoTemplate mongoTemplate, ObjectMapper objectMapper,
+                            @Value("${sprngsec.app.streamBatchSize:500}") int batchSize,
+                            @Value("${sprngsec.app.streamFlushEvery:100}") int flushEvery) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.flushEvery = flushEvery;
+    }
+
+    /**
+     * Stream every document of the type in _id order.
+     */
+    public <T> StreamingResponseBody streamAll(Class<T> type, boolean ndjson) {
+        return stream(type, new Query().with(Sort.by(Sort.Direction.ASC, "_id")), ndjson);
+    }
+
+    public <T> StreamingResponseBody stream(Class<T> type, Query query, boolean ndjson) {
+        return stream(type, null, query, ndjson);
+    }
+
+    /**
+     * Stream the query's results from the named collection, read into type.
+     */
+    public <T> StreamingResponseBody stream(Class<T> type, String collectionName, Query query, boolean ndjson) {
+        // Flushing is done here in batches, not by Jackson after every document
+        ObjectWriter writer = objectMapper.writerFor(type).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return outputStream -> {
+            long written = 0;
+            long startedAt = System.nanoTime();
+            Query batched = query.cursorBatchSize(batchSize);
+            try (CloseableIterator<T> cursor = collectionName == null ? mongoTemplate.stream(batched, type)
+                    : mongoTemplate.stream(batched, type, collectionName);
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                if (ndjson) {
+                    generator.setRootValueSeparator(null);
+                } else {
+                    generator.writeStartArray();
+                }
+                while (cursor.hasNext()) {
+                    writer.writeValue(generator, cursor.next());
+                    if (ndjson) {
+                        generator.writeRaw('\n');
+                    }
+                    if (++written % flushEvery == 0) {
+                        generator.flush();
+                    }
+                }
+                if (!ndjson) {
+                    generator.writeEndArray();
+                }
+            } catch (IOException e) {
+                logger.info("Stream of {} aborted after {} document(s): {}", type.getSimpleName(), written, e.getMessage());
+                throw e;
+            }
+            logger.info("Streamed {} {} document(s) in {} ms", written, type.getSimpleName(),
+                    (System.nanoTime() - startedAt) / 1_000_000);
+        };
+    }
+}
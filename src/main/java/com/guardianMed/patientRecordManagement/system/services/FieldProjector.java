@@ -0,0 +1,114 @@
+package com.guardianMed.patientRecordManagement.system.services;
+
+import com.guardianMed.patientRecordManagement.system.payload.response.CursorPage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Reads documents straight into a lean response type with a Mongo field projection, so fields the response
+ * does not carry (or the caller did not ask for with fields=) never leave the database. The selectable fields
+ * are the response type's own properties; id is always returned.
+ */
+@Component
+public class FieldProjector {
+    private static final String ID = "id";
+
+    private final MongoTemplate mongoTemplate;
+    private final KeysetPager keysetPager;
+    private final DocumentStreamer documentStreamer;
+    private final Map<Class<?>, Set<String>> propertiesByType = new ConcurrentHashMap<>();
+
+    @Autowired
+    public FieldProjector(MongoTemplate mongoTemplate, KeysetPager keysetPager, DocumentStreamer documentStreamer) {
+        this.mongoTemplate = mongoTemplate;
+        this.keysetPager = keysetPager;
+        this.documentStreamer = documentStreamer;
+    }
+
+    /**
+     * The fields to fetch for a comma separated fields= value, or every property of the response type when it is blank.
+     *
+     * @throws IllegalArgumentException for a field the response type does not have
+     */
+    public Set<String> parse(Class<?> responseType, String fields) {
+        Set<String> properties = propertiesByType.computeIfAbsent(responseType, FieldProjector::propertiesOf);
+        if (fields == null || fields.isBlank()) {
+            return properties;
+        }
+        Set<String> selected = new LinkedHashSet<>();
+        selected.add(ID);
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!properties.contains(name)) {
+                throw new IllegalArgumentException("Unknown field: " + name + ", expected any of " + String.join(",", properties));
+            }
+            selected.add(name);
+        }
+        return selected;
+    }
+
+    public <T> List<T> find(Class<T> responseType, Class<?> entityType, Criteria filter, String fields) {
+        return find(responseType, mongoTemplate.getCollectionName(entityType), filter, fields);
+    }
+
+    public <T> List<T> find(Class<T> responseType, String collectionName, Criteria filter, String fields) {
+        return mongoTemplate.find(query(responseType, filter, fields), responseType, collectionName);
+    }
+
+    public <T> T findOne(Class<T> responseType, Class<?> entityType, Criteria filter, String fields) {
+        return findOne(responseType, mongoTemplate.getCollectionName(entityType), filter, fields);
+    }
+
+    public <T> T findOne(Class<T> responseType, String collectionName, Criteria filter, String fields) {
+        return mongoTemplate.findOne(query(responseType, filter, fields), responseType, collectionName);
+    }
+
+    public <T> CursorPage<T> page(Class<T> responseType, Class<?> entityType, Criteria filter, Function<T, String> idOf,
+                                  String fields, String cursor, Integer limit, String sort) {
+        return keysetPager.page(responseType, mongoTemplate.getCollectionName(entityType), filter,
+                parse(responseType, fields), idOf, cursor, limit, sort);
+    }
+
+    /**
+     * Stream every matching document in _id order.
+     */
+    public <T> StreamingResponseBody stream(Class<T> responseType, Class<?> entityType, Criteria filter,
+                                            String fields, boolean ndjson) {
+        Query query = query(responseType, filter, fields).with(Sort.by(Sort.Direction.ASC, "_id"));
+        return documentStreamer.stream(responseType, mongoTemplate.getCollectionName(entityType), query, ndjson);
+    }
+
+    private Query query(Class<?> responseType, Criteria filter, String fields) {
+        Query query = filter != null ? Query.query(filter) : new Query();
+        parse(responseType, fields).forEach(query.fields()::include);
+        return query;
+    }
+
+    private static Set<String> propertiesOf(Class<?> responseType) {
+        Set<String> properties = new LinkedHashSet<>();
+        for (Field field : responseType.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers())) {
+                properties.add(field.getName());
+            }
+        }
+        return Collections.unmodifiableSet(properties);
+    }
+}
@@ -0,0 +1,91 @@
+package com.guardianMed.patientRecordManagement.system.services;
+
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.index.Index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Every index the application relies on, per collection. IndexManager creates them at startup, and a query
+ * counts as indexed when some index here starts with exactly its equality fields, optionally followed by its
+ * sort field. Add the index here together with any new query on a field that is not covered yet.
+ */
+public final class IndexCatalog {
+
+    public static final List<DeclaredIndex> INDEXES = List.of(
+            new DeclaredIndex("patients", new Index("patientNIC", Sort.Direction.ASC).unique()),
+            new DeclaredIndex("patients", new Index("patientName", Sort.Direction.ASC)),
+            new DeclaredIndex("prescriptions", new Index().on("patientNIC", Sort.Direction.ASC).on("date", Sort.Direction.DESC)),
+            new DeclaredIndex("prescriptions", new Index("patientName", Sort.Direction.ASC)),
+            // RecordArchiver picks billed prescriptions and bills past the retention age
+            new DeclaredIndex("prescriptions", new Index().on("state", Sort.Direction.ASC).on("date", Sort.Direction.ASC)),
+            // Bill numbers are unique across the live and archived bills; the archive keeps the same constraint
+            new DeclaredIndex("bills", new Index("customerBillId", Sort.Direction.ASC).unique()),
+            new DeclaredIndex("bills", new Index().on("patientNIC", Sort.Direction.ASC).on("date", Sort.Direction.DESC)),
+            new DeclaredIndex("bills", new Index("patientName", Sort.Direction.ASC)),
+            new DeclaredIndex("bills", new Index("date", Sort.Direction.ASC)),
+            new DeclaredIndex("prescriptions_archive", new Index().on("patientNIC", Sort.Direction.ASC).on("date", Sort.Direction.DESC)),
+            new DeclaredIndex("bills_archive", new Index().on("patientNIC", Sort.Direction.ASC).on("date", Sort.Direction.DESC)),
+            new DeclaredIndex("bills_archive", new Index("customerBillId", Sort.Direction.ASC).unique()),
+            new DeclaredIndex("users", new Index("username", Sort.Direction.ASC).unique()),
+            new DeclaredIndex("users", new Index("email", Sort.Direction.ASC).unique()),
+            // Admin listings filter on role and page by _id
+            new DeclaredIndex("users", new Index().on("roles.name", Sort.Direction.ASC).on("_id", Sort.Direction.ASC)),
+            new DeclaredIndex("roles", new Index("name", Sort.Direction.ASC)));
+
+    private IndexCatalog() {
+    }
+
+    /**
+     * Whether a query on the collection matching equalityFields exactly, and optionally sorted by sortField,
+     * can be answered from a declared index. Lookups by _id and unfiltered scans in _id order always can.
+     */
+    public static boolean covers(String collection, Collection<String> equalityFields, String sortField) {
+        Set<String> equality = new HashSet<>(equalityFields);
+        if (equality.contains("_id") || (equality.isEmpty() && (sortField == null || "_id".equals(sortField)))) {
+            return true;
+        }
+        for (DeclaredIndex declared : INDEXES) {
+            if (!declared.collection().equals(collection)) {
+                continue;
+            }
+            List<String> keys = declared.keys();
+            if (keys.size() < equality.size() || !equality.equals(new HashSet<>(keys.subList(0, equality.size())))) {
+                continue;
+            }
+            if (sortField == null || (keys.size() > equality.size() && keys.get(equality.size()).equals(sortField))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public record DeclaredIndex(String collection, Index index) {
+
+        /**
+         * The name Mongo gives the index by default, e.g. patientNIC_1_date_-1. Indexes are left unnamed so that
+         * ones created earlier without a name are recognised instead of conflicting.
+         */
+        public String name() {
+            Document keys = index.getIndexKeys();
+            StringBuilder name = new StringBuilder();
+            for (String key : keys.keySet()) {
+                if (name.length() > 0) {
+                    name.append('_');
+                }
+                name.append(key).append('_').append(keys.get(key));
+            }
+            return name.toString();
+        }
+
+        public List<String> keys() {
+            Document keys = index.getIndexKeys();
+            return new ArrayList<>(keys.keySet());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.guardianMed.patientRecordManagement.system.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the indexes declared in IndexCatalog at startup and reports any that are missing. With
+ * indexCreationEnabled=false it only verifies, for deployments where indexes are built by hand.
+ */
+@Component
+public class IndexManager {
+    private static final Logger logger = LoggerFactory.getLogger(IndexManager.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean creationEnabled;
+
+    @Autowired
+    public IndexManager(MongoTemplate mongoTemplate, @Value("${sprngsec.app.indexCreationEnabled:true}") boolean creationEnabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.creationEnabled = creationEnabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexesOnStartup() {
+        try {
+            List<IndexCatalog.DeclaredIndex> missing = ensureIndexes();
+            if (missing.isEmpty()) {
+                logger.info("All {} declared indexes are present", IndexCatalog.INDEXES.size());
+            }
+        } catch (DataAccessResourceFailureException e) {
+            // No point trying the remaining collections against a database that cannot be reached
+            logger.error("Could not verify indexes, the database is unreachable: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Create (when enabled) and then verify every declared index. Returns the declared indexes that are still
+     * missing; an index that cannot be built, e.g. a unique index over duplicate data, is logged and skipped.
+     */
+    public List<IndexCatalog.DeclaredIndex> ensureIndexes() {
+        if (creationEnabled) {
+            for (IndexCatalog.DeclaredIndex declared : IndexCatalog.INDEXES) {
+                try {
+                    mongoTemplate.indexOps(declared.collection()).ensureIndex(declared.index());
+                } catch (DataAccessResourceFailureException e) {
+                    throw e;
+                } catch (DataAccessException e) {
+                    logger.error("Could not create index {} on {}: {}", declared.name(), declared.collection(), e.getMessage());
+                }
+            }
+        }
+
+        List<IndexCatalog.DeclaredIndex> missing = new ArrayList<>();
+        for (IndexCatalog.DeclaredIndex declared : IndexCatalog.INDEXES) {
+            List<IndexInfo> existing = mongoTemplate.indexOps(declared.collection()).getIndexInfo();
+            boolean present = existing.stream().anyMatch(info -> info.getIndexFields().stream()
+                    .map(field -> field.getKey()).toList().equals(declared.keys()));
+            if (!present) {
+                logger.warn("Index {} on {} {} is missing; queries on it will scan the collection",
+                        declared.name(), declared.collection(), declared.keys());
+                missing.add(declared);
+            }
+        }
+        return missing;
+    }
+}
@@ -0,0 +1,119 @@
+package com.guardianMed.patientRecordManagement.system.services;
+
+import com.guardianMed.patientRecordManagement.system.payload.response.CursorPage;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Keyset pagination on _id. Each page is a range query that starts after the last _id of the previous page,
+ * so it costs the same at any depth and never skips or repeats documents inserted between requests.
+ * ObjectIds start with their creation time, which makes _id order creation order.
+ */
+@Component
+public class KeysetPager {
+    private static final String ASCENDING = "asc";
+    private static final String DESCENDING = "desc";
+
+    private final MongoTemplate mongoTemplate;
+    private final int defaultLimit;
+    private final int maxLimit;
+
+    @Autowired
+    public KeysetPager(MongoTemplate mongoTemplate,
+                       @Value("${sprngsec.app.pageSizeDefault:50}") int defaultLimit,
+                       @Value("${sprngsec.app.pageSizeMax:200}") int maxLimit) {
+        this.mongoTemplate = mongoTemplate;
+        this.defaultLimit = defaultLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Fetch one page of the given type. A cursor carries its own sort direction, so sort only applies to the first page.
+     *
+     * @throws IllegalArgumentException for an unknown sort, a limit outside 1..max or a cursor this pager did not issue
+     */
+    public <T> CursorPage<T> page(Class<T> type, Criteria filter, Function<T, String> idOf,
+                                  String cursor, Integer limit, String sort) {
+        return page(type, null, filter, null, idOf, cursor, limit, sort);
+    }
+
+    /**
+     * Same as {@link #page(Class, Criteria, Function, String, Integer, String)}, reading the named collection into
+     * type and fetching only the given fields plus _id when fields is not null.
+     */
+    public <T> CursorPage<T> page(Class<T> type, String collectionName, Criteria filter, Collection<String> fields,
+                                  Function<T, String> idOf, String cursor, Integer limit, String sort) {
+        int pageSize = limit != null ? limit : defaultLimit;
+        if (pageSize < 1 || pageSize > maxLimit) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxLimit);
+        }
+
+        String direction;
+        String afterId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] decoded = decodeCursor(cursor);
+            direction = decoded[0];
+            afterId = decoded[1];
+        } else {
+            direction = sort != null ? sort.toLowerCase() : ASCENDING;
+            if (!ASCENDING.equals(direction) && !DESCENDING.equals(direction)) {
+                throw new IllegalArgumentException("sort must be asc or desc");
+            }
+        }
+        boolean ascending = ASCENDING.equals(direction);
+
+        Query query = new Query();
+        if (filter != null) {
+            query.addCriteria(filter);
+        }
+        if (afterId != null) {
+            Criteria idCriteria = Criteria.where("_id");
+            query.addCriteria(ascending ? idCriteria.gt(new ObjectId(afterId)) : idCriteria.lt(new ObjectId(afterId)));
+        }
+        if (fields != null) {
+            fields.forEach(query.fields()::include);
+        }
+        query.with(Sort.by(ascending ? Sort.Direction.ASC : Sort.Direction.DESC, "_id"));
+        // One extra row tells us whether another page exists without a count query
+        query.limit(pageSize + 1);
+
+        List<T> items = collectionName == null ? mongoTemplate.find(query, type) : mongoTemplate.find(query, type, collectionName);
+        String nextCursor = null;
+        if (items.size() > pageSize) {
+            items = items.subList(0, pageSize);
+            nextCursor = encodeCursor(direction, idOf.apply(items.get(pageSize - 1)));
+        }
+        return new CursorPage<>(items, nextCursor, pageSize);
+    }
+
+    static String encodeCursor(String direction, String id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((direction + ":" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String[] decodeCursor(String cursor) {
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        String[] parts = decoded.split(":", 2);
+        if (parts.length != 2 || !(ASCENDING.equals(parts[0]) || DESCENDING.equals(parts[0])) || !ObjectId.isValid(parts[1])) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return parts;
+    }
+}
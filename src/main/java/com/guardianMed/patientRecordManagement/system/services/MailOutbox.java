@@ -0,0 +1,247 @@
+package com.guardianMed.patientRecordManagement.system.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded in-memory queue of outgoing mail drained by a small worker pool. Each worker sends what it
+ * drains in one JavaMailSender call, so a batch shares a single SMTP connection. Failed messages are
+ * re-queued with exponential backoff until maxAttempts is reached. Messages with an HTML body are sent as
+ * multipart/alternative MIME messages carrying both bodies.
+ */
+@Component
+public class MailOutbox {
+    private static final Logger logger = LoggerFactory.getLogger(MailOutbox.class);
+
+    private final JavaMailSender javaMailSender;
+    private final BlockingQueue<Envelope> queue;
+    private final int workerCount;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService retryScheduler;
+    private final Timer sendLatency;
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    private final Counter droppedCounter;
+    private volatile boolean running;
+
+    @Autowired
+    public MailOutbox(JavaMailSender javaMailSender, MeterRegistry meterRegistry,
+                      @Value("${sprngsec.app.mailOutboxCapacity:1000}") int capacity,
+                      @Value("${sprngsec.app.mailOutboxWorkers:2}") int workerCount,
+                      @Value("${sprngsec.app.mailOutboxBatchSize:20}") int batchSize,
+                      @Value("${sprngsec.app.mailOutboxMaxAttempts:5}") int maxAttempts,
+                      @Value("${sprngsec.app.mailOutboxBackoffMillis:2000}") long backoffMillis) {
+        this.javaMailSender = javaMailSender;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.workerCount = workerCount;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+        this.workers = Executors.newFixedThreadPool(workerCount, namedThreads("mail-outbox-"));
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(namedThreads("mail-outbox-retry-"));
+
+        Gauge.builder("mail.outbox.queue.depth", queue, Collection::size).register(meterRegistry);
+        this.sendLatency = Timer.builder("mail.outbox.send.latency")
+                .description("Time taken by one batched SMTP send")
+                .register(meterRegistry);
+        this.sentCounter = meterRegistry.counter("mail.outbox.messages", "result", "sent");
+        this.failedCounter = meterRegistry.counter("mail.outbox.messages", "result", "failed");
+        this.droppedCounter = meterRegistry.counter("mail.outbox.messages", "result", "dropped");
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            workers.submit(this::drainLoop);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        retryScheduler.shutdownNow();
+        workers.shutdown();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.warn("Mail outbox stopped with {} message(s) still queued", queue.size());
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Queue a message for delivery. Returns false when the outbox is full and the message was dropped.
+     */
+    public boolean submit(SimpleMailMessage message) {
+        return submit(message, null);
+    }
+
+    /**
+     * Queue a message whose text is sent together with an HTML alternative, or as plain text when html is null.
+     */
+    public boolean submit(SimpleMailMessage message, String html) {
+        return offer(new Envelope(message, html, 1));
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private boolean offer(Envelope envelope) {
+        if (queue.offer(envelope)) {
+            return true;
+        }
+        droppedCounter.increment();
+        logger.error("Mail outbox is full, dropping email to: {}", recipients(envelope.message()));
+        return false;
+    }
+
+    private void drainLoop() {
+        List<Envelope> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Envelope first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                sendBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Unexpected error in mail outbox worker", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void sendBatch(List<Envelope> batch) {
+        List<Envelope> plain = new ArrayList<>(batch.size());
+        List<Envelope> multipart = new ArrayList<>();
+        for (Envelope envelope : batch) {
+            (envelope.html() == null ? plain : multipart).add(envelope);
+        }
+        if (!plain.isEmpty()) {
+            SimpleMailMessage[] messages = new SimpleMailMessage[plain.size()];
+            for (int i = 0; i < messages.length; i++) {
+                messages[i] = plain.get(i).message();
+            }
+            send(plain, messages, () -> javaMailSender.send(messages));
+        }
+        if (!multipart.isEmpty()) {
+            List<Envelope> prepared = new ArrayList<>(multipart.size());
+            List<MimeMessage> messages = new ArrayList<>(multipart.size());
+            for (Envelope envelope : multipart) {
+                try {
+                    messages.add(toMimeMessage(envelope));
+                    prepared.add(envelope);
+                } catch (MessagingException e) {
+                    // Retrying cannot fix a message that cannot be built
+                    failedCounter.increment();
+                    logger.error("Dropping email to: {}, it could not be built", recipients(envelope.message()), e);
+                }
+            }
+            MimeMessage[] mimeMessages = messages.toArray(new MimeMessage[0]);
+            if (mimeMessages.length > 0) {
+                send(prepared, mimeMessages, () -> javaMailSender.send(mimeMessages));
+            }
+        }
+    }
+
+    // messages[i] is what was built for batch.get(i); MailSendException reports failures by those objects
+    private void send(List<Envelope> batch, Object[] messages, Runnable sender) {
+        long start = System.nanoTime();
+        try {
+            sender.run();
+            sentCounter.increment(messages.length);
+            logger.info("Sent {} email(s) from the outbox", messages.length);
+        } catch (MailSendException e) {
+            Map<Object, Exception> failedMessages = e.getFailedMessages();
+            for (int i = 0; i < messages.length; i++) {
+                // An empty map means the whole batch failed, e.g. the connection could not be opened
+                if (failedMessages.isEmpty() || failedMessages.containsKey(messages[i])) {
+                    retryLater(batch.get(i), e);
+                } else {
+                    sentCounter.increment();
+                }
+            }
+        } catch (MailException e) {
+            batch.forEach(envelope -> retryLater(envelope, e));
+        } finally {
+            sendLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private MimeMessage toMimeMessage(Envelope envelope) throws MessagingException {
+        SimpleMailMessage message = envelope.message();
+        MimeMessage mimeMessage = javaMailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, MimeMessageHelper.MULTIPART_MODE_MIXED_RELATED, "UTF-8");
+        if (message.getFrom() != null) {
+            helper.setFrom(message.getFrom());
+        }
+        helper.setTo(message.getTo() == null ? new String[0] : message.getTo());
+        helper.setSubject(message.getSubject() == null ? "" : message.getSubject());
+        helper.setText(message.getText() == null ? "" : message.getText(), envelope.html());
+        return mimeMessage;
+    }
+
+    private void retryLater(Envelope envelope, Exception cause) {
+        if (envelope.attempt() >= maxAttempts) {
+            failedCounter.increment();
+            logger.error("Giving up on email to: {} after {} attempt(s)", recipients(envelope.message()), envelope.attempt(), cause);
+            return;
+        }
+        long delay = backoffMillis << (envelope.attempt() - 1);
+        logger.warn("Failed to send email to: {}, retrying in {} ms: {}", recipients(envelope.message()), delay, cause.getMessage());
+        try {
+            retryScheduler.schedule(() -> offer(new Envelope(envelope.message(), envelope.html(), envelope.attempt() + 1)), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            failedCounter.increment();
+            logger.error("Mail outbox is shutting down, dropping email to: {}", recipients(envelope.message()));
+        }
+    }
+
+    private static String recipients(SimpleMailMessage message) {
+        return message.getTo() == null ? "" : String.join(",", message.getTo());
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private record Envelope(SimpleMailMessage message, String html, int attempt) {
+    }
+}
@@ -0,0 +1,337 @@
+package com.guardianMed.patientRecordManagement.system.services;
+
+import com.guardianMed.patientRecordManagement.system.exception.ServiceUnavailableException;
+import com.guardianMed.patientRecordManagement.system.models.CatalogMedication;
+import com.guardianMed.patientRecordManagement.system.models.Medication;
+import com.guardianMed.patientRecordManagement.system.payload.response.MedicationImportReport;
+import com.mongodb.bulk.BulkWriteError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The medication price list, served from an immutable in-memory snapshot keyed by catalog id. A reload builds
+ * a complete new snapshot and swaps it in, so readers never see a half-loaded catalog and never take a lock.
+ * The snapshot is reloaded after every price list upload and periodically to pick up other nodes' uploads.
+ * <p>
+ * The first load runs during startup, before the server takes requests. If the database cannot be read then,
+ * lookups throw ServiceUnavailableException instead of reporting every medication as unknown, and the load is
+ * retried every minute until it succeeds.
+ */
+@Component
+public class MedicationCatalog {
+    private static final Logger logger = LoggerFactory.getLogger(MedicationCatalog.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final int batchSize;
+    private final long refreshMinutes;
+    // Null until the catalog has been read once
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private ScheduledExecutorService loader;
+
+    @Autowired
+    public MedicationCatalog(MongoTemplate mongoTemplate,
+                             @Value("${sprngsec.app.medicationImportBatchSize:1000}") int batchSize,
+                             @Value("${sprngsec.app.medicationCatalogRefreshMinutes:10}") long refreshMinutes) {
+        this.mongoTemplate = mongoTemplate;
+        this.batchSize = batchSize;
+        this.refreshMinutes = refreshMinutes;
+    }
+
+    @PostConstruct
+    public void loadInitially() {
+        reloadQuietly();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startLoading() {
+        loader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "medication-catalog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduleNextLoad();
+    }
+
+    // Every minute until a load has succeeded, then every refreshMinutes, or never when that is 0
+    private void scheduleNextLoad() {
+        long delayMinutes = isLoaded() ? refreshMinutes : 1;
+        if (delayMinutes > 0) {
+            loader.schedule(() -> {
+                reloadQuietly();
+                scheduleNextLoad();
+            }, delayMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (loader != null) {
+            loader.shutdownNow();
+        }
+    }
+
+    /**
+     * Read the whole catalog and swap it in. Returns the number of medications loaded.
+     */
+    public int reload() {
+        Snapshot fresh = Snapshot.of(mongoTemplate.findAll(CatalogMedication.class));
+        snapshot.set(fresh);
+        logger.info("Medication catalog loaded with {} medication(s)", fresh.sorted().size());
+        return fresh.sorted().size();
+    }
+
+    private void reloadQuietly() {
+        try {
+            reload();
+        } catch (DataAccessException e) {
+            logger.error("Could not load the medication catalog: {}", e.getMessage());
+        }
+    }
+
+    public boolean isLoaded() {
+        return snapshot.get() != null;
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot.get();
+        if (current == null) {
+            throw new ServiceUnavailableException("The medication catalog is not loaded yet, please try again");
+        }
+        return current;
+    }
+
+    public CatalogMedication get(String id) {
+        return current().byId().get(id);
+    }
+
+    /**
+     * Look a medication up by catalog id, or failing that by its name (ignoring case).
+     */
+    public CatalogMedication resolve(String idOrName) {
+        return current().resolve(idOrName);
+    }
+
+    public List<CatalogMedication> getAll() {
+        return current().sorted();
+    }
+
+    public int size() {
+        Snapshot current = snapshot.get();
+        return current == null ? 0 : current.sorted().size();
+    }
+
+    /**
+     * Catalog ids for medications given by id or name. Throws IllegalArgumentException for one not in the catalog.
+     */
+    public List<String> toIds(List<String> idsOrNames) {
+        Snapshot current = current();
+        List<String> ids = new ArrayList<>(idsOrNames.size());
+        for (String idOrName : idsOrNames) {
+            CatalogMedication medication = current.resolve(idOrName);
+            if (medication == null) {
+                throw new IllegalArgumentException("Unknown medication: " + idOrName);
+            }
+            ids.add(medication.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Price bill lines from the catalog. Whatever price the client sent is ignored; the returned lines carry
+     * the catalog id, quantity and catalog unit price only. Throws IllegalArgumentException for a line that
+     * does not name a catalog medication or has no valid quantity.
+     */
+    public List<Medication> price(List<Medication> lines) {
+        Snapshot current = current();
+        List<Medication> priced = new ArrayList<>(lines.size());
+        for (Medication line : lines) {
+            String key = line.getMedicationId() != null ? line.getMedicationId() : line.getName();
+            if (key == null) {
+                throw new IllegalArgumentException("Each medication needs a medicationId");
+            }
+            CatalogMedication medication = current.resolve(key);
+            if (medication == null) {
+                throw new IllegalArgumentException("Unknown medication: " + key);
+            }
+            if (line.getQuantity() == null || line.getQuantity() < 0) {
+                throw new IllegalArgumentException("Invalid quantity for medication " + medication.getId());
+            }
+            priced.add(new Medication(medication.getId(), null, PricingEngine.toMajor(medication.getUnitPriceCents()),
+                    medication.getUnitPriceCents(), line.getQuantity()));
+        }
+        return priced;
+    }
+
+    /**
+     * Display name for a catalog id. Older records stored free-text names, which are returned unchanged.
+     */
+    public String nameOf(String idOrName) {
+        Snapshot current = snapshot.get();
+        CatalogMedication medication = idOrName == null || current == null ? null : current.byId().get(idOrName);
+        return medication != null ? medication.getName() : idOrName;
+    }
+
+    /**
+     * Upsert a CSV price list with the columns id, name and unitPrice in rupees (in any order, other columns
+     * ignored), in unordered batches, then reload the snapshot. Entries missing from the file are left as they are.
+     */
+    public MedicationImportReport importCsv(InputStream input) throws IOException {
+        long startedAt = System.nanoTime();
+        MedicationImportReport report = new MedicationImportReport();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        Map<String, Integer> columns = null;
+        List<CatalogMedication> batch = new ArrayList<>(batchSize);
+        List<Integer> batchRows = new ArrayList<>(batchSize);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            String[] values = PatientImportService.splitCsvLine(line);
+            if (columns == null) {
+                columns = new HashMap<>();
+                for (int i = 0; i < values.length; i++) {
+                    columns.put(values[i].trim(), i);
+                }
+                if (!columns.keySet().containsAll(List.of("id", "name", "unitPrice"))) {
+                    report.failed(lineNumber, null, "Header must have the columns id, name and unitPrice, found " + Arrays.toString(values));
+                    break;
+                }
+                continue;
+            }
+
+            CatalogMedication medication;
+            try {
+                medication = fromCsv(columns, values);
+            } catch (IllegalArgumentException e) {
+                report.failed(lineNumber, columns.get("id") < values.length ? values[columns.get("id")].trim() : null, e.getMessage());
+                continue;
+            }
+            batch.add(medication);
+            batchRows.add(lineNumber);
+            if (batch.size() >= batchSize) {
+                upsertBatch(batch, batchRows, report);
+            }
+        }
+        upsertBatch(batch, batchRows, report);
+
+        if (report.getImported() > 0) {
+            reload();
+        }
+        report.setCatalogSize(size());
+        report.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        report.getErrors().sort(Comparator.comparingInt(MedicationImportReport.RowError::getRow));
+        logger.info("Medication price list import finished: {} imported, {} failed in {} ms",
+                report.getImported(), report.getFailed(), report.getElapsedMillis());
+        return report;
+    }
+
+    private void upsertBatch(List<CatalogMedication> batch, List<Integer> batchRows, MedicationImportReport report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        BulkOperations upserts = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CatalogMedication.class);
+        for (CatalogMedication medication : batch) {
+            upserts.upsert(Query.query(Criteria.where("_id").is(medication.getId())),
+                    new Update().set("name", medication.getName()).set("unitPriceCents", medication.getUnitPriceCents()));
+        }
+        int failed = 0;
+        try {
+            upserts.execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                report.failed(batchRows.get(error.getIndex()), batch.get(error.getIndex()).getId(), error.getMessage());
+                failed++;
+            }
+        }
+        report.succeeded(batch.size() - failed);
+        batch.clear();
+        batchRows.clear();
+    }
+
+    private static CatalogMedication fromCsv(Map<String, Integer> columns, String[] values) {
+        int width = Math.max(columns.get("id"), Math.max(columns.get("name"), columns.get("unitPrice"))) + 1;
+        if (values.length < width) {
+            throw new IllegalArgumentException("expected " + width + " columns but found " + values.length);
+        }
+        String id = values[columns.get("id")].trim();
+        String name = values[columns.get("name")].trim();
+        if (id.isEmpty() || name.isEmpty()) {
+            throw new IllegalArgumentException("id and name are required");
+        }
+        long unitPriceCents;
+        try {
+            unitPriceCents = PricingEngine.toCents(values[columns.get("unitPrice")]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("unitPrice is not a number: " + values[columns.get("unitPrice")]);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("unitPrice must be whole cents: " + values[columns.get("unitPrice")]);
+        }
+        if (unitPriceCents < 0) {
+            throw new IllegalArgumentException("unitPrice must be zero or more");
+        }
+        return new CatalogMedication(id, name, unitPriceCents);
+    }
+
+    /**
+     * One immutable version of the catalog. Names map to the entry with the lowest id when several share a name.
+     */
+    private record Snapshot(Map<String, CatalogMedication> byId, Map<String, CatalogMedication> byName,
+                            List<CatalogMedication> sorted) {
+
+        static Snapshot of(List<CatalogMedication> medications) {
+            List<CatalogMedication> sorted = new ArrayList<>(medications);
+            sorted.sort(Comparator.comparing(CatalogMedication::getId));
+            Map<String, CatalogMedication> byId = new HashMap<>(sorted.size() * 2);
+            Map<String, CatalogMedication> byName = new HashMap<>(sorted.size() * 2);
+            for (CatalogMedication medication : sorted) {
+                byId.put(medication.getId(), medication);
+                if (medication.getName() != null) {
+                    byName.putIfAbsent(medication.getName().trim().toLowerCase(Locale.ROOT), medication);
+                }
+            }
+            return new Snapshot(Map.copyOf(byId), Map.copyOf(byName), List.copyOf(sorted));
+        }
+
+        CatalogMedication resolve(String idOrName) {
+            if (idOrName == null) {
+                return null;
+            }
+            CatalogMedication medication = byId.get(idOrName.trim());
+            return medication != null ? medication : byName.get(idOrName.trim().toLowerCase(Locale.ROOT));
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.guardianMed.patientRecordManagement.system.services;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A notification body parsed once into literal, variable and section segments. Supports {{name}} variables,
+ * {{#name}}...{{/name}} sections (repeated for a list, rendered once for any other value that is not null,
+ * false or empty, and skipped otherwise) and {{! comments}}. A section or comment tag alone on its line takes
+ * the line with it. Variables in HTML templates are escaped.
+ * <p>
+ * Rendering walks the segments into a per-thread StringBuilder that is reused across calls, so the only
+ * allocation left is the resulting String (plus String.valueOf for values that are neither text nor integers).
+ */
+public final class NotificationTemplate {
+
+    private static final int MAX_POOLED_CAPACITY = 64 * 1024;
+    private static final ThreadLocal<Buffer> BUFFERS = ThreadLocal.withInitial(Buffer::new);
+
+    private final String name;
+    private final boolean html;
+    private final Segment[] segments;
+    private final int depth;
+
+    private NotificationTemplate(String name, boolean html, Segment[] segments, int depth) {
+        this.name = name;
+        this.html = html;
+        this.segments = segments;
+        this.depth = depth;
+    }
+
+    /**
+     * Parse a template. Throws IllegalArgumentException, naming the line, when tags are unbalanced or malformed.
+     */
+    public static NotificationTemplate compile(String name, String source, boolean html) {
+        Deque<Frame> frames = new ArrayDeque<>();
+        frames.push(new Frame(null, 0));
+        int maxDepth = 1;
+        int pos = 0;
+        while (pos < source.length()) {
+            int open = source.indexOf("{{", pos);
+            if (open < 0) {
+                frames.peek().add(source.substring(pos));
+                break;
+            }
+            int close = source.indexOf("}}", open + 2);
+            if (close < 0) {
+                throw new IllegalArgumentException(error(name, source, open, "unclosed tag"));
+            }
+            String tag = source.substring(open + 2, close).trim();
+            char kind = tag.isEmpty() ? ' ' : tag.charAt(0);
+            int literalEnd = open;
+            int next = close + 2;
+            if (kind == '#' || kind == '/' || kind == '!') {
+                int lineStart = source.lastIndexOf('\n', open - 1) + 1;
+                int lineEnd = source.indexOf('\n', next);
+                lineEnd = lineEnd < 0 ? source.length() : lineEnd;
+                if (lineStart >= pos && isBlank(source, lineStart, open) && isBlank(source, next, lineEnd)) {
+                    literalEnd = lineStart;
+                    next = Math.min(lineEnd + 1, source.length());
+                }
+            }
+            frames.peek().add(source.substring(pos, literalEnd));
+
+            String key = kind == '#' || kind == '/' || kind == '!' ? tag.substring(1).trim() : tag;
+            if (kind != '!' && !isIdentifier(key)) {
+                throw new IllegalArgumentException(error(name, source, open, "invalid tag {{" + tag + "}}"));
+            }
+            if (kind == '#') {
+                frames.push(new Frame(key, open));
+                maxDepth = Math.max(maxDepth, frames.size());
+            } else if (kind == '/') {
+                Frame section = frames.pop();
+                if (!key.equals(section.name)) {
+                    throw new IllegalArgumentException(error(name, source, open, "{{/" + key + "}} does not close "
+                            + (section.name == null ? "any section" : "{{#" + section.name + "}}")));
+                }
+                frames.peek().segments.add(new Section(key, section.segments.toArray(new Segment[0])));
+            } else if (kind != '!') {
+                frames.peek().segments.add(new Variable(key));
+            }
+            pos = next;
+        }
+        if (frames.size() > 1) {
+            throw new IllegalArgumentException(error(name, source, frames.peek().start, "{{#" + frames.peek().name + "}} is never closed"));
+        }
+        return new NotificationTemplate(name, html, frames.pop().segments.toArray(new Segment[0]), maxDepth);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isHtml() {
+        return html;
+    }
+
+    /**
+     * Render with the given values. Inside a section the current list item (or section value) is searched
+     * first, then the enclosing ones; a missing value renders as nothing.
+     */
+    public String render(Map<String, ?> model) {
+        Buffer buffer = BUFFERS.get();
+        if (buffer.scopes.length < depth) {
+            buffer.scopes = new Object[depth];
+        }
+        StringBuilder out = buffer.out;
+        try {
+            buffer.scopes[0] = model;
+            render(segments, out, buffer.scopes, 1);
+            return out.toString();
+        } finally {
+            buffer.scopes[0] = null;
+            if (out.capacity() > MAX_POOLED_CAPACITY) {
+                buffer.out = new StringBuilder(1024);
+            } else {
+                out.setLength(0);
+            }
+        }
+    }
+
+    private void render(Segment[] segments, StringBuilder out, Object[] scopes, int depth) {
+        for (Segment segment : segments) {
+            if (segment instanceof Literal literal) {
+                out.append(literal.text());
+            } else if (segment instanceof Variable variable) {
+                append(out, lookup(variable.name(), scopes, depth));
+            } else {
+                Section section = (Section) segment;
+                Object value = lookup(section.name(), scopes, depth);
+                if (value == null || Boolean.FALSE.equals(value) || value instanceof CharSequence text && text.isEmpty()) {
+                    continue;
+                }
+                if (value instanceof List<?> items) {
+                    for (int i = 0; i < items.size(); i++) {
+                        scopes[depth] = items.get(i);
+                        render(section.segments(), out, scopes, depth + 1);
+                    }
+                } else {
+                    scopes[depth] = value;
+                    render(section.segments(), out, scopes, depth + 1);
+                }
+                scopes[depth] = null;
+            }
+        }
+    }
+
+    private static Object lookup(String key, Object[] scopes, int depth) {
+        for (int i = depth - 1; i >= 0; i--) {
+            if (scopes[i] instanceof Map<?, ?> scope) {
+                Object value = scope.get(key);
+                if (value != null || scope.containsKey(key)) {
+                    return value;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void append(StringBuilder out, Object value) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.append(((Number) value).longValue());
+        } else if (value instanceof CharSequence text) {
+            appendText(out, text);
+        } else {
+            appendText(out, String.valueOf(value));
+        }
+    }
+
+    private void appendText(StringBuilder out, CharSequence text) {
+        if (!html) {
+            out.append(text);
+            return;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&' -> out.append("&amp;");
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '"' -> out.append("&quot;");
+                case '\'' -> out.append("&#39;");
+                default -> out.append(c);
+            }
+        }
+    }
+
+    private static boolean isBlank(String source, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = source.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isIdentifier(String key) {
+        if (key.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (!Character.isLetterOrDigit(key.charAt(i)) && key.charAt(i) != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String error(String name, String source, int offset, String problem) {
+        int line = 1;
+        for (int i = 0; i < offset; i++) {
+            if (source.charAt(i) == '\n') {
+                line++;
+            }
+        }
+        return "Template " + name + ", line " + line + ": " + problem;
+    }
+
+    private sealed interface Segment permits Literal, Variable, Section {
+    }
+
+    private record Literal(String text) implements Segment {
+    }
+
+    private record Variable(String name) implements Segment {
+    }
+
+    private record Section(String name, Segment[] segments) implements Segment {
+    }
+
+    private static final class Frame {
+        private final String name;
+        private final int start;
+        private final List<Segment> segments = new ArrayList<>();
+
+        Frame(String name, int start) {
+            this.name = name;
+            this.start = start;
+        }
+
+        void add(String literal) {
+            if (!literal.isEmpty()) {
+                segments.add(new Literal(literal));
+            }
+        }
+    }
+
+    private static final class Buffer {
+        private StringBuilder out = new StringBuilder(1024);
+        private Object[] scopes = new Object[4];
+    }
+}
@@ -0,0 +1,72 @@
+package com.guardianMed.patientRecordManagement.system.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The notification templates under notificationTemplateLocation, compiled once at startup. A notification is
+ * a name.txt template, optionally with a name.html alternative; a template that does not parse stops startup.
+ */
+@Component
+public class NotificationTemplates {
+    private static final Logger logger = LoggerFactory.getLogger(NotificationTemplates.class);
+
+    private final Map<String, NotificationTemplate> textTemplates = new HashMap<>();
+    private final Map<String, NotificationTemplate> htmlTemplates = new HashMap<>();
+
+    @Autowired
+    public NotificationTemplates(@Value("${sprngsec.app.notificationTemplateLocation:classpath*:notifications/}") String location) {
+        String base = location.endsWith("/") ? location : location + "/";
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        try {
+            load(resolver.getResources(base + "*.txt"), textTemplates, false);
+            load(resolver.getResources(base + "*.html"), htmlTemplates, true);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read notification templates from " + location, e);
+        }
+        logger.info("Compiled {} notification template(s), {} with an HTML version", textTemplates.size(), htmlTemplates.size());
+    }
+
+    /**
+     * Render a notification. Throws IllegalArgumentException when there is no template with that name.
+     */
+    public Rendered render(String name, Map<String, ?> model) {
+        NotificationTemplate text = textTemplates.get(name);
+        if (text == null) {
+            throw new IllegalArgumentException("Unknown notification template: " + name);
+        }
+        NotificationTemplate html = htmlTemplates.get(name);
+        return new Rendered(text.render(model), html == null ? null : html.render(model));
+    }
+
+    public boolean contains(String name) {
+        return textTemplates.containsKey(name);
+    }
+
+    private static void load(Resource[] resources, Map<String, NotificationTemplate> templates, boolean html) throws IOException {
+        for (Resource resource : resources) {
+            String fileName = resource.getFilename();
+            String name = fileName.substring(0, fileName.lastIndexOf('.'));
+            try (InputStream in = resource.getInputStream()) {
+                templates.put(name, NotificationTemplate.compile(fileName, new String(in.readAllBytes(), StandardCharsets.UTF_8), html));
+            }
+        }
+    }
+
+    /**
+     * A rendered notification: the plain-text body and, when the template has one, the HTML body.
+     */
+    public record Rendered(String text, String html) {
+    }
+}
@@ -0,0 +1,172 @@
+package com.guardianMed.patientRecordManagement.system.services;
+
+import com.guardianMed.patientRecordManagement.system.models.Bill;
+import com.guardianMed.patientRecordManagement.system.models.Patient;
+import com.guardianMed.patientRecordManagement.system.models.Prescription;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copies patient edits into the patient data denormalized onto prescriptions and bills, archived ones
+ * included, so lookups that fall back to the archive show the same patient as the hot records. Updates are
+ * coalesced per NIC, so a patient edited several times between flushes costs one write per collection,
+ * and each flush applies a whole batch of patients as one unordered bulk updateMulti per collection.
+ */
+@Component
+public class PatientChangePropagator {
+    private static final Logger logger = LoggerFactory.getLogger(PatientChangePropagator.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final RecordArchiver recordArchiver;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private final Timer lag;
+    private final Counter appliedCounter;
+    private final Counter failedCounter;
+
+    @Autowired
+    public PatientChangePropagator(MongoTemplate mongoTemplate, RecordArchiver recordArchiver, MeterRegistry meterRegistry,
+                                   @Value("${sprngsec.app.patientPropagationBatchSize:500}") int batchSize,
+                                   @Value("${sprngsec.app.patientPropagationIntervalMillis:1000}") long flushIntervalMillis) {
+        this.mongoTemplate = mongoTemplate;
+        this.recordArchiver = recordArchiver;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "patient-propagation");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("patient.propagation.backlog", pending, Map::size)
+                .description("Patients whose edits are not yet copied to prescriptions and bills")
+                .register(meterRegistry);
+        this.lag = Timer.builder("patient.propagation.lag")
+                .description("Time from a patient edit until its copies are updated")
+                .register(meterRegistry);
+        this.appliedCounter = meterRegistry.counter("patient.propagation.patients", "result", "applied");
+        this.failedCounter = meterRegistry.counter("patient.propagation.patients", "result", "failed");
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                while (flush() == batchSize) {
+                    // Keep going while full batches are waiting
+                }
+            } catch (RuntimeException e) {
+                logger.error("Unexpected error propagating patient edits", e);
+            }
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdownNow();
+        if (!pending.isEmpty()) {
+            logger.info("Propagating {} pending patient edit(s) before shutdown", pending.size());
+            flush();
+        }
+    }
+
+    @EventListener
+    public void onPatientUpdated(PatientUpdatedEvent event) {
+        Patient patient = event.patient();
+        // The latest record wins, but lag is measured from the first edit still waiting
+        pending.merge(patient.getPatientNIC(), new Pending(patient, System.nanoTime()),
+                (queued, latest) -> new Pending(latest.patient(), queued.queuedAt()));
+    }
+
+    public int getBacklog() {
+        return pending.size();
+    }
+
+    /**
+     * Apply up to one batch of pending edits. Returns how many patients were propagated.
+     */
+    public int flush() {
+        List<Pending> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        Iterator<String> nics = pending.keySet().iterator();
+        while (batch.size() < batchSize && nics.hasNext()) {
+            Pending taken = pending.remove(nics.next());
+            if (taken != null) {
+                batch.add(taken);
+            }
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        BulkOperations prescriptions = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Prescription.class);
+        BulkOperations bills = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Bill.class);
+        BulkOperations archivedPrescriptions = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Prescription.class,
+                recordArchiver.archiveCollection(Prescription.class));
+        BulkOperations archivedBills = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Bill.class,
+                recordArchiver.archiveCollection(Bill.class));
+        for (Pending edit : batch) {
+            Patient patient = edit.patient();
+            Query byNic = Query.query(Criteria.where("patientNIC").is(patient.getPatientNIC()));
+            Update prescriptionUpdate = new Update().set("patientName", patient.getPatientName()).set("patient", patient);
+            Update billUpdate = new Update().set("patientName", patient.getPatientName());
+            prescriptions.updateMulti(byNic, prescriptionUpdate);
+            archivedPrescriptions.updateMulti(byNic, prescriptionUpdate);
+            bills.updateMulti(byNic, billUpdate);
+            archivedBills.updateMulti(byNic, billUpdate);
+        }
+
+        try {
+            prescriptions.execute();
+            bills.execute();
+            // A record archived between the hot and the archive update is still covered: it was updated while hot
+            archivedPrescriptions.execute();
+            archivedBills.execute();
+        } catch (DataAccessException e) {
+            failedCounter.increment(batch.size());
+            logger.warn("Failed to propagate {} patient edit(s), retrying on the next flush: {}", batch.size(), e.getMessage());
+            // Both updates are idempotent, so the whole batch is simply retried; a newer edit queued meanwhile wins
+            for (Pending edit : batch) {
+                pending.putIfAbsent(edit.patient().getPatientNIC(), edit);
+            }
+            return 0;
+        }
+
+        long now = System.nanoTime();
+        for (Pending edit : batch) {
+            lag.record(now - edit.queuedAt(), TimeUnit.NANOSECONDS);
+        }
+        appliedCounter.increment(batch.size());
+        logger.info("Propagated {} patient edit(s) to prescriptions and bills", batch.size());
+        return batch.size();
+    }
+
+    private record Pending(Patient patient, long queuedAt) {
+    }
+}
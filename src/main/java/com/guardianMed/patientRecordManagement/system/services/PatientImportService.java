@@ -0,0 +1,183 @@
+package com.guardianMed.patientRecordManagement.system.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guardianMed.patientRecordManagement.system.models.Patient;
+import com.guardianMed.patientRecordManagement.system.payload.requests.PatientRequest;
+import com.guardianMed.patientRecordManagement.system.payload.response.PatientImportReport;
+import com.mongodb.bulk.BulkWriteError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Loads patients from CSV or NDJSON. Rows are read one at a time, validated against the PatientRequest
+ * constraints and inserted in unordered batches. Duplicate NICs, within the file or against existing
+ * patients, are reported by the unique patientNIC index rather than checked with a query per row.
+ */
+@Service
+public class PatientImportService {
+    private static final Logger logger = LoggerFactory.getLogger(PatientImportService.class);
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoTemplate mongoTemplate;
+    private final PatientService patientService;
+    private final PatientNameIndex patientNameIndex;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int batchSize;
+    private final int maxRows;
+
+    @Autowired
+    public PatientImportService(MongoTemplate mongoTemplate, PatientService patientService,
+                                PatientNameIndex patientNameIndex, ObjectMapper objectMapper, Validator validator,
+                                @Value("${sprngsec.app.patientImportBatchSize:1000}") int batchSize,
+                                @Value("${sprngsec.app.patientImportMaxRows:100000}") int maxRows) {
+        this.mongoTemplate = mongoTemplate;
+        this.patientService = patientService;
+        this.patientNameIndex = patientNameIndex;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.batchSize = batchSize;
+        this.maxRows = maxRows;
+    }
+
+    public PatientImportReport importPatients(InputStream input, boolean csv) throws IOException {
+        long startedAt = System.nanoTime();
+        PatientImportReport report = new PatientImportReport();
+        List<Patient> batch = new ArrayList<>(batchSize);
+        List<Integer> batchRows = new ArrayList<>(batchSize);
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        String[] header = null;
+        String line;
+        int lineNumber = 0;
+        int rows = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            if (csv && header == null) {
+                header = splitCsvLine(line);
+                continue;
+            }
+            if (++rows > maxRows) {
+                report.failed(lineNumber, null, "Import is limited to " + maxRows + " rows; this and later rows were not read");
+                break;
+            }
+
+            PatientRequest request;
+            try {
+                request = csv ? fromCsv(header, line) : objectMapper.readValue(line, PatientRequest.class);
+            } catch (IOException | IllegalArgumentException e) {
+                report.failed(lineNumber, null, "Unreadable row: " + e.getMessage());
+                continue;
+            }
+            Set<ConstraintViolation<PatientRequest>> violations = validator.validate(request);
+            if (!violations.isEmpty()) {
+                report.failed(lineNumber, request.getPatientNIC(), violations.stream()
+                        .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining("; ")));
+                continue;
+            }
+
+            batch.add(patientService.toPatient(request));
+            batchRows.add(lineNumber);
+            if (batch.size() >= batchSize) {
+                insertBatch(batch, batchRows, report);
+            }
+        }
+        insertBatch(batch, batchRows, report);
+
+        report.finish(System.nanoTime() - startedAt);
+        logger.info("Patient import finished: {} imported, {} failed in {} ms ({} patients/sec)",
+                report.getImported(), report.getFailed(), report.getElapsedMillis(), report.getPatientsPerSecond());
+        return report;
+    }
+
+    private void insertBatch(List<Patient> batch, List<Integer> batchRows, PatientImportReport report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Map<Integer, BulkWriteError> errors = Collections.emptyMap();
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Patient.class).insert(batch).execute();
+        } catch (BulkOperationException e) {
+            errors = e.getErrors().stream().collect(Collectors.toMap(BulkWriteError::getIndex, error -> error));
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            String patientNIC = batch.get(i).getPatientNIC();
+            BulkWriteError error = errors.get(i);
+            if (error == null) {
+                report.succeeded(batchRows.get(i), patientNIC);
+                patientNameIndex.put(patientNIC, batch.get(i).getPatientName());
+            } else if (error.getCode() == DUPLICATE_KEY) {
+                report.failed(batchRows.get(i), patientNIC, "Patient with NIC " + patientNIC + " already exists");
+            } else {
+                report.failed(batchRows.get(i), patientNIC, error.getMessage());
+            }
+        }
+        batch.clear();
+        batchRows.clear();
+    }
+
+    private PatientRequest fromCsv(String[] header, String line) {
+        String[] values = splitCsvLine(line);
+        if (values.length != header.length) {
+            throw new IllegalArgumentException("expected " + header.length + " columns but found " + values.length);
+        }
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < header.length; i++) {
+            fields.put(header[i].trim(), values[i]);
+        }
+        return objectMapper.convertValue(fields, PatientRequest.class);
+    }
+
+    /**
+     * Split one CSV record, honouring double-quoted fields and "" escapes. Records may not span lines.
+     */
+    static String[] splitCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+        return values.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,520 @@
+package com.guardianMed.patientRecordManagement.system.services;
+
+import com.guardianMed.patientRecordManagement.system.models.Patient;
+import com.guardianMed.patientRecordManagement.system.payload.response.PatientSearchResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * In-memory search over patient names. Name tokens live in a sorted map, so a prefix is a range scan
+ * (the same lookups a trie gives), and a trigram index over the distinct tokens finds candidates for
+ * typo-tolerant matches, which are then confirmed with a bounded edit distance.
+ * PatientService keeps the index current on writes, and a periodic rebuild picks up changes made by
+ * other nodes.
+ */
+@Component
+public class PatientNameIndex {
+    private static final Logger logger = LoggerFactory.getLogger(PatientNameIndex.class);
+
+    private static final int EXACT_SCORE = 100;
+    private static final int PREFIX_SCORE = 60;
+    private static final int FUZZY_SCORE = 40;
+    private static final int MIN_FUZZY_LENGTH = 3;
+    // Past this many matches the scan stops as soon as the requested page is settled and total becomes a lower bound
+    private static final int MAX_COUNTED = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final long rebuildMinutes;
+    private final Object writeLock = new Object();
+    private volatile Snapshot snapshot = new Snapshot();
+    // Changes made while a rebuild is reading the collection, replayed onto the new snapshot; guarded by writeLock
+    private List<Consumer<Snapshot>> pendingDuringRebuild;
+    private ScheduledExecutorService loader;
+
+    @Autowired
+    public PatientNameIndex(MongoTemplate mongoTemplate,
+                            @Value("${sprngsec.app.patientSearchRebuildMinutes:30}") long rebuildMinutes) {
+        this.mongoTemplate = mongoTemplate;
+        this.rebuildMinutes = rebuildMinutes;
+    }
+
+    /**
+     * Load in the background so startup does not wait for the whole collection; searches see patients as they arrive.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startLoading() {
+        loader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "patient-name-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (rebuildMinutes > 0) {
+            loader.scheduleWithFixedDelay(this::rebuildFromDatabase, 0, rebuildMinutes, TimeUnit.MINUTES);
+        } else {
+            loader.execute(this::rebuildFromDatabase);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (loader != null) {
+            loader.shutdownNow();
+        }
+    }
+
+    void rebuildFromDatabase() {
+        Query query = new Query();
+        query.fields().include("patientNIC").include("patientName");
+        long startedAt = System.nanoTime();
+        try (CloseableIterator<Patient> patients = mongoTemplate.stream(query, Patient.class)) {
+            int loaded = rebuild(patients);
+            logger.info("Patient name index loaded {} patient(s) in {} ms", loaded,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        } catch (DataAccessException e) {
+            logger.error("Could not load the patient name index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Replace the index with the given patients. Writes arriving during the rebuild are kept.
+     */
+    public int rebuild(Iterator<Patient> patients) {
+        synchronized (writeLock) {
+            if (pendingDuringRebuild != null) {
+                return 0;
+            }
+            pendingDuringRebuild = new ArrayList<>();
+        }
+        Snapshot fresh = new Snapshot();
+        int loaded = 0;
+        try {
+            while (patients.hasNext()) {
+                Patient patient = patients.next();
+                fresh.put(patient.getPatientNIC(), patient.getPatientName());
+                loaded++;
+            }
+            synchronized (writeLock) {
+                pendingDuringRebuild.forEach(change -> change.accept(fresh));
+                snapshot = fresh;
+            }
+        } finally {
+            synchronized (writeLock) {
+                pendingDuringRebuild = null;
+            }
+        }
+        return loaded;
+    }
+
+    public void put(String patientNIC, String patientName) {
+        if (patientNIC != null) {
+            apply(index -> index.put(patientNIC, patientName));
+        }
+    }
+
+    public void remove(String patientNIC) {
+        if (patientNIC != null) {
+            apply(index -> index.remove(patientNIC));
+        }
+    }
+
+    public int size() {
+        return snapshot.entries.size();
+    }
+
+    private void apply(Consumer<Snapshot> change) {
+        synchronized (writeLock) {
+            change.accept(snapshot);
+            if (pendingDuringRebuild != null) {
+                pendingDuringRebuild.add(change);
+            }
+        }
+    }
+
+    /**
+     * Rank patients whose name matches every query token, exactly, by prefix or within a small edit distance.
+     * Ties are broken by name and then NIC.
+     */
+    public PatientSearchResult search(String query, int page, int size) {
+        Snapshot current = snapshot;
+        List<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty()) {
+            return new PatientSearchResult(query, 0, true, page, size, List.of());
+        }
+
+        // Resolve every query token to the name tokens it matches, and drive the patient scan from the most selective one
+        List<Map<String, Integer>> matches = new ArrayList<>(queryTokens.size());
+        int driver = 0;
+        long smallest = Long.MAX_VALUE;
+        int otherMaxScores = 0;
+        for (String queryToken : queryTokens) {
+            Map<String, Integer> tokenMatches = current.matchTokens(queryToken);
+            if (tokenMatches.isEmpty()) {
+                return new PatientSearchResult(query, 0, true, page, size, List.of());
+            }
+            long patients = current.postingSize(tokenMatches.keySet());
+            if (patients < smallest) {
+                smallest = patients;
+                driver = matches.size();
+            }
+            matches.add(tokenMatches);
+            otherMaxScores += Collections.max(tokenMatches.values());
+        }
+        Map<String, Integer> driverMatches = matches.get(driver);
+        otherMaxScores -= Collections.max(driverMatches.values());
+
+        // Only the hits up to the end of the requested page need ordering, so keep a bounded heap of the best ones
+        int wanted = page * size + size;
+        PriorityQueue<Entry> worstFirst = new PriorityQueue<>(wanted + 1, Comparator.comparingInt((Entry entry) -> -entry.score)
+                .thenComparing(Comparator.naturalOrder()).reversed());
+        int total = 0;
+        boolean exact = true;
+
+        // Walk the driver's score classes best first; within a class, patients come out in name order
+        TreeMap<Integer, List<String>> classes = new TreeMap<>(Comparator.reverseOrder());
+        driverMatches.forEach((token, score) -> classes.computeIfAbsent(score, key -> new ArrayList<>()).add(token));
+        scan:
+        for (Map.Entry<Integer, List<String>> scoreClass : classes.entrySet()) {
+            int upperBound = scoreClass.getKey() + otherMaxScores;
+            Iterator<Entry> candidates = current.mergedPostings(scoreClass.getValue());
+            while (candidates.hasNext()) {
+                Entry candidate = candidates.next();
+                boolean pageSettled = worstFirst.size() == wanted && !outranks(upperBound, candidate, worstFirst.peek());
+                if (pageSettled && total >= MAX_COUNTED) {
+                    exact = false;
+                    break scan;
+                }
+                // A patient can be reached through several matching tokens; count it only through its best one
+                if (bestToken(candidate.tokens, driverMatches) != scoreClass.getKey()) {
+                    continue;
+                }
+                int score = 0;
+                for (Map<String, Integer> tokenMatches : matches) {
+                    int tokenScore = bestToken(candidate.tokens, tokenMatches);
+                    if (tokenScore < 0) {
+                        score = -1;
+                        break;
+                    }
+                    score += tokenScore;
+                }
+                if (score < 0) {
+                    continue;
+                }
+                total++;
+                if (!pageSettled && (worstFirst.size() < wanted || outranks(score, candidate, worstFirst.peek()))) {
+                    worstFirst.add(candidate.scored(score));
+                    if (worstFirst.size() > wanted) {
+                        worstFirst.poll();
+                    }
+                }
+            }
+        }
+
+        List<Entry> ranked = new ArrayList<>(worstFirst);
+        ranked.sort(Comparator.comparingInt((Entry entry) -> -entry.score).thenComparing(Comparator.naturalOrder()));
+        List<PatientSearchResult.Hit> hits = new ArrayList<>();
+        for (int i = page * size; i < ranked.size(); i++) {
+            Entry entry = ranked.get(i);
+            hits.add(new PatientSearchResult.Hit(entry.patientNIC, entry.patientName, entry.score));
+        }
+        return new PatientSearchResult(query, total, exact, page, size, hits);
+    }
+
+    /**
+     * The best score any of the name tokens earns against one query token, or -1 when none match.
+     */
+    private static int bestToken(List<String> nameTokens, Map<String, Integer> tokenMatches) {
+        int best = -1;
+        for (String token : nameTokens) {
+            Integer score = tokenMatches.get(token);
+            if (score != null && score > best) {
+                best = score;
+            }
+        }
+        return best;
+    }
+
+    private static boolean outranks(int score, Entry candidate, Entry worst) {
+        return score != worst.score ? score > worst.score : candidate.compareTo(worst) < 0;
+    }
+
+    /**
+     * Lowercased letter and digit runs with accents removed, without duplicates, in order of appearance.
+     */
+    static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        String folded = text;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 127) {
+                folded = Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+                break;
+            }
+        }
+        List<String> tokens = new ArrayList<>(4);
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean wordChar = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String token = folded.substring(start, i).toLowerCase(Locale.ROOT);
+                if (!tokens.contains(token)) {
+                    tokens.add(token);
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    static List<String> trigrams(String token) {
+        String padded = "$" + token + "$";
+        List<String> grams = new ArrayList<>(padded.length());
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        if (grams.isEmpty()) {
+            grams.add(padded);
+        }
+        return grams;
+    }
+
+    static int maxEdits(String token) {
+        return token.length() <= 5 ? 1 : 2;
+    }
+
+    /**
+     * Edit distance counting an adjacent transposition as one edit (optimal string alignment), giving up
+     * as soon as it must exceed max (returns max + 1 in that case).
+     */
+    static int boundedEditDistance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        int[] beforePrevious = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    current[j] = Math.min(current[j], beforePrevious[j - 2] + 1);
+                }
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] recycled = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[b.length()], max + 1);
+    }
+
+    /**
+     * One indexed patient. The same instance sits in the posting set of each of its tokens, ordered by name then NIC.
+     */
+    private static final class Entry implements Comparable<Entry> {
+        private final String patientNIC;
+        private final String patientName;
+        private final List<String> tokens;
+        private final int score;
+
+        Entry(String patientNIC, String patientName, List<String> tokens, int score) {
+            this.patientNIC = patientNIC;
+            this.patientName = patientName;
+            this.tokens = tokens;
+            this.score = score;
+        }
+
+        Entry scored(int score) {
+            return new Entry(patientNIC, patientName, tokens, score);
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byName = patientName.compareTo(other.patientName);
+            return byName != 0 ? byName : patientNIC.compareTo(other.patientNIC);
+        }
+    }
+
+    /**
+     * Writes are serialized by writeLock; searches read concurrently and may see a write half applied.
+     */
+    private static final class Snapshot {
+        private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+        private final ConcurrentSkipListMap<String, NavigableSet<Entry>> postings = new ConcurrentSkipListMap<>();
+        private final Map<String, Set<String>> tokensByTrigram = new ConcurrentHashMap<>();
+
+        void put(String patientNIC, String patientName) {
+            remove(patientNIC);
+            if (patientName == null) {
+                return;
+            }
+            Entry entry = new Entry(patientNIC, patientName, tokenize(patientName), 0);
+            entries.put(patientNIC, entry);
+            for (String token : entry.tokens) {
+                NavigableSet<Entry> posting = postings.get(token);
+                if (posting == null) {
+                    posting = new ConcurrentSkipListSet<>();
+                    postings.put(token, posting);
+                    for (String gram : trigrams(token)) {
+                        tokensByTrigram.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(token);
+                    }
+                }
+                posting.add(entry);
+            }
+        }
+
+        void remove(String patientNIC) {
+            Entry entry = entries.remove(patientNIC);
+            if (entry == null) {
+                return;
+            }
+            for (String token : entry.tokens) {
+                NavigableSet<Entry> posting = postings.get(token);
+                if (posting == null) {
+                    continue;
+                }
+                posting.remove(entry);
+                if (posting.isEmpty()) {
+                    postings.remove(token);
+                    for (String gram : trigrams(token)) {
+                        Set<String> gramTokens = tokensByTrigram.get(gram);
+                        if (gramTokens != null) {
+                            gramTokens.remove(token);
+                            if (gramTokens.isEmpty()) {
+                                tokensByTrigram.remove(gram);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        long postingSize(Collection<String> tokens) {
+            long patients = 0;
+            for (String token : tokens) {
+                NavigableSet<Entry> posting = postings.get(token);
+                if (posting != null) {
+                    patients += posting.size();
+                }
+            }
+            return patients;
+        }
+
+        /**
+         * The patients of all the given tokens in name order, merged lazily; a patient with several of the tokens repeats.
+         */
+        Iterator<Entry> mergedPostings(List<String> tokens) {
+            PriorityQueue<PeekingIterator> heads = new PriorityQueue<>(Comparator.comparing((PeekingIterator head) -> head.next));
+            for (String token : tokens) {
+                NavigableSet<Entry> posting = postings.get(token);
+                if (posting != null) {
+                    PeekingIterator head = new PeekingIterator(posting.iterator());
+                    if (head.next != null) {
+                        heads.add(head);
+                    }
+                }
+            }
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return !heads.isEmpty();
+                }
+
+                @Override
+                public Entry next() {
+                    PeekingIterator head = heads.poll();
+                    Entry entry = head.advance();
+                    if (head.next != null) {
+                        heads.add(head);
+                    }
+                    return entry;
+                }
+            };
+        }
+
+        /**
+         * Name tokens matching one query token, with the score each earns.
+         */
+        Map<String, Integer> matchTokens(String queryToken) {
+            Map<String, Integer> matched = new HashMap<>();
+            for (String token : postings.subMap(queryToken, true, queryToken + Character.MAX_VALUE, true).keySet()) {
+                matched.put(token, token.equals(queryToken) ? EXACT_SCORE : PREFIX_SCORE);
+            }
+
+            if (queryToken.length() >= MIN_FUZZY_LENGTH) {
+                int maxEdits = maxEdits(queryToken);
+                List<String> grams = trigrams(queryToken);
+                // An edit can destroy up to three trigrams, a transposition up to four
+                int minShared = Math.max(1, grams.size() - 4 * maxEdits);
+                Map<String, Integer> shared = new HashMap<>();
+                for (String gram : grams) {
+                    Set<String> tokens = tokensByTrigram.get(gram);
+                    if (tokens != null) {
+                        for (String token : tokens) {
+                            shared.merge(token, 1, Integer::sum);
+                        }
+                    }
+                }
+                for (Map.Entry<String, Integer> candidate : shared.entrySet()) {
+                    String token = candidate.getKey();
+                    if (candidate.getValue() < minShared || matched.containsKey(token)) {
+                        continue;
+                    }
+                    int distance = boundedEditDistance(queryToken, token, maxEdits);
+                    if (distance <= maxEdits) {
+                        matched.put(token, FUZZY_SCORE - 10 * distance);
+                    }
+                }
+            }
+            return matched;
+        }
+    }
+
+    private static final class PeekingIterator {
+        private final Iterator<Entry> iterator;
+        private Entry next;
+
+        PeekingIterator(Iterator<Entry> iterator) {
+            this.iterator = iterator;
+            this.next = iterator.hasNext() ? iterator.next() : null;
+        }
+
+        Entry advance() {
+            Entry current = next;
+            next = iterator.hasNext() ? iterator.next() : null;
+            return current;
+        }
+    }
+}
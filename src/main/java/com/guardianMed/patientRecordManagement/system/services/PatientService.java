@@ -1,18 +1,45 @@
 package com.guardianMed.patientRecordManagement.system.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.guardianMed.patientRecordManagement.system.exception.NotFoundException;
+import com.guardianMed.patientRecordManagement.system.models.Bill;
 import com.guardianMed.patientRecordManagement.system.models.Patient;
 import com.guardianMed.patientRecordManagement.system.models.Prescription;
 import com.guardianMed.patientRecordManagement.system.repositories.PatientRepository;
 import com.guardianMed.patientRecordManagement.system.repositories.PrescriptionRepository;
 import com.guardianMed.patientRecordManagement.system.payload.requests.PatientRequest;
+import com.guardianMed.patientRecordManagement.system.payload.response.CursorPage;
+import com.guardianMed.patientRecordManagement.system.payload.response.PatientOverview;
+import com.guardianMed.patientRecordManagement.system.payload.response.PatientResponse;
+import com.guardianMed.patientRecordManagement.system.payload.response.PatientSearchResult;
+import com.guardianMed.patientRecordManagement.system.payload.response.PrescriptionResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.bson.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.annotation.PostConstruct;
 import javax.validation.Valid;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
 
 @Service
@@ -25,9 +52,79 @@ public class PatientService {
     @Autowired
     private PrescriptionRepository prescriptionRepository;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private KeysetPager keysetPager;
+
+    @Autowired
+    private DocumentStreamer documentStreamer;
+
+    @Autowired
+    private FieldProjector fieldProjector;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PatientNameIndex patientNameIndex;
+
+    @Autowired
+    private RecordArchiver recordArchiver;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${sprngsec.app.patientCacheEnabled:true}")
+    private boolean patientCacheEnabled;
+
+    @Value("${sprngsec.app.patientCacheMaxSize:10000}")
+    private long patientCacheMaxSize;
+
+    @Value("${sprngsec.app.patientCacheTtlSeconds:600}")
+    private long patientCacheTtlSeconds;
+
+    // Patients by NIC. Writes go to the repository and then invalidate, so readers never see a half-applied update
+    private Cache<String, Patient> patientCache;
+
+    @PostConstruct
+    public void initPatientCache() {
+        if (!patientCacheEnabled) {
+            return;
+        }
+        patientCache = Caffeine.newBuilder()
+                .maximumSize(patientCacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(patientCacheTtlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, patientCache, "patientsByNic");
+    }
+
+    /**
+     * Create the patient with a single insert. NIC uniqueness is enforced by the unique patientNIC index, so a
+     * duplicate surfaces as a DuplicateKeyException from the insert instead of a separate lookup beforehand.
+     */
     public Patient savePatient(@Valid PatientRequest patientRequest) {
         logger.info("Trying to save patient: {}", patientRequest);
 
+        Patient patient = toPatient(patientRequest);
+
+        Patient savedPatient;
+        try {
+            savedPatient = patientRepository.insert(patient);
+        } catch (DuplicateKeyException e) {
+            logger.info("Couldn't save.Patient with NIC " + patient.getPatientNIC() + " already exists");
+            throw new DuplicateKeyException("Patient with NIC " + patient.getPatientNIC() + " already exists", e);
+        }
+        evictPatient(savedPatient.getPatientNIC());
+        patientNameIndex.put(savedPatient.getPatientNIC(), savedPatient.getPatientName());
+        logger.info("Patient saved successfully: {}", savedPatient);
+
+        return savedPatient;
+    }
+
+    public Patient toPatient(PatientRequest patientRequest) {
         Patient patient = new Patient();
         patient.setPatientNIC(patientRequest.getPatientNIC());
         patient.setPatientName(patientRequest.getPatientName());
@@ -36,16 +133,7 @@ public class PatientService {
         patient.setAddress(patientRequest.getAddress());
         patient.setEmail(patientRequest.getEmail());
         patient.setContactNumber(patientRequest.getContactNumber());
-
-        if (patientRepository.findByPatientNIC(patient.getPatientNIC()) != null) {
-            logger.info("Couldn't save.Patient with NIC " + patient.getPatientNIC() + " already exists");
-            throw new DuplicateKeyException("Patient with NIC " + patient.getPatientNIC() + " already exists");
-                  }
-
-        Patient savedPatient = patientRepository.save(patient);
-        logger.info("Patient saved successfully: {}", savedPatient);
-
-        return savedPatient;
+        return patient;
     }
 
     public List<Patient> getPatients() {
@@ -53,6 +141,44 @@ public class PatientService {
         return patientRepository.findAll();
     }
 
+    public CursorPage<Patient> getPatients(String cursor, Integer limit, String sort) {
+        logger.info("Fetching a page of patients");
+        return keysetPager.page(Patient.class, null, Patient::getId, cursor, limit, sort);
+    }
+
+    public StreamingResponseBody streamPatients(boolean ndjson) {
+        logger.info("Streaming all patients");
+        return documentStreamer.streamAll(Patient.class, ndjson);
+    }
+
+    /**
+     * The projected variants below fetch only the requested PatientResponse fields, and every field when fields is blank.
+     */
+    public List<PatientResponse> getPatients(String fields) {
+        logger.info("Fetching all patients with fields: {}", fields);
+        return fieldProjector.find(PatientResponse.class, Patient.class, null, fields);
+    }
+
+    public CursorPage<PatientResponse> getPatients(String cursor, Integer limit, String sort, String fields) {
+        logger.info("Fetching a page of patients with fields: {}", fields);
+        return fieldProjector.page(PatientResponse.class, Patient.class, null, PatientResponse::getId, fields, cursor, limit, sort);
+    }
+
+    public StreamingResponseBody streamPatients(boolean ndjson, String fields) {
+        logger.info("Streaming all patients with fields: {}", fields);
+        return fieldProjector.stream(PatientResponse.class, Patient.class, null, fields, ndjson);
+    }
+
+    public PatientResponse getPatientById(String id, String fields) {
+        logger.info("Fetching patient by ID: {} with fields: {}", id, fields);
+        return fieldProjector.findOne(PatientResponse.class, Patient.class, Criteria.where("_id").is(id), fields);
+    }
+
+    public PatientResponse getPatientByPatientNIC(String patientNIC, String fields) {
+        logger.info("Fetching patient by NIC: {} with fields: {}", patientNIC, fields);
+        return fieldProjector.findOne(PatientResponse.class, Patient.class, Criteria.where("patientNIC").is(patientNIC), fields);
+    }
+
     public Patient getPatientById(String id) {
         logger.info("Fetching patient by ID: {}", id);
         return patientRepository.findById(id).orElse(null);
@@ -63,46 +189,154 @@ public class PatientService {
         return patientRepository.findByPatientName(patientName);
     }
 
-    public Patient getPatientByPatientNIC(String patientNIC) {
-        logger.info("Fetching patient by NIC: {}", patientNIC);
-        return patientRepository.findByPatientNIC(patientNIC);
-    }
+    /**
+     * The patient page in one round trip: a single aggregation on patients that looks up the patient's
+     * prescriptions (newest first, plus counts) and bill totals, instead of three separate queries. Each is
+     * looked up in both the hot and the archive collection, so archived records still count.
+     * Returns null when no patient has the NIC.
+     */
+    public PatientOverview getPatientOverview(String patientNIC, int recentPrescriptions) {
+        logger.info("Fetching overview for patient with NIC: {}", patientNIC);
 
-    public Patient updatePatient(String patientNIC, Patient patient) {
-        logger.info("Updating patient with NIC: {}", patientNIC);
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("patientNIC").is(patientNIC)),
+                Aggregation.limit(1),
+                context -> prescriptionsLookup(mongoTemplate.getCollectionName(Prescription.class), "prescriptions", recentPrescriptions),
+                context -> prescriptionsLookup(recordArchiver.archiveCollection(Prescription.class), "archivedPrescriptions", recentPrescriptions),
+                context -> billsLookup(mongoTemplate.getCollectionName(Bill.class), "bills"),
+                context -> billsLookup(recordArchiver.archiveCollection(Bill.class), "archivedBills"));
+        Document result = mongoTemplate.aggregate(aggregation, mongoTemplate.getCollectionName(Patient.class), Document.class)
+                .getUniqueMappedResult();
+        if (result == null) {
+            return null;
+        }
 
-        Patient existingPatient = patientRepository.findByPatientNIC(patientNIC);
-        if (existingPatient != null) {
-            String newPatientNIC = patient.getPatientNIC();
+        MongoConverter converter = mongoTemplate.getConverter();
+        PatientOverview overview = new PatientOverview();
+        overview.setPatient(converter.read(PatientResponse.class, result));
 
-            // Check if the NIC is blank or null
-            if (newPatientNIC == null || newPatientNIC.trim().isEmpty()) {
-                throw new IllegalArgumentException("NIC cannot be blank");
+        // $facet always yields exactly one document, even for a patient without prescriptions
+        List<Document> recent = new ArrayList<>();
+        for (String lookup : List.of("prescriptions", "archivedPrescriptions")) {
+            Document prescriptions = result.getList(lookup, Document.class).get(0);
+            recent.addAll(prescriptions.getList("recent", Document.class));
+            for (Document counts : prescriptions.getList("counts", Document.class)) {
+                overview.setPrescriptionCount(overview.getPrescriptionCount() + counts.get("total", Number.class).longValue());
+                overview.setActivePrescriptionCount(overview.getActivePrescriptionCount() + counts.get("active", Number.class).longValue());
             }
+        }
+        // Each side is already newest first and limited; merge them and keep the newest overall
+        recent.sort(Comparator.comparing((Document prescription) -> prescription.getDate("date"), Comparator.nullsLast(Comparator.reverseOrder())));
+        overview.setRecentPrescriptions(recent.stream().limit(recentPrescriptions)
+                .map(prescription -> converter.read(PrescriptionResponse.class, prescription)).toList());
 
-            // Check if the new NIC is different from the existing NIC
-            if (!newPatientNIC.equals(patientNIC)) {
-                // Check if the new NIC already exists
-                Patient duplicatePatient = patientRepository.findByPatientNIC(newPatientNIC);
-                if (duplicatePatient != null) {
-                    throw new DuplicateKeyException("Patient with NIC " + newPatientNIC + " already exists");
+        Date lastDate = null;
+        for (String lookup : List.of("bills", "archivedBills")) {
+            for (Document totals : result.getList(lookup, Document.class)) {
+                overview.setBillCount(overview.getBillCount() + totals.get("count", Number.class).longValue());
+                overview.setBillTotalCents(overview.getBillTotalCents() + totals.get("totalCents", Number.class).longValue());
+                Date date = totals.getDate("lastDate");
+                if (date != null && (lastDate == null || date.after(lastDate))) {
+                    lastDate = date;
                 }
             }
+        }
+        overview.setBillTotal(PricingEngine.toMajor(overview.getBillTotalCents()));
+        overview.setLastBillDate(lastDate == null ? null : lastDate.toInstant().atZone(ZoneId.systemDefault()).toLocalDate());
+        return overview;
+    }
 
-            existingPatient.setPatientName(patient.getPatientName());
-            existingPatient.setGender(patient.getGender());
-            existingPatient.setAge(patient.getAge());
-            existingPatient.setAddress(patient.getAddress());
-            existingPatient.setEmail(patient.getEmail());
-            existingPatient.setContactNumber(patient.getContactNumber());
+    private static Document prescriptionsLookup(String from, String as, int recentPrescriptions) {
+        return new Document("$lookup", new Document("from", from)
+                .append("let", new Document("nic", "$patientNIC"))
+                .append("pipeline", List.of(
+                        new Document("$match", byPatient()),
+                        new Document("$sort", new Document("date", -1).append("_id", -1)),
+                        new Document("$project", new Document("patient", 0)),
+                        new Document("$facet", new Document()
+                                .append("recent", List.of(new Document("$limit", recentPrescriptions)))
+                                .append("counts", List.of(new Document("$group", new Document("_id", null)
+                                        .append("total", new Document("$sum", 1))
+                                        .append("active", new Document("$sum", new Document("$cond",
+                                                List.of(new Document("$eq", List.of("$state", Prescription.State.ACTIVE.name())), 1, 0))))))))))
+                .append("as", as));
+    }
 
-            Patient updatedPatient = patientRepository.save(existingPatient);
-            logger.info("Patient updated successfully: {}", updatedPatient);
+    private static Document billsLookup(String from, String as) {
+        return new Document("$lookup", new Document("from", from)
+                .append("let", new Document("nic", "$patientNIC"))
+                .append("pipeline", List.of(
+                        new Document("$match", byPatient()),
+                        new Document("$group", new Document("_id", null)
+                                .append("count", new Document("$sum", 1))
+                                // Bills from before amounts were kept in cents only have totalAmount
+                                .append("totalCents", new Document("$sum", new Document("$ifNull", List.of("$totalCents",
+                                        new Document("$toLong", new Document("$round",
+                                                List.of(new Document("$multiply", List.of("$totalAmount", 100)), 0)))))))
+                                .append("lastDate", new Document("$max", "$date")))))
+                .append("as", as));
+    }
 
-            return updatedPatient;
-        } else {
+    private static Document byPatient() {
+        return new Document("$expr", new Document("$eq", List.of("$patientNIC", "$$nic")));
+    }
+
+    public PatientSearchResult searchPatients(String query, int page, int size) {
+        logger.info("Searching patients by name: {}", query);
+        return patientNameIndex.search(query, page, size);
+    }
+
+    public Patient getPatientByPatientNIC(String patientNIC) {
+        logger.info("Fetching patient by NIC: {}", patientNIC);
+        if (patientCache == null || patientNIC == null) {
+            return patientRepository.findByPatientNIC(patientNIC);
+        }
+        // A null load is not cached, so a patient created after a miss is found on the next call
+        return patientCache.get(patientNIC, patientRepository::findByPatientNIC);
+    }
+
+    /**
+     * Drop the cached patient; the next lookup reads the current record.
+     */
+    public void evictPatient(String patientNIC) {
+        if (patientCache != null && patientNIC != null) {
+            patientCache.invalidate(patientNIC);
+        }
+    }
+
+    /**
+     * Overwrite the editable fields in one findAndModify and return the updated record, or null if no patient
+     * has the NIC. The NIC itself is the patient's key and is never changed by an update.
+     */
+    public Patient updatePatient(String patientNIC, Patient patient) {
+        logger.info("Updating patient with NIC: {}", patientNIC);
+
+        // Check if the NIC is blank or null
+        String newPatientNIC = patient.getPatientNIC();
+        if (newPatientNIC == null || newPatientNIC.trim().isEmpty()) {
+            throw new IllegalArgumentException("NIC cannot be blank");
+        }
+
+        Update update = new Update()
+                .set("patientName", patient.getPatientName())
+                .set("gender", patient.getGender())
+                .set("age", patient.getAge())
+                .set("address", patient.getAddress())
+                .set("email", patient.getEmail())
+                .set("contactNumber", patient.getContactNumber());
+        Patient updatedPatient = mongoTemplate.findAndModify(Query.query(Criteria.where("patientNIC").is(patientNIC)),
+                update, FindAndModifyOptions.options().returnNew(true), Patient.class);
+        if (updatedPatient == null) {
             return null;
         }
+
+        evictPatient(patientNIC);
+        patientNameIndex.put(patientNIC, updatedPatient.getPatientName());
+        // Prescriptions and bills keep copies of the patient; they are brought up to date in the background
+        eventPublisher.publishEvent(new PatientUpdatedEvent(updatedPatient));
+        logger.info("Patient updated successfully: {}", updatedPatient);
+
+        return updatedPatient;
     }
 
     public boolean deletePatient(String patientNIC) {
@@ -110,13 +344,18 @@ public class PatientService {
 
         Patient patient = patientRepository.findByPatientNIC(patientNIC);
         if (patient != null) {
-            // Check if there are any prescriptions associated with the patient's NIC
+            // Check if there are any prescriptions associated with the patient's NIC, archived ones included,
+            // so that archived prescriptions and bills are never left without their patient
             List<Prescription> prescriptions = prescriptionRepository.findByPatientNIC(patientNIC);
-            if (!prescriptions.isEmpty()) {
+            if (!prescriptions.isEmpty()
+                    || recordArchiver.hasArchivedForPatientNIC(patientNIC, Prescription.class)
+                    || recordArchiver.hasArchivedForPatientNIC(patientNIC, Bill.class)) {
                 throw new IllegalStateException("Cannot delete patient with existing prescriptions");
             }
 
             patientRepository.delete(patient);
+            evictPatient(patientNIC);
+            patientNameIndex.remove(patientNIC);
             logger.info("Patient deleted successfully");
             return true;
         }
@@ -128,7 +367,7 @@ public class PatientService {
     public String getEmailByPatientNIC(String patientNIC) {
         logger.info("Fetching email for patient with NIC: {}", patientNIC);
 
-        Patient patient = patientRepository.findByPatientNIC(patientNIC);
+        Patient patient = getPatientByPatientNIC(patientNIC);
         if (patient != null) {
             String email = patient.getEmail();
             logger.info("Email fetched successfully: {}", email);
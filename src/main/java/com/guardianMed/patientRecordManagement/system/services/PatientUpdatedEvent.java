@@ -0,0 +1,9 @@
+package com.guardianMed.patientRecordManagement.system.services;
+
+import com.guardianMed.patientRecordManagement.system.models.Patient;
+
+/**
+ * Published by PatientService after a patient record changes, carrying the record as stored.
+ */
+public record PatientUpdatedEvent(Patient patient) {
+}
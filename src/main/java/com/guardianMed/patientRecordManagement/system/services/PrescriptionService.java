@@ -2,16 +2,24 @@ package com.guardianMed.patientRecordManagement.system.services;
 
 import com.guardianMed.patientRecordManagement.system.models.Patient;
 import com.guardianMed.patientRecordManagement.system.models.Prescription;
-import com.guardianMed.patientRecordManagement.system.repositories.PatientRepository;
 import com.guardianMed.patientRecordManagement.system.repositories.PrescriptionRepository;
 import com.guardianMed.patientRecordManagement.system.payload.requests.PrescriptionRequest;
+import com.guardianMed.patientRecordManagement.system.payload.response.CursorPage;
+import com.guardianMed.patientRecordManagement.system.payload.response.PrescriptionResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import javax.validation.Valid;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
@@ -22,7 +30,25 @@ public class PrescriptionService {
     private PrescriptionRepository prescriptionRepository;
 
     @Autowired
-    private PatientRepository patientRepository;
+    private PatientService patientService;
+
+    @Autowired
+    private KeysetPager keysetPager;
+
+    @Autowired
+    private DocumentStreamer documentStreamer;
+
+    @Autowired
+    private FieldProjector fieldProjector;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private RecordArchiver recordArchiver;
+
+    @Autowired
+    private MedicationCatalog medicationCatalog;
 
     private static final Logger logger = LoggerFactory.getLogger(PrescriptionService.class);
 
@@ -31,7 +57,7 @@ public class PrescriptionService {
      */
     public Prescription savePrescription(@Valid PrescriptionRequest prescriptionRequest) {
         String patientNIC = prescriptionRequest.getPatientNIC();
-        Patient patient = patientRepository.findByPatientNIC(patientNIC);
+        Patient patient = patientService.getPatientByPatientNIC(patientNIC);
         if (patient == null) {
             throw new IllegalArgumentException("Patient not found for the given patientNIC: " + patientNIC + ". Please register the patient first.");
         }
@@ -44,7 +70,8 @@ public class PrescriptionService {
         prescription.setPatientName(patient.getPatientName());
         prescription.setDate(LocalDate.now());
         prescription.setDiagnosis(prescriptionRequest.getDiagnosis());
-        prescription.setMedications(prescriptionRequest.getMedications());
+        // Stored as catalog ids; medications may be given by id or name, unknown ones are rejected
+        prescription.setMedications(medicationCatalog.toIds(prescriptionRequest.getMedications()));
         prescription.setInstructions(prescriptionRequest.getInstructions());
         prescription.setState(Prescription.State.ACTIVE);
 
@@ -61,7 +88,42 @@ public class PrescriptionService {
     }
 
     /**
-     * Get a specific prescription by ID.
+     * Get one page of prescriptions ordered by ID.
+     */
+    public CursorPage<Prescription> getPrescriptions(String cursor, Integer limit, String sort) {
+        logger.info("Retrieving a page of prescriptions");
+        return keysetPager.page(Prescription.class, null, Prescription::getId, cursor, limit, sort);
+    }
+
+    /**
+     * Stream all prescriptions straight from the database cursor.
+     */
+    public StreamingResponseBody streamPrescriptions(boolean ndjson) {
+        logger.info("Streaming all prescriptions");
+        return documentStreamer.streamAll(Prescription.class, ndjson);
+    }
+
+    /**
+     * Get all prescriptions with only the requested PrescriptionResponse fields, or all of them when fields is blank.
+     */
+    public List<PrescriptionResponse> getPrescriptions(String fields) {
+        logger.info("Retrieving all prescriptions with fields: {}", fields);
+        return fieldProjector.find(PrescriptionResponse.class, Prescription.class, null, fields);
+    }
+
+    public CursorPage<PrescriptionResponse> getPrescriptions(String cursor, Integer limit, String sort, String fields) {
+        logger.info("Retrieving a page of prescriptions with fields: {}", fields);
+        return fieldProjector.page(PrescriptionResponse.class, Prescription.class, null, PrescriptionResponse::getId,
+                fields, cursor, limit, sort);
+    }
+
+    public StreamingResponseBody streamPrescriptions(boolean ndjson, String fields) {
+        logger.info("Streaming all prescriptions with fields: {}", fields);
+        return fieldProjector.stream(PrescriptionResponse.class, Prescription.class, null, fields, ndjson);
+    }
+
+    /**
+     * Get a specific prescription by ID, falling back to the archive for old billed prescriptions.
      */
     public Prescription getPrescriptionById(String id) {
         Optional<Prescription> prescriptionOptional = prescriptionRepository.findById(id);
@@ -69,9 +131,30 @@ public class PrescriptionService {
             Prescription prescription = prescriptionOptional.get();
             logger.info("Retrieved prescription with ID: {}", id);
             return prescription;
-        } else {
+        }
+        Prescription archived = recordArchiver.findArchivedById(id, Prescription.class);
+        if (archived != null) {
+            logger.info("Retrieved archived prescription with ID: {}", id);
+            return archived;
+        }
+        throw new NoSuchElementException("Prescription not found for the given ID: " + id);
+    }
+
+    /**
+     * Get a specific prescription by ID with only the requested fields.
+     */
+    public PrescriptionResponse getPrescriptionById(String id, String fields) {
+        PrescriptionResponse prescription = fieldProjector.findOne(PrescriptionResponse.class, Prescription.class,
+                Criteria.where("_id").is(id), fields);
+        if (prescription == null) {
+            prescription = fieldProjector.findOne(PrescriptionResponse.class,
+                    recordArchiver.archiveCollection(Prescription.class), Criteria.where("_id").is(id), fields);
+        }
+        if (prescription == null) {
             throw new NoSuchElementException("Prescription not found for the given ID: " + id);
         }
+        logger.info("Retrieved prescription with ID: {}", id);
+        return prescription;
     }
 
     /**
@@ -88,10 +171,11 @@ public class PrescriptionService {
     }
 
     /**
-     * Get all prescriptions by patient NIC.
+     * Get all prescriptions by patient NIC, including archived ones.
      */
     public List<Prescription> getPrescriptionsByPatientNIC(String patientNIC) {
-        List<Prescription> prescriptions = prescriptionRepository.findByPatientNIC(patientNIC);
+        List<Prescription> prescriptions = new ArrayList<>(prescriptionRepository.findByPatientNIC(patientNIC));
+        prescriptions.addAll(recordArchiver.findArchivedByPatientNIC(patientNIC, Prescription.class));
         if (!prescriptions.isEmpty()) {
             logger.info("Retrieved prescriptions for patient with NIC: {}", patientNIC);
             return prescriptions;
@@ -101,32 +185,89 @@ public class PrescriptionService {
     }
 
     /**
-     * Update a prescription.
+     * Get all prescriptions by patient NIC with only the requested fields.
+     */
+    public List<PrescriptionResponse> getPrescriptionsByPatientNIC(String patientNIC, String fields) {
+        List<PrescriptionResponse> prescriptions = new ArrayList<>(fieldProjector.find(PrescriptionResponse.class,
+                Prescription.class, Criteria.where("patientNIC").is(patientNIC), fields));
+        prescriptions.addAll(fieldProjector.find(PrescriptionResponse.class,
+                recordArchiver.archiveCollection(Prescription.class), Criteria.where("patientNIC").is(patientNIC), fields));
+        if (prescriptions.isEmpty()) {
+            throw new NoSuchElementException("Prescriptions not found for the given patient NIC: " + patientNIC);
+        }
+        logger.info("Retrieved prescriptions for patient with NIC: {}", patientNIC);
+        return prescriptions;
+    }
+
+    /**
+     * Atomically flip an ACTIVE prescription to INACTIVE and return it, so that only one caller can bill it.
+     * The lookup and the state change are a single findAndModify; the prescription is only read again to tell a
+     * missing prescription from one that was already claimed.
+     */
+    public Prescription claimPrescription(String id) {
+        Query activeById = Query.query(Criteria.where("_id").is(id).and("state").is(Prescription.State.ACTIVE));
+        Update deactivate = Update.update("state", Prescription.State.INACTIVE);
+        Prescription claimed = mongoTemplate.findAndModify(activeById, deactivate,
+                FindAndModifyOptions.options().returnNew(true), Prescription.class);
+        if (claimed != null) {
+            logger.info("Claimed prescription with ID: {}", id);
+            return claimed;
+        }
+        throw notActive(id, "Prescription is already inactive");
+    }
+
+    // A conditional update on {_id, state: ACTIVE} matched nothing: tell a missing prescription from an inactive one
+    private RuntimeException notActive(String id, String inactiveMessage) {
+        if (!mongoTemplate.exists(Query.query(Criteria.where("_id").is(id)), Prescription.class)
+                && !recordArchiver.isArchived(id, Prescription.class)) {
+            return new NoSuchElementException("Prescription not found for the given ID: " + id);
+        }
+        return new IllegalStateException(inactiveMessage);
+    }
+
+    /**
+     * Undo claimPrescription after the work it guarded failed, making the prescription ACTIVE again.
+     */
+    public void releasePrescription(String id) {
+        Query inactiveById = Query.query(Criteria.where("_id").is(id).and("state").is(Prescription.State.INACTIVE));
+        mongoTemplate.updateFirst(inactiveById, Update.update("state", Prescription.State.ACTIVE), Prescription.class);
+        logger.info("Released prescription with ID: {}", id);
+    }
+
+    /**
+     * Update the clinical fields of an ACTIVE prescription. A single conditional findAndModify sets only those
+     * fields, so it can never undo a concurrent claim by writing the state back. Medications are left as they
+     * are when the request has none.
      */
     public Prescription updatePrescription(String id, Prescription prescription) {
-        Optional<Prescription> existingPrescriptionOptional = prescriptionRepository.findById(id);
-        if (existingPrescriptionOptional.isPresent()) {
-            Prescription existingPrescription = existingPrescriptionOptional.get();
-            if (existingPrescription.getState() == Prescription.State.INACTIVE) {
-                throw new IllegalStateException("Cannot update an inactive prescription.");
-            }
-            existingPrescription.setDate(LocalDate.now());
-            existingPrescription.setDiagnosis(prescription.getDiagnosis());
-            existingPrescription.setMedications(prescription.getMedications());
-            existingPrescription.setInstructions(prescription.getInstructions());
+        Query activeById = Query.query(Criteria.where("_id").is(id).and("state").is(Prescription.State.ACTIVE));
+        Update update = new Update()
+                .set("date", LocalDate.now())
+                .set("diagnosis", prescription.getDiagnosis());
+        if (prescription.getMedications() != null) {
+            update.set("medications", medicationCatalog.toIds(prescription.getMedications()));
+        }
+        update.set("instructions", prescription.getInstructions());
 
-            logger.info("Updating prescription with ID: {}", id);
-            return prescriptionRepository.save(existingPrescription);
-        } else {
-            throw new NoSuchElementException("Prescription not found for the given ID: " + id);
+        logger.info("Updating prescription with ID: {}", id);
+        Prescription updated = mongoTemplate.findAndModify(activeById, update,
+                FindAndModifyOptions.options().returnNew(true), Prescription.class);
+        if (updated == null) {
+            throw notActive(id, "Cannot update an inactive prescription.");
         }
+        return updated;
     }
 
     /**
-     * Delete a prescription.
+     * Delete a prescription, from the archive if it has been moved there.
      */
     public boolean deletePrescription(String id) {
         Optional<Prescription> existingPrescriptionOptional = prescriptionRepository.findById(id);
+        boolean archived = false;
+        if (existingPrescriptionOptional.isEmpty()) {
+            existingPrescriptionOptional = Optional.ofNullable(recordArchiver.findArchivedById(id, Prescription.class));
+            archived = true;
+        }
         if (existingPrescriptionOptional.isPresent()) {
             Prescription existingPrescription = existingPrescriptionOptional.get();
             LocalDate creationDate = existingPrescription.getDate();
@@ -137,7 +278,12 @@ public class PrescriptionService {
                 throw new IllegalStateException("Prescription can only be deleted after 5 years from the date of creation.");
             }
             logger.info("Deleting prescription with ID: {}", id);
-            prescriptionRepository.deleteById(id);
+            if (archived) {
+                mongoTemplate.remove(Query.query(Criteria.where("_id").is(id)), Prescription.class,
+                        recordArchiver.archiveCollection(Prescription.class));
+            } else {
+                prescriptionRepository.deleteById(id);
+            }
             return true;
         } else {
             throw new NoSuchElementException("Prescription not found for the given ID: " + id);
@@ -0,0 +1,158 @@
+package com.guardianMed.patientRecordManagement.system.services;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * Exact bill arithmetic in minor units (cents). Line items live in primitive arrays and every percentage is
+ * rounded half up to the cent, with Math.*Exact guarding against overflow, so totals and sums of totals never
+ * drift the way summed doubles do. Pricing allocates nothing; only growing a LineItems buffer does.
+ */
+public final class PricingEngine {
+
+    /**
+     * Rates are given in basis points: 10000 is 100%, 1800 is 18%.
+     */
+    public static final int BASIS_POINTS = 10_000;
+
+    private PricingEngine() {
+    }
+
+    /**
+     * Cents for a decimal amount such as "12.50". Throws ArithmeticException for fractions of a cent.
+     */
+    public static long toCents(String amount) {
+        return new BigDecimal(amount.trim()).movePointRight(2).setScale(0, RoundingMode.UNNECESSARY).longValueExact();
+    }
+
+    /**
+     * Cents for an amount held as a double, rounded half up to the nearest cent. Only for values that were
+     * never more precise than a cent, such as prices on records written before amounts were kept in cents.
+     */
+    public static long toCents(double amount) {
+        return BigDecimal.valueOf(amount).movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * The amount in major units, for display and for the legacy double fields only.
+     */
+    public static double toMajor(long cents) {
+        return cents / 100.0;
+    }
+
+    public static long subtotal(LineItems items) {
+        long subtotal = 0;
+        for (int i = 0; i < items.size; i++) {
+            subtotal = Math.addExact(subtotal, Math.multiplyExact(items.unitPriceCents[i], (long) items.quantities[i]));
+        }
+        return subtotal;
+    }
+
+    /**
+     * amount * basisPoints / 10000, rounded half up. Both arguments must be zero or more.
+     */
+    public static long portion(long amount, int basisPoints) {
+        long product = Math.multiplyExact(amount, (long) basisPoints);
+        long whole = product / BASIS_POINTS;
+        return product % BASIS_POINTS >= BASIS_POINTS / 2 ? whole + 1 : whole;
+    }
+
+    /**
+     * Price the items: a percentage discount off the subtotal, then each tax rate applied to the discounted
+     * amount and rounded on its own, as it appears as a separate line on the bill.
+     */
+    public static void price(LineItems items, int discountBasisPoints, int[] taxBasisPoints, Totals out) {
+        if (discountBasisPoints < 0 || discountBasisPoints > BASIS_POINTS) {
+            throw new IllegalArgumentException("Discount must be between 0 and " + BASIS_POINTS + " basis points");
+        }
+        if (out.taxLineCents.length != taxBasisPoints.length) {
+            throw new IllegalArgumentException("Totals expects " + out.taxLineCents.length + " tax lines");
+        }
+        long subtotal = subtotal(items);
+        long discount = portion(subtotal, discountBasisPoints);
+        long taxable = subtotal - discount;
+        long tax = 0;
+        for (int i = 0; i < taxBasisPoints.length; i++) {
+            if (taxBasisPoints[i] < 0) {
+                throw new IllegalArgumentException("Tax rates cannot be negative");
+            }
+            out.taxLineCents[i] = portion(taxable, taxBasisPoints[i]);
+            tax = Math.addExact(tax, out.taxLineCents[i]);
+        }
+        out.subtotalCents = subtotal;
+        out.discountCents = discount;
+        out.taxCents = tax;
+        out.totalCents = Math.addExact(taxable, tax);
+    }
+
+    /**
+     * Bill lines as parallel arrays of unit prices in cents and quantities. Reusable: clear() keeps the arrays.
+     */
+    public static final class LineItems {
+        private long[] unitPriceCents;
+        private int[] quantities;
+        private int size;
+
+        public LineItems(int capacity) {
+            unitPriceCents = new long[Math.max(capacity, 1)];
+            quantities = new int[Math.max(capacity, 1)];
+        }
+
+        public void add(long unitPriceCents, int quantity) {
+            if (unitPriceCents < 0 || quantity < 0) {
+                throw new IllegalArgumentException("Prices and quantities cannot be negative");
+            }
+            if (size == quantities.length) {
+                this.unitPriceCents = Arrays.copyOf(this.unitPriceCents, size * 2);
+                quantities = Arrays.copyOf(quantities, size * 2);
+            }
+            this.unitPriceCents[size] = unitPriceCents;
+            quantities[size] = quantity;
+            size++;
+        }
+
+        public void clear() {
+            size = 0;
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Result of price(), with one entry in getTaxLineCents() per tax rate. Reusable across calls.
+     */
+    public static final class Totals {
+        private final long[] taxLineCents;
+        private long subtotalCents;
+        private long discountCents;
+        private long taxCents;
+        private long totalCents;
+
+        public Totals(int taxLines) {
+            taxLineCents = new long[taxLines];
+        }
+
+        public long getSubtotalCents() {
+            return subtotalCents;
+        }
+
+        public long getDiscountCents() {
+            return discountCents;
+        }
+
+        public long getTaxCents() {
+            return taxCents;
+        }
+
+        public long getTotalCents() {
+            return totalCents;
+        }
+
+        public long getTaxLineCents(int line) {
+            return taxLineCents[line];
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.guardianMed.patientRecordManagement.system.services;
+
+import com.guardianMed.patientRecordManagement.system.models.Bill;
+import com.guardianMed.patientRecordManagement.system.models.Prescription;
+import com.mongodb.client.model.CreateCollectionOptions;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves billed prescriptions and bills older than archiveAfterDays out of the hot collections into
+ * prescriptions_archive and bills_archive, which are created with zstd block compression. The job runs on its
+ * own thread in batches with a pause between them, so it never competes with request traffic for long, and it
+ * is safe to interrupt: documents are upserted into the archive before they are removed from the hot collection.
+ * Services read through findArchivedById and findArchivedByPatientNIC when a record is not in the hot collection.
+ */
+@Component
+public class RecordArchiver {
+    private static final Logger logger = LoggerFactory.getLogger(RecordArchiver.class);
+
+    private static final String ARCHIVE_SUFFIX = "_archive";
+
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int archiveAfterDays;
+    private final int batchSize;
+    private final long pauseMillis;
+    private final int maxPerRun;
+    private final long intervalMinutes;
+    private final ScheduledExecutorService scheduler;
+
+    @Autowired
+    public RecordArchiver(MongoTemplate mongoTemplate, MeterRegistry meterRegistry,
+                          @Value("${sprngsec.app.archiveEnabled:true}") boolean enabled,
+                          @Value("${sprngsec.app.archiveAfterDays:730}") int archiveAfterDays,
+                          @Value("${sprngsec.app.archiveBatchSize:200}") int batchSize,
+                          @Value("${sprngsec.app.archivePauseMillis:500}") long pauseMillis,
+                          @Value("${sprngsec.app.archiveMaxPerRun:20000}") int maxPerRun,
+                          @Value("${sprngsec.app.archiveIntervalMinutes:60}") long intervalMinutes) {
+        this.mongoTemplate = mongoTemplate;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.archiveAfterDays = archiveAfterDays;
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+        this.maxPerRun = maxPerRun;
+        this.intervalMinutes = intervalMinutes;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "record-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            logger.info("Record archiving is disabled");
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                archiveOnce(LocalDate.now());
+            } catch (DataAccessException e) {
+                logger.warn("Archiving run failed, retrying on the next run: {}", e.getMessage());
+            } catch (RuntimeException e) {
+                logger.error("Unexpected error archiving records", e);
+            }
+        }, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Create the archive collections with compression before anything else (such as IndexManager) creates them
+     * implicitly with the default settings.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void createArchiveCollections() {
+        try {
+            for (Class<?> type : List.of(Prescription.class, Bill.class)) {
+                String archive = archiveCollection(type);
+                if (!mongoTemplate.collectionExists(archive)) {
+                    mongoTemplate.execute(db -> {
+                        db.createCollection(archive, new CreateCollectionOptions().storageEngineOptions(
+                                new Document("wiredTiger", new Document("configString", "block_compressor=zstd"))));
+                        return null;
+                    });
+                    logger.info("Created compressed archive collection {}", archive);
+                }
+            }
+        } catch (DataAccessException e) {
+            logger.error("Could not create archive collections: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Archive everything that is due as of the given day, up to maxPerRun documents. Returns how many were moved.
+     */
+    public int archiveOnce(LocalDate today) {
+        Date cutoff = Date.from(today.minusDays(archiveAfterDays).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        // Only billed prescriptions are archived; an ACTIVE one can still be claimed however old it is
+        int moved = archive(Prescription.class,
+                Criteria.where("state").is(Prescription.State.INACTIVE.name()).and("date").lt(cutoff), maxPerRun);
+        moved += archive(Bill.class, Criteria.where("date").lt(cutoff), maxPerRun - moved);
+        if (moved > 0) {
+            logger.info("Archived {} record(s) dated before {}", moved, cutoff);
+        }
+        return moved;
+    }
+
+    private int archive(Class<?> type, Criteria due, int limit) {
+        int moved = 0;
+        while (moved < limit) {
+            int size = Math.min(batchSize, limit - moved);
+            Batch batch = archiveBatch(type, due, size);
+            moved += batch.moved();
+            // A short read means nothing more is due; documents skipped because they changed no longer match
+            if (batch.read() < size || moved >= limit) {
+                break;
+            }
+            try {
+                Thread.sleep(pauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Copy one batch of due documents into the archive and then remove them from the hot collection. The copy
+     * is an upsert by _id, so a batch interrupted between the two steps is simply redone on the next run.
+     */
+    private Batch archiveBatch(Class<?> type, Criteria due, int size) {
+        String hot = mongoTemplate.getCollectionName(type);
+        String archive = archiveCollection(type);
+        List<Document> documents = mongoTemplate.find(Query.query(due).limit(size), Document.class, hot);
+        if (documents.isEmpty()) {
+            return new Batch(0, 0);
+        }
+
+        BulkOperations copy = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, archive);
+        List<Object> ids = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            ids.add(document.get("_id"));
+            copy.replaceOne(Query.query(Criteria.where("_id").is(document.get("_id"))), document,
+                    FindAndReplaceOptions.options().upsert());
+        }
+        copy.execute();
+        // The due criteria are repeated so a document that changed since it was read stays where it is
+        long removed = mongoTemplate.remove(Query.query(new Criteria().andOperator(Criteria.where("_id").in(ids), due)), hot)
+                .getDeletedCount();
+
+        if (removed < ids.size()) {
+            // Whatever stayed hot, e.g. a prescription released back to ACTIVE, must not also be in the archive
+            List<Object> kept = mongoTemplate.findDistinct(Query.query(Criteria.where("_id").in(ids)), "_id", hot, Object.class);
+            if (!kept.isEmpty()) {
+                mongoTemplate.remove(Query.query(Criteria.where("_id").in(kept)), archive);
+                logger.info("Left {} changed record(s) in {}", kept.size(), hot);
+            }
+        }
+
+        meterRegistry.counter("records.archived", "collection", hot).increment(removed);
+        return new Batch(documents.size(), (int) removed);
+    }
+
+    private record Batch(int read, int moved) {
+    }
+
+    public String archiveCollection(Class<?> type) {
+        return mongoTemplate.getCollectionName(type) + ARCHIVE_SUFFIX;
+    }
+
+    public <T> T findArchivedById(String id, Class<T> type) {
+        return mongoTemplate.findById(id, type, archiveCollection(type));
+    }
+
+    public <T> List<T> findArchivedByPatientNIC(String patientNIC, Class<T> type) {
+        return mongoTemplate.find(Query.query(Criteria.where("patientNIC").is(patientNIC)), type, archiveCollection(type));
+    }
+
+    /**
+     * Delete an archived record; false when the archive has no record with that id.
+     */
+    public boolean deleteArchived(String id, Class<?> type) {
+        return mongoTemplate.remove(Query.query(Criteria.where("_id").is(id)), type, archiveCollection(type)).getDeletedCount() > 0;
+    }
+
+    public boolean hasArchivedForPatientNIC(String patientNIC, Class<?> type) {
+        return mongoTemplate.exists(Query.query(Criteria.where("patientNIC").is(patientNIC)), type, archiveCollection(type));
+    }
+
+    public boolean isArchived(String id, Class<?> type) {
+        return mongoTemplate.exists(Query.query(Criteria.where("_id").is(id)), type, archiveCollection(type));
+    }
+}
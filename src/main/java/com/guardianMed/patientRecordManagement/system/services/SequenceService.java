@@ -0,0 +1,87 @@
+package com.guardianMed.patientRecordManagement.system.services;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Named, cluster-wide unique sequences backed by counter documents in the counters collection. Each node
+ * leases a block of blockSize numbers with one atomic $inc and hands them out from memory, so a database
+ * round trip is only needed once per block. Numbers are unique across nodes but not gap-free: whatever is
+ * left of a block when a node stops is never used.
+ */
+@Component
+public class SequenceService {
+    private static final Logger logger = LoggerFactory.getLogger(SequenceService.class);
+
+    static final String COLLECTION = "counters";
+
+    private final MongoTemplate mongoTemplate;
+    private final int blockSize;
+    private final Map<String, Sequence> sequences = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SequenceService(MongoTemplate mongoTemplate, @Value("${sprngsec.app.sequenceBlockSize:100}") int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("sprngsec.app.sequenceBlockSize must be at least 1");
+        }
+        this.mongoTemplate = mongoTemplate;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * The next number of the named sequence, starting at 1. Sequences are created on first use.
+     */
+    public long next(String name) {
+        return sequences.computeIfAbsent(name, Sequence::new).next();
+    }
+
+    private Block lease(String name) {
+        Document counter = mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(name)),
+                new Update().inc("value", (long) blockSize),
+                FindAndModifyOptions.options().upsert(true).returnNew(true), Document.class, COLLECTION);
+        long last = counter.get("value", Number.class).longValue();
+        logger.debug("Leased {} [{}, {}]", name, last - blockSize + 1, last);
+        return new Block(new AtomicLong(last - blockSize + 1), last);
+    }
+
+    private final class Sequence {
+        private final String name;
+        private volatile Block block = new Block(new AtomicLong(1), 0);
+
+        Sequence(String name) {
+            this.name = name;
+        }
+
+        long next() {
+            while (true) {
+                Block current = block;
+                long value = current.next().getAndIncrement();
+                if (value <= current.last()) {
+                    return value;
+                }
+                // Block used up: one thread leases the next one while the others wait here and then retry
+                synchronized (this) {
+                    if (block == current) {
+                        block = lease(name);
+                    }
+                }
+            }
+        }
+    }
+
+    private record Block(AtomicLong next, long last) {
+    }
+}
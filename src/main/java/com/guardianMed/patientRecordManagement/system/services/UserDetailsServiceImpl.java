@@ -1,22 +1,79 @@
 package com.guardianMed.patientRecordManagement.system.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.guardianMed.patientRecordManagement.system.repositories.UserRepository;
 import com.guardianMed.patientRecordManagement.system.models.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
 
 
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
+    private final UserRepository userRepository;
+    private final Cache<String, UserDetailsImpl> userDetailsCache;
+
     @Autowired
-    UserRepository userRepository;
+    public UserDetailsServiceImpl(UserRepository userRepository, MeterRegistry meterRegistry,
+                                  @Value("${sprngsec.app.userCacheEnabled:true}") boolean cacheEnabled,
+                                  @Value("${sprngsec.app.userCacheMaxSize:10000}") long maxSize,
+                                  @Value("${sprngsec.app.userCacheTtlSeconds:300}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        if (cacheEnabled) {
+            this.userDetailsCache = Caffeine.newBuilder()
+                    .maximumSize(maxSize)
+                    .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, userDetailsCache, "userDetails");
+        } else {
+            this.userDetailsCache = null;
+        }
+    }
+
     @Override
-    @Transactional
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        if (userDetailsCache == null) {
+            return loadFromRepository(username);
+        }
+        // Unknown users throw out of the loader, so misses are never cached
+        return userDetailsCache.get(username, this::loadFromRepository);
+    }
+
+    /**
+     * Called after a successful login when the stored hash uses an older, cheaper BCrypt cost.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User Not Found with username: " + userDetails.getUsername()));
+        user.setPassword(newPassword);
+        userRepository.save(user);
+        evict(user.getUsername());
+        return UserDetailsImpl.build(user);
+    }
+
+    /**
+     * Drop the cached entry so the next request reads the current user record. This only revokes access when
+     * requests load their principal from the user store (jwtStatelessPrincipal=false); stateless principals are
+     * built from the token claims and stay valid until the token expires.
+     */
+    public void evict(String username) {
+        if (userDetailsCache != null && username != null) {
+            userDetailsCache.invalidate(username);
+        }
+    }
+
+    private UserDetailsImpl loadFromRepository(String username) {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User Not Found with username: " + username));
 
@@ -4,6 +4,8 @@ import com.guardianMed.patientRecordManagement.system.controllers.AdminControlle
 import com.guardianMed.patientRecordManagement.system.exception.NotFoundException;
 import com.guardianMed.patientRecordManagement.system.models.User;
 import com.guardianMed.patientRecordManagement.system.payload.requests.PasswordResetRequest;
+import com.guardianMed.patientRecordManagement.system.payload.response.AdminResponse;
+import com.guardianMed.patientRecordManagement.system.payload.response.CursorPage;
 import com.guardianMed.patientRecordManagement.system.services.AdminService;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -31,10 +33,10 @@ public class AdminControllerTest {
     @Test
     void testGetAdminById_Success() {
         String id = "1";
-        User admin = new User();
+        AdminResponse admin = new AdminResponse();
         admin.setId(id);
-        when(adminService.getAdminById(id)).thenReturn(admin);
-        ResponseEntity<?> responseEntity = adminController.getAdminById(id);
+        when(adminService.getAdminById(id, null)).thenReturn(admin);
+        ResponseEntity<?> responseEntity = adminController.getAdminById(id, null);
         assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         assertEquals(admin, responseEntity.getBody());
     }
@@ -42,8 +44,8 @@ public class AdminControllerTest {
     @Test
     void testGetAdminById_NotFound() {
         String id = "999";
-        when(adminService.getAdminById(id)).thenThrow(new NotFoundException("Admin not found for ID: " + id));
-        ResponseEntity<?> responseEntity = adminController.getAdminById(id);
+        when(adminService.getAdminById(id, null)).thenThrow(new NotFoundException("Admin not found for ID: " + id));
+        ResponseEntity<?> responseEntity = adminController.getAdminById(id, null);
         assertEquals(HttpStatus.NOT_FOUND, responseEntity.getStatusCode());
     }
 
@@ -112,18 +114,34 @@ public class AdminControllerTest {
 
     @Test
     void testGetAllAdmins_Success() {
-        List<User> admins = Arrays.asList(new User(), new User());
-        when(adminService.getAllAdmins()).thenReturn(admins);
-        ResponseEntity<?> responseEntity = adminController.getAllAdmins();
+        List<AdminResponse> admins = Arrays.asList(new AdminResponse(), new AdminResponse());
+        when(adminService.getAllAdmins((String) null)).thenReturn(admins);
+        ResponseEntity<?> responseEntity = adminController.getAllAdmins(null, null, "asc", true, null);
         assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         assertEquals(admins, responseEntity.getBody());
     }
 
+    @Test
+    void testGetAllAdmins_Paged() {
+        CursorPage<AdminResponse> page = new CursorPage<>(Arrays.asList(new AdminResponse(), new AdminResponse()), null, 50);
+        when(adminService.getAllAdmins(null, null, "desc", "username")).thenReturn(page);
+        ResponseEntity<?> responseEntity = adminController.getAllAdmins(null, null, "desc", false, "username");
+        assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        assertEquals(page, responseEntity.getBody());
+    }
+
     @Test
     void testGetAllAdmins_InternalServerError() {
-        when(adminService.getAllAdmins()).thenThrow(new RuntimeException("Internal Server Error"));
-        ResponseEntity<?> responseEntity = adminController.getAllAdmins();
+        when(adminService.getAllAdmins(null, null, "asc", null)).thenThrow(new RuntimeException("Internal Server Error"));
+        ResponseEntity<?> responseEntity = adminController.getAllAdmins(null, null, "asc", false, null);
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, responseEntity.getStatusCode());
     }
+
+    @Test
+    void testGetAllAdmins_UnknownField() {
+        when(adminService.getAllAdmins(null, null, "asc", "password")).thenThrow(new IllegalArgumentException("Unknown field: password"));
+        ResponseEntity<?> responseEntity = adminController.getAllAdmins(null, null, "asc", false, "password");
+        assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+    }
 }
 
@@ -7,10 +7,12 @@ import com.guardianMed.patientRecordManagement.system.models.User;
 import com.guardianMed.patientRecordManagement.system.payload.requests.LoginRequest;
 import com.guardianMed.patientRecordManagement.system.payload.requests.SignupRequest;
 import com.guardianMed.patientRecordManagement.system.payload.response.MessageResponse;
-import com.guardianMed.patientRecordManagement.system.repositories.RoleRepository;
 import com.guardianMed.patientRecordManagement.system.repositories.UserRepository;
 import com.guardianMed.patientRecordManagement.system.security.OtpService;
+import com.guardianMed.patientRecordManagement.system.security.RoleRegistry;
 import com.guardianMed.patientRecordManagement.system.security.jwt.JwtUtils;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.impl.DefaultClaims;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
@@ -23,11 +25,15 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 
 import static com.mongodb.assertions.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest
@@ -44,7 +50,7 @@ public class AuthControllerTest {
     private OtpService otpService;
 
     @Mock
-    private RoleRepository roleRepository;
+    private RoleRegistry roleRegistry;
 
     @Mock
     private PasswordEncoder encoder;
@@ -135,6 +141,42 @@ void testVerifyOtp_Success() {
         assertNotNull(responseEntity.getBody());
 
     }
+    @Test
+    void testVerifyOtp_WrongPasswordLeavesTheOtpUnused() {
+        User user = new User();
+        user.setUsername("testUser");
+        user.setPassword("hashedPassword");
+        when(userRepository.findByUsername("testUser")).thenReturn(Optional.of(user));
+        when(encoder.matches("mistyped", "hashedPassword")).thenReturn(false);
+        Map<String, String> otpData = new HashMap<>();
+        otpData.put("username", "testUser");
+        otpData.put("otp", "123456");
+        otpData.put("password", "mistyped");
+
+        ResponseEntity<?> responseEntity = authController.verifyOtp(otpData);
+
+        assertEquals(HttpStatus.UNAUTHORIZED, responseEntity.getStatusCode());
+        verify(otpService, never()).validateOtp(anyString(), anyString());
+    }
+
+    @Test
+    void testVerifyOtp_BusyPasswordHashingIsReportedAsUnavailable() {
+        User user = new User();
+        user.setUsername("testUser");
+        user.setPassword("hashedPassword");
+        when(userRepository.findByUsername("testUser")).thenReturn(Optional.of(user));
+        when(encoder.matches("password", "hashedPassword")).thenThrow(new RejectedExecutionException("full"));
+        Map<String, String> otpData = new HashMap<>();
+        otpData.put("username", "testUser");
+        otpData.put("otp", "123456");
+        otpData.put("password", "password");
+
+        ResponseEntity<?> responseEntity = authController.verifyOtp(otpData);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, responseEntity.getStatusCode());
+        verify(otpService, never()).validateOtp(anyString(), anyString());
+    }
+
     @Test
     void testVerifyOtp_UserNotFound() {
         when(userRepository.findByUsername("nonExistingUser")).thenReturn(Optional.empty());
@@ -147,6 +189,37 @@ void testVerifyOtp_Success() {
         assertNotNull(responseEntity.getBody());
     }
 
+    @Test
+    void testVerifyOtp_WithChallengeToken_SkipsPasswordCheck() {
+        User user = new User();
+        user.setUsername("testUser");
+        user.setPassword("hashedPassword");
+        Claims challenge = new DefaultClaims();
+        challenge.setSubject("testUser");
+        when(jwtUtils.parseLoginChallengeToken("challenge")).thenReturn(challenge);
+        when(jwtUtils.getAttemptIdFromChallenge(challenge)).thenReturn("attempt-1");
+        when(otpService.validateOtp("testUser", "123456", "attempt-1")).thenReturn(true);
+        when(userRepository.findByUsername("testUser")).thenReturn(Optional.of(user));
+        when(jwtUtils.generateJwtToken(any())).thenReturn("mockedJWT");
+
+        Map<String, String> otpData = new HashMap<>();
+        otpData.put("challengeToken", "challenge");
+        otpData.put("otp", "123456");
+        ResponseEntity<?> responseEntity = authController.verifyOtp(otpData);
+        assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        verify(encoder, never()).matches(anyString(), anyString());
+    }
+
+    @Test
+    void testVerifyOtp_WithInvalidChallengeToken() {
+        when(jwtUtils.parseLoginChallengeToken("expired")).thenReturn(null);
+        Map<String, String> otpData = new HashMap<>();
+        otpData.put("challengeToken", "expired");
+        otpData.put("otp", "123456");
+        ResponseEntity<?> responseEntity = authController.verifyOtp(otpData);
+        assertEquals(HttpStatus.UNAUTHORIZED, responseEntity.getStatusCode());
+    }
+
 @Test
 void testRegisterUser_Success() {
     SignupRequest signupRequest = new SignupRequest();
@@ -158,7 +231,7 @@ void testRegisterUser_Success() {
     when(userRepository.existsByEmail("newUser@example.com")).thenReturn(false);
     Role userRole = new Role();
     userRole.setName(ERole.ROLE_ADMIN);
-    when(roleRepository.findByName(ERole.ROLE_ADMIN)).thenReturn(Optional.of(userRole));
+    when(roleRegistry.get(ERole.ROLE_ADMIN)).thenReturn(userRole);
     ResponseEntity<?> responseEntity = authController.registerUser(signupRequest);
     assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
     assertNotNull(responseEntity.getBody());
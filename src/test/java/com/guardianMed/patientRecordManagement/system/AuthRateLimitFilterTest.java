@@ -0,0 +1,92 @@
+package com.guardianMed.patientRecordManagement.system;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guardianMed.patientRecordManagement.system.security.AuthRateLimitFilter;
+import com.guardianMed.patientRecordManagement.system.security.jwt.JwtUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockFilterConfig;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuthRateLimitFilterTest {
+
+    private final AuthRateLimitFilter filter = new AuthRateLimitFilter();
+    private final JwtUtils jwtUtils = new JwtUtils();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(filter, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(filter, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(filter, "jwtUtils", jwtUtils);
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "ipPerMinute", 30);
+        ReflectionTestUtils.setField(filter, "ipBurst", 20);
+        ReflectionTestUtils.setField(filter, "userPerMinute", 10);
+        ReflectionTestUtils.setField(filter, "userBurst", 2);
+        ReflectionTestUtils.setField(filter, "maxKeys", 100);
+        ReflectionTestUtils.setField(filter, "maxBodyBytes", 512);
+        filter.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        filter.destroy();
+    }
+
+    @Test
+    void testOversizedBodiesAreRefused() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = send("10.0.0.1", "{\"username\":\"" + "a".repeat(1_000) + "\"}", chain);
+
+        assertEquals(413, response.getStatus());
+        assertNull(chain.getRequest());
+
+        chain = new MockFilterChain();
+        response = send("10.0.0.1", "{\"username\":\"nimal\"}", chain);
+        assertEquals(200, response.getStatus());
+        assertEquals("{\"username\":\"nimal\"}", new String(chain.getRequest().getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testChallengeTokensCountAgainstTheirUser() throws Exception {
+        String body = "{\"challengeToken\":\"" + jwtUtils.generateLoginChallengeToken("Nimal", "attempt-1") + "\"}";
+
+        assertEquals(200, send("10.0.0.1", body, new MockFilterChain()).getStatus());
+        assertEquals(200, send("10.0.0.2", body, new MockFilterChain()).getStatus());
+        // Same user from a third address: the per-user bucket is empty
+        assertEquals(429, send("10.0.0.3", body, new MockFilterChain()).getStatus());
+        assertEquals(429, send("10.0.0.4", "{\"username\":\" nimal \"}", new MockFilterChain()).getStatus());
+        assertEquals(200, send("10.0.0.5", "{\"username\":\"kamal\"}", new MockFilterChain()).getStatus());
+    }
+
+    @Test
+    void testContainerInitKeepsTheLimiters() throws Exception {
+        Object limiter = ReflectionTestUtils.getField(filter, "ipLimiter");
+        Object sweeper = ReflectionTestUtils.getField(filter, "sweeper");
+
+        filter.init(new MockFilterConfig());
+
+        assertSame(limiter, ReflectionTestUtils.getField(filter, "ipLimiter"));
+        assertSame(sweeper, ReflectionTestUtils.getField(filter, "sweeper"));
+    }
+
+    private MockHttpServletResponse send(String remoteAddr, String body, MockFilterChain chain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/auth/verify-otp");
+        request.setServletPath("/api/auth/verify-otp");
+        request.setRemoteAddr(remoteAddr);
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
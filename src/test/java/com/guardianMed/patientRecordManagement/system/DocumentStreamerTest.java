@@ -0,0 +1,93 @@
+package com.guardianMed.patientRecordManagement.system;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guardianMed.patientRecordManagement.system.models.Patient;
+import com.guardianMed.patientRecordManagement.system.services.DocumentStreamer;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DocumentStreamerTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final DocumentStreamer documentStreamer = new DocumentStreamer(mongoTemplate, objectMapper, 100, 2);
+    private final AtomicBoolean cursorClosed = new AtomicBoolean();
+
+    @Test
+    void testJsonArray() throws Exception {
+        givenPatients(patient("NIC1"), patient("NIC2"), patient("NIC3"));
+
+        String body = write(false);
+        JsonNode array = objectMapper.readTree(body);
+        assertTrue(array.isArray());
+        assertEquals(3, array.size());
+        assertEquals("NIC3", array.get(2).get("patientNIC").asText());
+        assertTrue(cursorClosed.get());
+    }
+
+    @Test
+    void testNdjsonWritesOneDocumentPerLine() throws Exception {
+        givenPatients(patient("NIC1"), patient("NIC2"));
+
+        String[] lines = write(true).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("NIC1", objectMapper.readTree(lines[0]).get("patientNIC").asText());
+        assertEquals("NIC2", objectMapper.readTree(lines[1]).get("patientNIC").asText());
+        assertTrue(cursorClosed.get());
+    }
+
+    @Test
+    void testEmptyCollection() throws Exception {
+        givenPatients();
+
+        assertEquals("[]", write(false));
+        assertEquals("", write(true));
+    }
+
+    private String write(boolean ndjson) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        documentStreamer.streamAll(Patient.class, ndjson).writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private void givenPatients(Patient... patients) {
+        when(mongoTemplate.stream(any(Query.class), eq(Patient.class))).thenAnswer(invocation -> {
+            Iterator<Patient> iterator = List.of(patients).iterator();
+            return new CloseableIterator<Patient>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Patient next() {
+                    return iterator.next();
+                }
+
+                @Override
+                public void close() {
+                    cursorClosed.set(true);
+                }
+            };
+        });
+    }
+
+    private static Patient patient(String nic) {
+        return new Patient(null, nic, "Patient " + nic, "Female", 40, "Street", nic + "@example.com", 771234567L);
+    }
+}
@@ -0,0 +1,90 @@
+package com.guardianMed.patientRecordManagement.system;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guardianMed.patientRecordManagement.system.models.ERole;
+import com.guardianMed.patientRecordManagement.system.models.Patient;
+import com.guardianMed.patientRecordManagement.system.models.User;
+import com.guardianMed.patientRecordManagement.system.payload.response.AdminResponse;
+import com.guardianMed.patientRecordManagement.system.payload.response.CursorPage;
+import com.guardianMed.patientRecordManagement.system.payload.response.PatientResponse;
+import com.guardianMed.patientRecordManagement.system.payload.response.PrescriptionResponse;
+import com.guardianMed.patientRecordManagement.system.services.DocumentStreamer;
+import com.guardianMed.patientRecordManagement.system.services.FieldProjector;
+import com.guardianMed.patientRecordManagement.system.services.KeysetPager;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class FieldProjectorTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final FieldProjector fieldProjector = new FieldProjector(mongoTemplate, new KeysetPager(mongoTemplate, 2, 10),
+            new DocumentStreamer(mongoTemplate, new ObjectMapper(), 100, 10));
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.getCollectionName(Patient.class)).thenReturn("patients");
+        when(mongoTemplate.getCollectionName(User.class)).thenReturn("users");
+    }
+
+    @Test
+    void testSelectedFieldsAlwaysIncludeId() {
+        assertEquals(Set.of("id", "patientName", "email"), fieldProjector.parse(PatientResponse.class, " patientName, email ,"));
+    }
+
+    @Test
+    void testUnknownFieldsAreRejected() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> fieldProjector.parse(AdminResponse.class, "username,password"));
+        assertTrue(e.getMessage().startsWith("Unknown field: password"));
+        assertThrows(IllegalArgumentException.class, () -> fieldProjector.parse(PrescriptionResponse.class, "patient"));
+    }
+
+    @Test
+    void testAdminListingsNeverFetchCredentials() {
+        when(mongoTemplate.find(any(Query.class), eq(AdminResponse.class), eq("users"))).thenReturn(List.of(new AdminResponse()));
+
+        fieldProjector.find(AdminResponse.class, User.class, Criteria.where("roles.name").is(ERole.ROLE_ADMIN), null);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(AdminResponse.class), eq("users"));
+        Document projection = query.getValue().getFieldsObject();
+        assertEquals(Set.of("id", "username", "email", "roles"), projection.keySet());
+        assertFalse(projection.containsKey("password"));
+        assertFalse(projection.containsKey("otp"));
+        assertFalse(projection.containsKey("otpExpiryTime"));
+    }
+
+    @Test
+    void testPagesAreProjectedAndReadFromTheEntityCollection() {
+        PatientResponse first = new PatientResponse();
+        first.setId("64b000000000000000000001");
+        PatientResponse second = new PatientResponse();
+        second.setId("64b000000000000000000002");
+        PatientResponse third = new PatientResponse();
+        third.setId("64b000000000000000000003");
+        when(mongoTemplate.find(any(Query.class), eq(PatientResponse.class), eq("patients"))).thenReturn(List.of(first, second, third));
+
+        CursorPage<PatientResponse> page = fieldProjector.page(PatientResponse.class, Patient.class, null,
+                PatientResponse::getId, "patientName", null, null, "asc");
+
+        assertEquals(2, page.getItems().size());
+        assertNotNull(page.getNextCursor());
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(PatientResponse.class), eq("patients"));
+        assertEquals(Set.of("id", "patientName"), query.getValue().getFieldsObject().keySet());
+        assertEquals(3, query.getValue().getLimit());
+    }
+}
@@ -0,0 +1,99 @@
+package com.guardianMed.patientRecordManagement.system;
+
+import com.guardianMed.patientRecordManagement.system.config.UnindexedQueryListener;
+import com.guardianMed.patientRecordManagement.system.repositories.*;
+import com.guardianMed.patientRecordManagement.system.services.IndexCatalog;
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandStartedEvent;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.repository.core.support.AbstractRepositoryMetadata;
+import org.springframework.data.repository.query.parser.Part;
+import org.springframework.data.repository.query.parser.PartTree;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stands in for explain-plan checks: every query the application issues must be answerable from a declared index.
+ */
+class IndexCatalogTest {
+
+    private static final List<Class<?>> REPOSITORIES = List.of(PatientRepository.class, PrescriptionRepository.class,
+            BillRepository.class, UserRepository.class, RoleRepository.class, OtpTokenRepository.class);
+
+    @Test
+    void testEveryDerivedRepositoryQueryIsIndexed() {
+        List<String> unindexed = new ArrayList<>();
+        for (Class<?> repository : REPOSITORIES) {
+            Class<?> domainType = AbstractRepositoryMetadata.getMetadata(repository).getDomainType();
+            String collection = domainType.getAnnotation(Document.class).collection();
+            for (Method method : repository.getDeclaredMethods()) {
+                PartTree tree = new PartTree(method.getName(), domainType);
+                Set<String> fields = new LinkedHashSet<>();
+                for (Part part : tree.getParts()) {
+                    fields.add(part.getProperty().toDotPath());
+                }
+                if (!IndexCatalog.covers(collection, fields, null)) {
+                    unindexed.add(repository.getSimpleName() + "." + method.getName() + " on " + collection + " " + fields);
+                }
+            }
+        }
+        assertTrue(unindexed.isEmpty(), "Queries without an index: " + unindexed);
+    }
+
+    @Test
+    void testTemplateQueriesAreIndexed() {
+        // Propagation, projected reads and the patient overview
+        assertTrue(IndexCatalog.covers("prescriptions", List.of("patientNIC"), "date"));
+        assertTrue(IndexCatalog.covers("bills", List.of("patientNIC"), null));
+        assertTrue(IndexCatalog.covers("patients", List.of("patientNIC"), null));
+        // Admin listings
+        assertTrue(IndexCatalog.covers("users", List.of("roles.name"), "_id"));
+    }
+
+    @Test
+    void testBillNumbersAreUniqueInBothBillCollections() {
+        for (String collection : List.of("bills", "bills_archive")) {
+            assertTrue(IndexCatalog.INDEXES.stream().anyMatch(declared -> declared.collection().equals(collection)
+                            && declared.keys().equals(List.of("customerBillId"))
+                            && Boolean.TRUE.equals(declared.index().getIndexOptions().get("unique"))),
+                    "no unique customerBillId index on " + collection);
+        }
+    }
+
+    @Test
+    void testCoverageNeedsALeadingPrefix() {
+        assertFalse(IndexCatalog.covers("prescriptions", List.of("date"), null));
+        assertFalse(IndexCatalog.covers("bills", List.of("patientNIC"), "totalAmount"));
+        assertTrue(IndexCatalog.covers("bills", List.of("anything", "_id"), null));
+        assertTrue(IndexCatalog.covers("bills", List.of(), "_id"));
+    }
+
+    @Test
+    void testListenerWarnsOncePerUnindexedShape() {
+        UnindexedQueryListener listener = new UnindexedQueryListener();
+
+        listener.commandStarted(command("find", BsonDocument.parse("{find: 'bills', filter: {totalAmount: {$gt: 100}}}")));
+        listener.commandStarted(command("find", BsonDocument.parse("{find: 'bills', filter: {totalAmount: {$gt: 5}}}")));
+        listener.commandStarted(command("find", BsonDocument.parse("{find: 'bills', filter: {patientNIC: 'N1'}, sort: {date: -1}}")));
+        listener.commandStarted(command("aggregate", BsonDocument.parse("{aggregate: 'users', pipeline: [{$match: {$and: [{'roles.name': 'ROLE_ADMIN'}]}}]}")));
+        listener.commandStarted(command("find", BsonDocument.parse("{find: 'patients', filter: {$or: [{age: 1}, {gender: 'M'}]}}")));
+
+        assertEquals(Set.of("bills [totalAmount]"), listener.getReportedShapes());
+    }
+
+    private static CommandStartedEvent command(String name, BsonDocument command) {
+        ConnectionDescription connection = new ConnectionDescription(new ServerId(new ClusterId(), new ServerAddress()));
+        return new CommandStartedEvent(1, connection, "prescription-db", name, command);
+    }
+}
@@ -0,0 +1,57 @@
+package com.guardianMed.patientRecordManagement.system;
+
+import com.guardianMed.patientRecordManagement.system.security.jwt.JwtUtils;
+import com.guardianMed.patientRecordManagement.system.services.UserDetailsImpl;
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilsTest {
+
+    private final JwtUtils jwtUtils = new JwtUtils();
+
+    @Test
+    void testGeneratedTokenCarriesPrincipalClaims() {
+        UserDetailsImpl principal = new UserDetailsImpl("42", "admin", "admin@example.com", "hash",
+                List.of(new SimpleGrantedAuthority("ROLE_ADMIN"), new SimpleGrantedAuthority("ROLE_SUPER_ADMIN")));
+        String jwt = jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(principal, null));
+
+        Claims claims = jwtUtils.parseJwtToken(jwt);
+        assertNotNull(claims);
+        UserDetailsImpl userDetails = jwtUtils.buildUserDetailsFromClaims(claims);
+        assertNotNull(userDetails);
+        assertEquals("42", userDetails.getId());
+        assertEquals("admin", userDetails.getUsername());
+        assertNull(userDetails.getPassword());
+        assertEquals(List.of("ROLE_ADMIN", "ROLE_SUPER_ADMIN"), userDetails.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    void testTamperedTokenIsRejected() {
+        UserDetailsImpl principal = new UserDetailsImpl("42", "admin", null, null, List.of());
+        String jwt = jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(principal, null));
+
+        assertNull(jwtUtils.parseJwtToken(jwt.substring(0, jwt.length() - 2)));
+        assertFalse(jwtUtils.validateJwtToken("not-a-token"));
+    }
+
+    @Test
+    void testLoginChallengeIsNotAnAccessToken() {
+        String challenge = jwtUtils.generateLoginChallengeToken("admin", "attempt-1");
+
+        Claims claims = jwtUtils.parseLoginChallengeToken(challenge);
+        assertNotNull(claims);
+        assertEquals("admin", claims.getSubject());
+        assertEquals("attempt-1", jwtUtils.getAttemptIdFromChallenge(claims));
+        assertNull(jwtUtils.parseJwtToken(challenge));
+    }
+}
@@ -0,0 +1,73 @@
+package com.guardianMed.patientRecordManagement.system;
+
+import com.guardianMed.patientRecordManagement.system.models.Patient;
+import com.guardianMed.patientRecordManagement.system.payload.response.CursorPage;
+import com.guardianMed.patientRecordManagement.system.services.KeysetPager;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class KeysetPagerTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final KeysetPager keysetPager = new KeysetPager(mongoTemplate, 2, 10);
+
+    @Test
+    void testNextPageStartsAfterLastId() {
+        List<Patient> rows = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Patient patient = new Patient();
+            patient.setId(new ObjectId().toHexString());
+            rows.add(patient);
+        }
+        when(mongoTemplate.find(any(Query.class), eq(Patient.class))).thenReturn(rows);
+
+        CursorPage<Patient> first = keysetPager.page(Patient.class, null, Patient::getId, null, null, "desc");
+        assertEquals(2, first.getItems().size());
+        assertNotNull(first.getNextCursor());
+
+        keysetPager.page(Patient.class, null, Patient::getId, first.getNextCursor(), null, null);
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).find(queries.capture(), eq(Patient.class));
+
+        Query firstQuery = queries.getAllValues().get(0);
+        assertEquals(3, firstQuery.getLimit());
+        assertEquals(new Document("_id", -1), firstQuery.getSortObject());
+
+        Query secondQuery = queries.getAllValues().get(1);
+        Document idRange = (Document) secondQuery.getQueryObject().get("_id");
+        assertEquals(new ObjectId(rows.get(1).getId()), idRange.get("$lt"));
+        assertEquals(new Document("_id", -1), secondQuery.getSortObject());
+    }
+
+    @Test
+    void testLastPageHasNoCursor() {
+        when(mongoTemplate.find(any(Query.class), eq(Patient.class))).thenReturn(List.of(new Patient()));
+
+        CursorPage<Patient> page = keysetPager.page(Patient.class, null, Patient::getId, null, null, "asc");
+        assertEquals(1, page.getItems().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void testInvalidRequestsAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> keysetPager.page(Patient.class, null, Patient::getId, null, 11, "asc"));
+        assertThrows(IllegalArgumentException.class,
+                () -> keysetPager.page(Patient.class, null, Patient::getId, null, null, "sideways"));
+        assertThrows(IllegalArgumentException.class,
+                () -> keysetPager.page(Patient.class, null, Patient::getId, "not-a-cursor", null, null));
+        verifyNoInteractions(mongoTemplate);
+    }
+}
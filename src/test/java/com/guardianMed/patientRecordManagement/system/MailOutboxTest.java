@@ -0,0 +1,125 @@
+package com.guardianMed.patientRecordManagement.system;
+
+import com.guardianMed.patientRecordManagement.system.services.MailOutbox;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import javax.mail.BodyPart;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MailOutboxTest {
+
+    private final List<SimpleMailMessage[]> sentBatches = new CopyOnWriteArrayList<>();
+    private final List<MimeMessage[]> sentMimeBatches = new CopyOnWriteArrayList<>();
+    private Consumer<SimpleMailMessage[]> onSend = batch -> {
+    };
+    private final JavaMailSenderImpl javaMailSender = new JavaMailSenderImpl() {
+        @Override
+        public void send(SimpleMailMessage... simpleMessages) {
+            sentBatches.add(simpleMessages);
+            onSend.accept(simpleMessages);
+        }
+
+        @Override
+        public void send(MimeMessage... mimeMessages) {
+            sentMimeBatches.add(mimeMessages);
+        }
+    };
+    private MailOutbox mailOutbox;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        mailOutbox.stop();
+    }
+
+    @Test
+    void testQueuedMessagesAreSentInOneBatch() throws InterruptedException {
+        mailOutbox = new MailOutbox(javaMailSender, new SimpleMeterRegistry(), 10, 1, 10, 3, 10);
+        assertTrue(mailOutbox.submit(message("a@example.com")));
+        assertTrue(mailOutbox.submit(message("b@example.com")));
+        assertTrue(mailOutbox.submit(message("c@example.com")));
+        mailOutbox.start();
+
+        awaitBatches(1);
+        assertEquals(3, sentBatches.get(0).length);
+    }
+
+    @Test
+    void testFailedMessageIsRetried() throws InterruptedException {
+        mailOutbox = new MailOutbox(javaMailSender, new SimpleMeterRegistry(), 10, 1, 10, 3, 10);
+        SimpleMailMessage failing = message("a@example.com");
+        SimpleMailMessage delivered = message("b@example.com");
+        onSend = batch -> {
+            if (sentBatches.size() == 1) {
+                throw new MailSendException(Map.of(failing, new RuntimeException("mailbox unavailable")));
+            }
+        };
+        mailOutbox.submit(failing);
+        mailOutbox.submit(delivered);
+        mailOutbox.start();
+
+        awaitBatches(2);
+        assertEquals(List.of(failing), List.of(sentBatches.get(1)));
+    }
+
+    @Test
+    void testFullOutboxDropsMessage() {
+        mailOutbox = new MailOutbox(javaMailSender, new SimpleMeterRegistry(), 1, 1, 10, 3, 10);
+        assertTrue(mailOutbox.submit(message("a@example.com")));
+        assertFalse(mailOutbox.submit(message("b@example.com")));
+        assertEquals(1, mailOutbox.getQueueDepth());
+        mailOutbox.start();
+    }
+
+    @Test
+    void testMessagesWithHtmlAreSentAsMultipart() throws Exception {
+        mailOutbox = new MailOutbox(javaMailSender, new SimpleMeterRegistry(), 10, 1, 10, 3, 10);
+        assertTrue(mailOutbox.submit(message("a@example.com"), "<p>body</p>"));
+        assertTrue(mailOutbox.submit(message("b@example.com")));
+        mailOutbox.start();
+
+        awaitBatches(1);
+        long deadline = System.currentTimeMillis() + 2000;
+        while (sentMimeBatches.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, sentBatches.get(0).length);
+        assertEquals(1, sentMimeBatches.size());
+        MimeMessage sent = sentMimeBatches.get(0)[0];
+        assertEquals("subject", sent.getSubject());
+        assertEquals("a@example.com", sent.getAllRecipients()[0].toString());
+        // mixed/related wrapping a multipart/alternative with the text and the HTML body
+        BodyPart related = ((MimeMultipart) sent.getContent()).getBodyPart(0);
+        MimeMultipart alternative = (MimeMultipart) ((MimeMultipart) related.getContent()).getBodyPart(0).getContent();
+        assertEquals("body", alternative.getBodyPart(0).getContent());
+        assertEquals("<p>body</p>", alternative.getBodyPart(1).getContent());
+    }
+
+    private void awaitBatches(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (sentBatches.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, sentBatches.size());
+    }
+
+    private static SimpleMailMessage message(String to) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setTo(to);
+        message.setSubject("subject");
+        message.setText("body");
+        return message;
+    }
+}
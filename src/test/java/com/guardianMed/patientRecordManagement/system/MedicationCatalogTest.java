@@ -0,0 +1,137 @@
+package com.guardianMed.patientRecordManagement.system;
+
+import com.guardianMed.patientRecordManagement.system.exception.ServiceUnavailableException;
+import com.guardianMed.patientRecordManagement.system.models.CatalogMedication;
+import com.guardianMed.patientRecordManagement.system.models.Medication;
+import com.guardianMed.patientRecordManagement.system.payload.response.MedicationImportReport;
+import com.guardianMed.patientRecordManagement.system.services.MedicationCatalog;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MedicationCatalogTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations upserts = mock(BulkOperations.class);
+    private final MedicationCatalog catalog = new MedicationCatalog(mongoTemplate, 2, 0);
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.findAll(CatalogMedication.class)).thenReturn(List.of(
+                new CatalogMedication("PARA500", "Paracetamol 500mg", 500),
+                new CatalogMedication("AMOX250", "Amoxicillin 250mg", 1250)));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CatalogMedication.class)).thenReturn(upserts);
+        catalog.reload();
+    }
+
+    @Test
+    void testLookupsByIdAndName() {
+        assertEquals(2, catalog.size());
+        assertEquals("Paracetamol 500mg", catalog.get("PARA500").getName());
+        assertEquals("AMOX250", catalog.resolve(" amoxicillin 250MG ").getId());
+        assertNull(catalog.resolve("Ibuprofen"));
+        assertEquals(List.of("AMOX250", "PARA500"), catalog.getAll().stream().map(CatalogMedication::getId).toList());
+        assertThrows(UnsupportedOperationException.class, () -> catalog.getAll().clear());
+    }
+
+    @Test
+    void testBillLinesArePricedFromTheCatalog() {
+        Medication byId = new Medication("PARA500", null, 0.01, 1L, 10);
+        Medication byName = new Medication(null, "Amoxicillin 250mg", null, null, 2);
+
+        List<Medication> priced = catalog.price(List.of(byId, byName));
+
+        assertEquals(new Medication("PARA500", null, 5.0, 500L, 10), priced.get(0));
+        assertEquals(new Medication("AMOX250", null, 12.5, 1250L, 2), priced.get(1));
+        assertThrows(IllegalArgumentException.class, () -> catalog.price(List.of(new Medication("NOPE", null, 1.0, null, 1))));
+        assertThrows(IllegalArgumentException.class, () -> catalog.price(List.of(new Medication(null, null, 1.0, null, 1))));
+        assertThrows(IllegalArgumentException.class, () -> catalog.price(List.of(new Medication("PARA500", null, null, null, null))));
+    }
+
+    @Test
+    void testPrescriptionMedicationsBecomeIds() {
+        assertEquals(List.of("PARA500", "AMOX250"), catalog.toIds(List.of("paracetamol 500mg", "AMOX250")));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> catalog.toIds(List.of("Ibuprofen")));
+        assertEquals("Unknown medication: Ibuprofen", e.getMessage());
+        assertEquals("Paracetamol 500mg", catalog.nameOf("PARA500"));
+        assertEquals("Some old free text", catalog.nameOf("Some old free text"));
+    }
+
+    @Test
+    void testCsvImportUpsertsInBatchesAndSwapsTheSnapshot() throws Exception {
+        // Extra columns are ignored, and a row may leave out trailing ones that are not needed
+        String csv = "name,id,unitPrice,notes\n"
+                + "\"Ibuprofen 400mg\",IBU400,7.25,new\n"
+                + "Paracetamol 500mg,PARA500,5.5,price change\n"
+                + ",MISSING,1.0,\n"
+                + "Cetirizine 10mg,CET10,abc,\n"
+                + "Cetirizine 10mg,CET10,-1,\n"
+                + "Cetirizine 10mg,CET10,1.005,\n"
+                + "Aspirin 75mg,ASP75,2\n";
+        when(mongoTemplate.findAll(CatalogMedication.class)).thenReturn(List.of(
+                new CatalogMedication("IBU400", "Ibuprofen 400mg", 725),
+                new CatalogMedication("PARA500", "Paracetamol 500mg", 550),
+                new CatalogMedication("AMOX250", "Amoxicillin 250mg", 1250)));
+
+        MedicationImportReport report = catalog.importCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(3, report.getImported());
+        assertEquals(4, report.getFailed());
+        assertEquals(List.of(4, 5, 6, 7), report.getErrors().stream().map(MedicationImportReport.RowError::getRow).toList());
+        assertEquals(3, report.getCatalogSize());
+        assertEquals(550, catalog.get("PARA500").getUnitPriceCents());
+        assertEquals("IBU400", catalog.resolve("ibuprofen 400mg").getId());
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(upserts, times(3)).upsert(query.capture(), update.capture());
+        verify(upserts, times(2)).execute();
+        assertEquals("IBU400", query.getAllValues().get(0).getQueryObject().get("_id"));
+        assertEquals(725L, update.getAllValues().get(0).getUpdateObject().get("$set", Document.class).get("unitPriceCents"));
+    }
+
+    @Test
+    void testLookupsAreUnavailableUntilTheFirstLoadSucceeds() {
+        MongoTemplate unreachable = mock(MongoTemplate.class);
+        when(unreachable.findAll(CatalogMedication.class)).thenThrow(new DataAccessResourceFailureException("down"));
+        MedicationCatalog unloaded = new MedicationCatalog(unreachable, 2, 0);
+
+        unloaded.loadInitially();
+
+        assertFalse(unloaded.isLoaded());
+        assertThrows(ServiceUnavailableException.class, () -> unloaded.toIds(List.of("PARA500")));
+        assertThrows(ServiceUnavailableException.class, () -> unloaded.price(List.of(new Medication("PARA500", null, null, null, 1))));
+        assertEquals("PARA500", unloaded.nameOf("PARA500"));
+        assertEquals(0, unloaded.size());
+
+        // An empty catalog that did load still reports unknown medications as such
+        reset(unreachable);
+        when(unreachable.findAll(CatalogMedication.class)).thenReturn(List.of());
+        unloaded.loadInitially();
+        assertTrue(unloaded.isLoaded());
+        assertThrows(IllegalArgumentException.class, () -> unloaded.toIds(List.of("PARA500")));
+    }
+
+    @Test
+    void testImportWithoutTheRequiredColumns() throws Exception {
+        MedicationImportReport report = catalog.importCsv(new ByteArrayInputStream("code,price\nX,1\n".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(0, report.getImported());
+        assertEquals(1, report.getFailed());
+        verify(upserts, never()).execute();
+        verify(mongoTemplate, times(1)).findAll(CatalogMedication.class);
+    }
+}
@@ -0,0 +1,102 @@
+package com.guardianMed.patientRecordManagement.system;
+
+import com.guardianMed.patientRecordManagement.system.services.NotificationTemplate;
+import com.guardianMed.patientRecordManagement.system.services.NotificationTemplates;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NotificationTemplateTest {
+
+    @Test
+    void testVariablesAndSections() {
+        NotificationTemplate template = NotificationTemplate.compile("bill.txt",
+                "{{! one line per item }}\n"
+                        + "Bill {{id}} for {{ name }}:\n"
+                        + "{{#lines}}\n"
+                        + "  {{name}} x {{quantity}} ({{id}})\n"
+                        + "{{/lines}}\n"
+                        + "{{#discount}}Discount: {{discount}}\n{{/discount}}"
+                        + "{{#paid}}Paid{{/paid}}{{missing}}.", false);
+        Map<String, Object> model = new HashMap<>();
+        model.put("id", "B1");
+        model.put("name", "Nimal");
+        model.put("lines", List.of(Map.of("name", "Paracetamol", "quantity", 2), Map.of("name", "Amoxicillin", "quantity", 10L)));
+        model.put("discount", "");
+        model.put("paid", true);
+
+        assertEquals("Bill B1 for Nimal:\n"
+                + "  Paracetamol x 2 (B1)\n"
+                + "  Amoxicillin x 10 (B1)\n"
+                + "Paid.", template.render(model));
+
+        model.put("discount", "5.00");
+        model.put("lines", List.of());
+        model.put("paid", false);
+        assertEquals("Bill B1 for Nimal:\nDiscount: 5.00\n.", template.render(model));
+    }
+
+    @Test
+    void testHtmlTemplatesEscapeValues() {
+        NotificationTemplate template = NotificationTemplate.compile("note.html", "<p>{{note}}</p>", true);
+
+        assertEquals("<p>&lt;b&gt;Tom &amp; &quot;Jerry&quot;&#39;s&lt;/b&gt;</p>", template.render(Map.of("note", "<b>Tom & \"Jerry\"'s</b>")));
+        assertEquals("a & b", NotificationTemplate.compile("note.txt", "{{note}}", false).render(Map.of("note", "a & b")));
+    }
+
+    @Test
+    void testMalformedTemplatesAreRejected() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> NotificationTemplate.compile("a.txt", "x\n{{#lines}}\n{{name}}\n", false));
+        assertEquals("Template a.txt, line 2: {{#lines}} is never closed", e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> NotificationTemplate.compile("a.txt", "{{#a}}{{/b}}", false));
+        assertThrows(IllegalArgumentException.class, () -> NotificationTemplate.compile("a.txt", "{{/a}}", false));
+        assertThrows(IllegalArgumentException.class, () -> NotificationTemplate.compile("a.txt", "{{name", false));
+        assertThrows(IllegalArgumentException.class, () -> NotificationTemplate.compile("a.txt", "{{first name}}", false));
+    }
+
+    @Test
+    void testBundledTemplatesRenderBothBodies() {
+        NotificationTemplates templates = new NotificationTemplates("classpath*:notifications/");
+
+        NotificationTemplates.Rendered otp = templates.render("otp", Map.of("otp", "123456", "validMinutes", 2L));
+
+        assertTrue(otp.text().startsWith("Your OTP for login is: 123456.\n"));
+        assertTrue(otp.text().contains("valid for 2 minutes."));
+        assertTrue(otp.html().contains("<strong>123456</strong>"));
+        assertTrue(templates.contains("bill-confirmation"));
+        assertThrows(IllegalArgumentException.class, () -> templates.render("nope", Map.of()));
+    }
+
+    @Test
+    void testRenderingOnlyAllocatesTheResult() {
+        NotificationTemplate template = NotificationTemplate.compile("bill.txt",
+                "Bill {{id}}\n{{#lines}}\n  {{name}} x {{quantity}} @ Rs {{price}}\n{{/lines}}\nTotal: {{total}}\n", false);
+        List<Map<String, Object>> lines = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            lines.add(Map.of("name", "Medication " + i, "quantity", (long) i, "price", "12.50"));
+        }
+        Map<String, Object> model = Map.of("id", "BILL-20240601-000001", "lines", lines, "total", "250.00");
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int length = 0;
+        for (int i = 0; i < 20_000; i++) {
+            length = template.render(model).length();
+        }
+
+        int renders = 20_000;
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < renders; i++) {
+            length = Math.max(length, template.render(model).length());
+        }
+        long perRender = (threads.getCurrentThreadAllocatedBytes() - before) / renders;
+
+        // The String and its byte[] cost the length plus a few dozen bytes of headers; builders would double that
+        assertTrue(perRender < length + 128, "allocated " + perRender + " bytes per render of " + length + " chars");
+    }
+}
@@ -0,0 +1,67 @@
+package com.guardianMed.patientRecordManagement.system;
+
+import com.guardianMed.patientRecordManagement.system.security.InMemoryOtpStore;
+import com.guardianMed.patientRecordManagement.system.security.OtpService;
+import com.guardianMed.patientRecordManagement.system.security.OtpStore;
+import com.guardianMed.patientRecordManagement.system.services.EmailService;
+import com.guardianMed.patientRecordManagement.system.services.NotificationTemplates;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class OtpServiceTest {
+
+    private InMemoryOtpStore otpStore;
+    private OtpService otpService;
+
+    @BeforeEach
+    void setUp() {
+        otpStore = new InMemoryOtpStore();
+        otpService = new OtpService();
+        ReflectionTestUtils.setField(otpService, "otpStore", otpStore);
+    }
+
+    @Test
+    void testOtpCanBeRedeemedOnce() {
+        otpService.storeOtp("admin", "123456");
+        assertTrue(otpStore.find("admin").isPresent());
+        assertNotEquals("123456", otpStore.find("admin").get().otpHash());
+
+        assertFalse(otpService.validateOtp("admin", "654321"));
+        assertTrue(otpService.validateOtp("admin", "123456"));
+        assertFalse(otpService.validateOtp("admin", "123456"));
+    }
+
+    @Test
+    void testExpiredOtpIsRejectedAndPurged() {
+        otpStore.save("admin", new OtpStore.OtpEntry("hash", "attempt", Instant.now().minusSeconds(1)));
+        assertFalse(otpService.validateOtp("admin", "123456"));
+
+        otpStore.purgeExpired();
+        assertTrue(otpStore.find("admin").isEmpty());
+    }
+
+    @Test
+    void testOtpEmailIsRenderedFromTheTemplate() {
+        EmailService emailService = mock(EmailService.class);
+        ReflectionTestUtils.setField(otpService, "emailService", emailService);
+        ReflectionTestUtils.setField(otpService, "notificationTemplates", new NotificationTemplates("classpath*:notifications/"));
+        ReflectionTestUtils.setField(otpService, "otpValiditySeconds", 300L);
+
+        otpService.sendOtp("123456", "admin@example.com");
+
+        ArgumentCaptor<NotificationTemplates.Rendered> email = ArgumentCaptor.forClass(NotificationTemplates.Rendered.class);
+        verify(emailService).sendEmail(eq("admin@example.com"), eq("Your One-Time Password (OTP) for Login"), email.capture());
+        assertTrue(email.getValue().text().contains("Your OTP for login is: 123456."));
+        assertTrue(email.getValue().text().contains("valid for 5 minutes"));
+        assertTrue(email.getValue().html().contains("123456"));
+    }
+}
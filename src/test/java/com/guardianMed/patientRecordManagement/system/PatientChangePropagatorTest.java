@@ -0,0 +1,111 @@
+package com.guardianMed.patientRecordManagement.system;
+
+import com.guardianMed.patientRecordManagement.system.models.Bill;
+import com.guardianMed.patientRecordManagement.system.models.Patient;
+import com.guardianMed.patientRecordManagement.system.models.Prescription;
+import com.guardianMed.patientRecordManagement.system.services.PatientChangePropagator;
+import com.guardianMed.patientRecordManagement.system.services.PatientUpdatedEvent;
+import com.guardianMed.patientRecordManagement.system.services.RecordArchiver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PatientChangePropagatorTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations prescriptionOps = mock(BulkOperations.class);
+    private final BulkOperations billOps = mock(BulkOperations.class);
+    private final BulkOperations archivedPrescriptionOps = mock(BulkOperations.class);
+    private final BulkOperations archivedBillOps = mock(BulkOperations.class);
+    private final RecordArchiver recordArchiver = mock(RecordArchiver.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PatientChangePropagator propagator = new PatientChangePropagator(mongoTemplate, recordArchiver, meterRegistry, 2, 60_000);
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Prescription.class)).thenReturn(prescriptionOps);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Bill.class)).thenReturn(billOps);
+        when(recordArchiver.archiveCollection(Prescription.class)).thenReturn("prescriptions_archive");
+        when(recordArchiver.archiveCollection(Bill.class)).thenReturn("bills_archive");
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Prescription.class, "prescriptions_archive")).thenReturn(archivedPrescriptionOps);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Bill.class, "bills_archive")).thenReturn(archivedBillOps);
+    }
+
+    @Test
+    void testRepeatedEditsOfOnePatientAreCoalesced() {
+        propagator.onPatientUpdated(new PatientUpdatedEvent(patient("NIC1", "First Name")));
+        propagator.onPatientUpdated(new PatientUpdatedEvent(patient("NIC1", "Second Name")));
+
+        assertEquals(1, propagator.getBacklog());
+        assertEquals(1.0, meterRegistry.get("patient.propagation.backlog").gauge().value());
+        assertEquals(1, propagator.flush());
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(prescriptionOps, times(1)).updateMulti(query.capture(), update.capture());
+        assertEquals("NIC1", query.getValue().getQueryObject().get("patientNIC"));
+        assertEquals("Second Name", ((Document) update.getValue().getUpdateObject().get("$set")).get("patientName"));
+        verify(billOps, times(1)).updateMulti(any(Query.class), any(Update.class));
+        verify(prescriptionOps).execute();
+        verify(billOps).execute();
+
+        // Archived copies get the same edit, so archive fallbacks never show the old patient
+        verify(archivedPrescriptionOps).updateMulti(query.getValue(), update.getValue());
+        verify(archivedBillOps).updateMulti(any(Query.class), any(Update.class));
+        verify(archivedPrescriptionOps).execute();
+        verify(archivedBillOps).execute();
+
+        assertEquals(0, propagator.getBacklog());
+        assertEquals(1, meterRegistry.get("patient.propagation.lag").timer().count());
+    }
+
+    @Test
+    void testFlushTakesOneBatchAtATime() {
+        for (String nic : List.of("NIC1", "NIC2", "NIC3")) {
+            propagator.onPatientUpdated(new PatientUpdatedEvent(patient(nic, "Name " + nic)));
+        }
+
+        assertEquals(2, propagator.flush());
+        assertEquals(1, propagator.getBacklog());
+        assertEquals(1, propagator.flush());
+        assertEquals(0, propagator.flush());
+        verify(prescriptionOps, times(2)).execute();
+    }
+
+    @Test
+    void testFailedBatchIsRequeuedWithoutOverwritingNewerEdits() {
+        when(prescriptionOps.execute()).thenThrow(new DataAccessResourceFailureException("down"));
+        propagator.onPatientUpdated(new PatientUpdatedEvent(patient("NIC1", "Old Name")));
+
+        assertEquals(0, propagator.flush());
+        assertEquals(1, propagator.getBacklog());
+        assertEquals(1.0, meterRegistry.get("patient.propagation.patients").tag("result", "failed").counter().count());
+
+        reset(prescriptionOps);
+        propagator.onPatientUpdated(new PatientUpdatedEvent(patient("NIC1", "New Name")));
+        assertEquals(1, propagator.flush());
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(prescriptionOps).updateMulti(any(Query.class), update.capture());
+        assertEquals("New Name", ((Document) update.getValue().getUpdateObject().get("$set")).get("patientName"));
+        verify(mongoTemplate, times(2)).bulkOps(eq(BulkOperations.BulkMode.UNORDERED), eq(Bill.class));
+    }
+
+    private static Patient patient(String nic, String name) {
+        return new Patient(null, nic, name, "Male", 50, "Street", "patient@example.com", 771234567L);
+    }
+}
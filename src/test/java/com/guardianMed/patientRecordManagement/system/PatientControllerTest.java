@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.guardianMed.patientRecordManagement.system.controllers.PatientController;
 import com.guardianMed.patientRecordManagement.system.models.Patient;
 import com.guardianMed.patientRecordManagement.system.payload.requests.PatientRequest;
+import com.guardianMed.patientRecordManagement.system.payload.response.CursorPage;
 import com.guardianMed.patientRecordManagement.system.services.PatientService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -19,7 +20,7 @@ import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.*;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 class PatientControllerTest {
 
@@ -59,17 +60,37 @@ class PatientControllerTest {
     }
 
     @Test
-    void testGetPatients() {
+    void testGetPatients_Unpaged() {
 
         List<Patient> patients = new ArrayList<>();
         patients.add(new Patient("1", "NIC123", "John Doe", "Male", 30, "123 Street, City", "john@example.com", 1234567890L));
         patients.add(new Patient("2", "NIC456", "Jane Doe", "Female", 25, "456 Street, City", "jane@example.com", 9876543210L));
         when(patientService.getPatients()).thenReturn(patients);
-        ResponseEntity<List<Patient>> responseEntity = patientController.getPatients();
+        ResponseEntity<?> responseEntity = patientController.getPatients(null, null, "asc", true, null);
         assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         assertEquals(patients, responseEntity.getBody());
     }
 
+    @Test
+    void testGetPatients_Paged() {
+        List<Patient> patients = new ArrayList<>();
+        patients.add(new Patient("1", "NIC123", "John Doe", "Male", 30, "123 Street, City", "john@example.com", 1234567890L));
+        CursorPage<Patient> page = new CursorPage<>(patients, "next", 1);
+        when(patientService.getPatients(null, 1, "asc")).thenReturn(page);
+        ResponseEntity<?> responseEntity = patientController.getPatients(null, 1, "asc", false, null);
+        assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        assertEquals(page, responseEntity.getBody());
+        verify(patientService, never()).getPatients();
+    }
+
+    @Test
+    void testGetPatients_InvalidCursor() {
+        when(patientService.getPatients("bogus", null, "asc")).thenThrow(new IllegalArgumentException("Invalid cursor"));
+        ResponseEntity<?> responseEntity = patientController.getPatients("bogus", null, "asc", false, null);
+        assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        assertEquals("Invalid cursor", responseEntity.getBody());
+    }
+
     @Test
     void testAddPatient_Success() {
         PatientRequest request = new PatientRequest("NIC789", "Alice Smith", "Female", 35, "789 Avenue, Town", "alice@example.com", 9876543210L);
@@ -95,7 +116,7 @@ class PatientControllerTest {
         String patientId = "1";
         Patient patient = new Patient(patientId, "NIC123", "John Doe", "Male", 30, "123 Street, City", "john@example.com", 1234567890L);
         when(patientService.getPatientById(patientId)).thenReturn(patient);
-        ResponseEntity<?> responseEntity = patientController.findPatientById(patientId);
+        ResponseEntity<?> responseEntity = patientController.findPatientById(patientId, null);
         assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         assertEquals(patient, responseEntity.getBody());
     }
@@ -105,7 +126,7 @@ class PatientControllerTest {
 
         String patientId = "1";
         when(patientService.getPatientById(patientId)).thenReturn(null);
-        ResponseEntity<?> responseEntity = patientController.findPatientById(patientId);
+        ResponseEntity<?> responseEntity = patientController.findPatientById(patientId, null);
         assertEquals(HttpStatus.NOT_FOUND, responseEntity.getStatusCode());
         assertEquals("Patient not found", responseEntity.getBody());
     }
@@ -116,7 +137,7 @@ class PatientControllerTest {
         String patientNIC = "NIC123";
         Patient patient = new Patient("1", patientNIC, "John Doe", "Male", 30, "123 Street, City", "john@example.com", 1234567890L);
         when(patientService.getPatientByPatientNIC(patientNIC)).thenReturn(patient);
-        ResponseEntity<?> responseEntity = patientController.findPatientByPatientNIC(patientNIC);
+        ResponseEntity<?> responseEntity = patientController.findPatientByPatientNIC(patientNIC, null);
         assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         assertEquals(patient, responseEntity.getBody());
     }
@@ -125,7 +146,7 @@ class PatientControllerTest {
     void testFindPatientByPatientNIC_NonExistingNIC() {
         String patientNIC = "NIC123";
         when(patientService.getPatientByPatientNIC(patientNIC)).thenReturn(null);
-        ResponseEntity<?> responseEntity = patientController.findPatientByPatientNIC(patientNIC);
+        ResponseEntity<?> responseEntity = patientController.findPatientByPatientNIC(patientNIC, null);
         assertEquals(HttpStatus.NOT_FOUND, responseEntity.getStatusCode());
         assertEquals("Patient not found", responseEntity.getBody());
     }
@@ -0,0 +1,101 @@
+package com.guardianMed.patientRecordManagement.system;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guardianMed.patientRecordManagement.system.models.Patient;
+import com.guardianMed.patientRecordManagement.system.payload.response.PatientImportReport;
+import com.guardianMed.patientRecordManagement.system.services.PatientImportService;
+import com.guardianMed.patientRecordManagement.system.services.PatientNameIndex;
+import com.guardianMed.patientRecordManagement.system.services.PatientService;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import javax.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PatientImportServiceTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations bulkOperations = mock(BulkOperations.class);
+    private final List<List<Patient>> insertedBatches = new ArrayList<>();
+    private final PatientImportService importService = new PatientImportService(mongoTemplate, new PatientService(), new PatientNameIndex(null, 0),
+            new ObjectMapper(), Validation.buildDefaultValidatorFactory().getValidator(), 2, 100);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCsvImportReportsEveryRow() throws Exception {
+        when(mongoTemplate.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), eq(Patient.class))).thenReturn(bulkOperations);
+        when(bulkOperations.insert(anyList())).thenAnswer(invocation -> {
+            insertedBatches.add(new ArrayList<>((List<Patient>) invocation.getArgument(0)));
+            return bulkOperations;
+        });
+        // Second row of the first batch collides with an existing patient
+        when(bulkOperations.execute())
+                .thenThrow(new BulkOperationException("E11000", new MongoBulkWriteException(BulkWriteResult.unacknowledged(),
+                        List.of(new BulkWriteError(11000, "E11000 duplicate key", new BsonDocument(), 1)),
+                        null, new ServerAddress(), Set.of())))
+                .thenReturn(BulkWriteResult.unacknowledged());
+
+        String csv = "patientNIC,patientName,gender,age,address,email,contactNumber\n"
+                + "NIC1,Alice Perera,Female,34,\"12, Main Street\",alice@example.com,771234567\n"
+                + "NIC2,Bob Silva,Male,40,Kandy,bob@example.com,771234568\n"
+                + "NIC3,,Male,40,Kandy,not-an-email,771234569\n"
+                + "NIC4,Chamari,Female,abc,Galle,chamari@example.com,771234570\n"
+                + "NIC5,Dilan,Male,29,Matara,dilan@example.com,771234571\n";
+
+        PatientImportReport report = importService.importPatients(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), true);
+
+        assertEquals(5, report.getTotal());
+        assertEquals(2, report.getImported());
+        assertEquals(3, report.getFailed());
+        assertEquals(List.of(2, 3, 4, 5, 6), report.getRows().stream().map(PatientImportReport.RowResult::getRow).toList());
+
+        assertTrue(report.getRows().get(0).isImported());
+        assertEquals("Patient with NIC NIC2 already exists", report.getRows().get(1).getError());
+        assertTrue(report.getRows().get(2).getError().contains("email: Email should be valid"));
+        assertTrue(report.getRows().get(2).getError().contains("patientName"));
+        assertTrue(report.getRows().get(3).getError().startsWith("Unreadable row"));
+        assertTrue(report.getRows().get(4).isImported());
+
+        assertEquals(2, insertedBatches.size());
+        assertEquals("12, Main Street", insertedBatches.get(0).get(0).getAddress());
+        assertEquals("NIC5", insertedBatches.get(1).get(0).getPatientNIC());
+    }
+
+    @Test
+    void testNdjsonImport() throws Exception {
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(Patient.class))).thenReturn(bulkOperations);
+        when(bulkOperations.insert(anyList())).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(BulkWriteResult.unacknowledged());
+
+        String ndjson = "{\"patientNIC\":\"NIC1\",\"patientName\":\"Alice\",\"gender\":\"Female\",\"age\":34,"
+                + "\"address\":\"Colombo\",\"email\":\"alice@example.com\",\"contactNumber\":771234567}\n"
+                + "\n"
+                + "{not json}\n";
+
+        PatientImportReport report = importService.importPatients(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), false);
+
+        assertEquals(1, report.getImported());
+        assertEquals(1, report.getFailed());
+        assertEquals(3, report.getRows().get(1).getRow());
+        verify(bulkOperations, times(1)).execute();
+    }
+}
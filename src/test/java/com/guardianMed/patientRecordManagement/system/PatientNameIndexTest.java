@@ -0,0 +1,80 @@
+package com.guardianMed.patientRecordManagement.system;
+
+import com.guardianMed.patientRecordManagement.system.models.Patient;
+import com.guardianMed.patientRecordManagement.system.payload.response.PatientSearchResult;
+import com.guardianMed.patientRecordManagement.system.services.PatientNameIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PatientNameIndexTest {
+
+    private final PatientNameIndex index = new PatientNameIndex(null, 0);
+
+    @BeforeEach
+    void setUp() {
+        index.put("NIC1", "Nimal Perera");
+        index.put("NIC2", "Nimali Fernando");
+        index.put("NIC3", "Kamal Pereira");
+        index.put("NIC4", "Sunil Perera");
+        index.put("NIC5", "José Silva");
+    }
+
+    @Test
+    void testExactMatchesRankAbovePrefixAndFuzzyMatches() {
+        assertEquals(List.of("NIC1", "NIC2"), nics(index.search("nimal", 0, 10)));
+        // Exact "perera" first, then the one-typo "pereira"
+        assertEquals(List.of("NIC1", "NIC4", "NIC3"), nics(index.search("Perera", 0, 10)));
+    }
+
+    @Test
+    void testEveryQueryTokenMustMatch() {
+        assertEquals(List.of("NIC1"), nics(index.search("nim perera", 0, 10)));
+        assertEquals(List.of(), nics(index.search("sunil fernando", 0, 10)));
+    }
+
+    @Test
+    void testTyposAndAccentsAreTolerated() {
+        assertEquals(List.of("NIC4"), nics(index.search("sunli", 0, 10)));
+        assertEquals(List.of("NIC5"), nics(index.search("jose silva", 0, 10)));
+    }
+
+    @Test
+    void testPaging() {
+        PatientSearchResult first = index.search("per", 0, 2);
+        PatientSearchResult second = index.search("per", 1, 2);
+        assertEquals(3, first.getTotal());
+        assertEquals(2, first.getHits().size());
+        assertEquals(1, second.getHits().size());
+        assertFalse(nics(first).contains(second.getHits().get(0).getPatientNIC()));
+    }
+
+    @Test
+    void testUpdatesAndRemovalsAreVisible() {
+        index.put("NIC4", "Sunil Bandara");
+        assertEquals(List.of(), nics(index.search("sunil perera", 0, 10)));
+        assertEquals(List.of("NIC4"), nics(index.search("bandara", 0, 10)));
+
+        index.remove("NIC4");
+        assertEquals(List.of(), nics(index.search("bandara", 0, 10)));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    void testRebuildReplacesContents() {
+        Iterator<Patient> patients = List.of(
+                new Patient(null, "NIC9", "Ruwan Jayasuriya", "Male", 30, "Kandy", "r@example.com", 1L)).iterator();
+        assertEquals(1, index.rebuild(patients));
+        assertEquals(List.of("NIC9"), nics(index.search("ruwan", 0, 10)));
+        assertEquals(List.of(), nics(index.search("nimal", 0, 10)));
+    }
+
+    private static List<String> nics(PatientSearchResult result) {
+        return result.getHits().stream().map(PatientSearchResult.Hit::getPatientNIC).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,134 @@
+package com.guardianMed.patientRecordManagement.system;
+
+import com.guardianMed.patientRecordManagement.system.models.Bill;
+import com.guardianMed.patientRecordManagement.system.models.Patient;
+import com.guardianMed.patientRecordManagement.system.models.Prescription;
+import com.guardianMed.patientRecordManagement.system.payload.response.PatientOverview;
+import com.guardianMed.patientRecordManagement.system.services.PatientService;
+import com.guardianMed.patientRecordManagement.system.services.RecordArchiver;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PatientOverviewTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final RecordArchiver recordArchiver = mock(RecordArchiver.class);
+    private final PatientService patientService = new PatientService();
+
+    @BeforeEach
+    void setUp() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        when(mongoTemplate.getConverter()).thenReturn(converter);
+        when(mongoTemplate.getCollectionName(Patient.class)).thenReturn("patients");
+        when(mongoTemplate.getCollectionName(Prescription.class)).thenReturn("prescriptions");
+        when(mongoTemplate.getCollectionName(Bill.class)).thenReturn("bills");
+        when(recordArchiver.archiveCollection(Prescription.class)).thenReturn("prescriptions_archive");
+        when(recordArchiver.archiveCollection(Bill.class)).thenReturn("bills_archive");
+        ReflectionTestUtils.setField(patientService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(patientService, "recordArchiver", recordArchiver);
+    }
+
+    @Test
+    void testOverviewIsOneAggregationWithBothLookups() {
+        ObjectId patientId = new ObjectId();
+        Date billDate = Date.from(LocalDate.of(2024, 3, 2).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        Date archivedBillDate = Date.from(LocalDate.of(2021, 1, 5).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        Document result = new Document("_id", patientId)
+                .append("patientNIC", "NIC1")
+                .append("patientName", "Nimal Perera")
+                .append("age", 50)
+                .append("prescriptions", List.of(new Document()
+                        .append("recent", List.of(new Document("_id", new ObjectId())
+                                .append("patientNIC", "NIC1")
+                                .append("diagnosis", "Flu")
+                                .append("state", "ACTIVE")))
+                        .append("counts", List.of(new Document("_id", null).append("total", 3).append("active", 1)))))
+                .append("archivedPrescriptions", List.of(new Document()
+                        .append("recent", List.of(new Document("_id", new ObjectId())
+                                .append("patientNIC", "NIC1")
+                                .append("diagnosis", "Cough")
+                                .append("state", "INACTIVE")
+                                .append("date", archivedBillDate)))
+                        .append("counts", List.of(new Document("_id", null).append("total", 4).append("active", 0)))))
+                .append("bills", List.of(new Document("_id", null).append("count", 2).append("totalCents", 125050L).append("lastDate", billDate)))
+                .append("archivedBills", List.of(new Document("_id", null).append("count", 3).append("totalCents", 1000L).append("lastDate", archivedBillDate)));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("patients"), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(result), new Document()));
+
+        PatientOverview overview = patientService.getPatientOverview("NIC1", 1);
+
+        assertEquals(patientId.toHexString(), overview.getPatient().getId());
+        assertEquals("Nimal Perera", overview.getPatient().getPatientName());
+        // The archived prescription is the only dated one, so it sorts first and the limit of 1 keeps it
+        assertEquals(1, overview.getRecentPrescriptions().size());
+        assertEquals("Cough", overview.getRecentPrescriptions().get(0).getDiagnosis());
+        assertEquals(7, overview.getPrescriptionCount());
+        assertEquals(1, overview.getActivePrescriptionCount());
+        assertEquals(5, overview.getBillCount());
+        assertEquals(1260.5, overview.getBillTotal());
+        assertEquals(126050L, overview.getBillTotalCents());
+        assertEquals(LocalDate.of(2024, 3, 2), overview.getLastBillDate());
+
+        ArgumentCaptor<Aggregation> aggregation = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate, times(1)).aggregate(aggregation.capture(), eq("patients"), eq(Document.class));
+        List<Document> pipeline = aggregation.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertEquals(6, pipeline.size());
+        assertEquals("prescriptions", pipeline.get(2).get("$lookup", Document.class).getString("from"));
+        assertEquals("prescriptions_archive", pipeline.get(3).get("$lookup", Document.class).getString("from"));
+        assertEquals("bills", pipeline.get(4).get("$lookup", Document.class).getString("from"));
+        assertEquals("bills_archive", pipeline.get(5).get("$lookup", Document.class).getString("from"));
+    }
+
+    @Test
+    void testPatientWithoutPrescriptionsOrBills() {
+        Document result = new Document("_id", new ObjectId())
+                .append("patientNIC", "NIC2")
+                .append("prescriptions", List.of(new Document("recent", List.of()).append("counts", List.of())))
+                .append("archivedPrescriptions", List.of(new Document("recent", List.of()).append("counts", List.of())))
+                .append("bills", List.of())
+                .append("archivedBills", List.of());
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("patients"), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(result), new Document()));
+
+        PatientOverview overview = patientService.getPatientOverview("NIC2", 5);
+
+        assertTrue(overview.getRecentPrescriptions().isEmpty());
+        assertEquals(0, overview.getPrescriptionCount());
+        assertEquals(0, overview.getBillCount());
+        assertNull(overview.getLastBillDate());
+    }
+
+    @Test
+    void testUnknownPatient() {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("patients"), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(), new Document()));
+
+        assertNull(patientService.getPatientOverview("NIC9", 5));
+    }
+}
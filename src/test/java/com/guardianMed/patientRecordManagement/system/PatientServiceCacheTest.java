@@ -0,0 +1,102 @@
+package com.guardianMed.patientRecordManagement.system;
+
+import com.guardianMed.patientRecordManagement.system.models.Patient;
+import com.guardianMed.patientRecordManagement.system.models.Prescription;
+import com.guardianMed.patientRecordManagement.system.repositories.PatientRepository;
+import com.guardianMed.patientRecordManagement.system.repositories.PrescriptionRepository;
+import com.guardianMed.patientRecordManagement.system.services.PatientNameIndex;
+import com.guardianMed.patientRecordManagement.system.services.PatientService;
+import com.guardianMed.patientRecordManagement.system.services.RecordArchiver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PatientServiceCacheTest {
+
+    private final PatientRepository patientRepository = mock(PatientRepository.class);
+    private final PrescriptionRepository prescriptionRepository = mock(PrescriptionRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final RecordArchiver recordArchiver = mock(RecordArchiver.class);
+    private final PatientService patientService = new PatientService();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(patientService, "patientRepository", patientRepository);
+        ReflectionTestUtils.setField(patientService, "prescriptionRepository", prescriptionRepository);
+        ReflectionTestUtils.setField(patientService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(patientService, "eventPublisher", eventPublisher);
+        ReflectionTestUtils.setField(patientService, "recordArchiver", recordArchiver);
+        ReflectionTestUtils.setField(patientService, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(patientService, "patientNameIndex", new PatientNameIndex(null, 0));
+        ReflectionTestUtils.setField(patientService, "patientCacheEnabled", true);
+        ReflectionTestUtils.setField(patientService, "patientCacheMaxSize", 100L);
+        ReflectionTestUtils.setField(patientService, "patientCacheTtlSeconds", 60L);
+        patientService.initPatientCache();
+    }
+
+    @Test
+    void testRepeatedLookupsHitTheCache() {
+        when(patientRepository.findByPatientNIC("NIC1")).thenReturn(patient("NIC1", "old@example.com"));
+
+        assertEquals("old@example.com", patientService.getEmailByPatientNIC("NIC1"));
+        assertEquals("old@example.com", patientService.getPatientByPatientNIC("NIC1").getEmail());
+
+        verify(patientRepository, times(1)).findByPatientNIC("NIC1");
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "patientsByNic").tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    void testMissesAreNotCached() {
+        when(patientRepository.findByPatientNIC("NIC2")).thenReturn(null, patient("NIC2", "new@example.com"));
+
+        assertNull(patientService.getPatientByPatientNIC("NIC2"));
+        assertNotNull(patientService.getPatientByPatientNIC("NIC2"));
+    }
+
+    @Test
+    void testUpdateAndDeleteInvalidate() {
+        when(patientRepository.findByPatientNIC("NIC1")).thenReturn(patient("NIC1", "old@example.com"));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Patient.class)))
+                .thenReturn(patient("NIC1", "new@example.com"));
+        when(prescriptionRepository.findByPatientNIC("NIC1")).thenReturn(Collections.emptyList());
+        patientService.getPatientByPatientNIC("NIC1");
+
+        patientService.updatePatient("NIC1", patient("NIC1", "new@example.com"));
+        when(patientRepository.findByPatientNIC("NIC1")).thenReturn(patient("NIC1", "new@example.com"));
+        assertEquals("new@example.com", patientService.getEmailByPatientNIC("NIC1"));
+
+        patientService.deletePatient("NIC1");
+        when(patientRepository.findByPatientNIC("NIC1")).thenReturn(null);
+        assertNull(patientService.getPatientByPatientNIC("NIC1"));
+    }
+
+    @Test
+    void testPatientWithOnlyArchivedPrescriptionsIsKept() {
+        when(patientRepository.findByPatientNIC("NIC1")).thenReturn(patient("NIC1", "old@example.com"));
+        when(prescriptionRepository.findByPatientNIC("NIC1")).thenReturn(Collections.emptyList());
+        when(recordArchiver.hasArchivedForPatientNIC("NIC1", Prescription.class)).thenReturn(true);
+
+        assertThrows(IllegalStateException.class, () -> patientService.deletePatient("NIC1"));
+        verify(patientRepository, never()).delete(any(Patient.class));
+    }
+
+    private static Patient patient(String nic, String email) {
+        return new Patient(null, nic, "Patient " + nic, "Male", 50, "Street", email, 771234567L);
+    }
+}
@@ -0,0 +1,120 @@
+package com.guardianMed.patientRecordManagement.system;
+
+import com.guardianMed.patientRecordManagement.system.models.Patient;
+import com.guardianMed.patientRecordManagement.system.payload.requests.PatientRequest;
+import com.guardianMed.patientRecordManagement.system.repositories.PatientRepository;
+import com.guardianMed.patientRecordManagement.system.services.PatientNameIndex;
+import com.guardianMed.patientRecordManagement.system.services.PatientService;
+import com.guardianMed.patientRecordManagement.system.services.PatientUpdatedEvent;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Each patient write should cost exactly one Mongo round trip.
+ */
+class PatientServiceWriteTest {
+
+    private final PatientRepository patientRepository = mock(PatientRepository.class);
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final PatientNameIndex patientNameIndex = new PatientNameIndex(null, 0);
+    private final PatientService patientService = new PatientService();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(patientService, "patientRepository", patientRepository);
+        ReflectionTestUtils.setField(patientService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(patientService, "eventPublisher", eventPublisher);
+        ReflectionTestUtils.setField(patientService, "patientNameIndex", patientNameIndex);
+    }
+
+    @Test
+    void testCreateIsASingleInsert() {
+        when(patientRepository.insert(any(Patient.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Patient saved = patientService.savePatient(request("NIC1"));
+
+        assertEquals("NIC1", saved.getPatientNIC());
+        verify(patientRepository).insert(any(Patient.class));
+        verifyNoMoreInteractions(patientRepository);
+        verifyNoInteractions(mongoTemplate);
+        assertEquals(1, patientNameIndex.size());
+    }
+
+    @Test
+    void testDuplicateNicFromTheIndexIsRethrown() {
+        when(patientRepository.insert(any(Patient.class))).thenThrow(new DuplicateKeyException("E11000 duplicate key"));
+
+        DuplicateKeyException e = assertThrows(DuplicateKeyException.class, () -> patientService.savePatient(request("NIC1")));
+
+        assertTrue(e.getMessage().startsWith("Patient with NIC NIC1 already exists"));
+        assertEquals(0, patientNameIndex.size());
+    }
+
+    @Test
+    void testUpdateIsASingleFindAndModifyThatLeavesTheNicAlone() {
+        Patient changes = new Patient(null, "NIC1", "New Name", "Female", 41, "New Street", "new@example.com", 771234567L);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Patient.class)))
+                .thenReturn(changes);
+
+        assertSame(changes, patientService.updatePatient("NIC1", changes));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        verify(mongoTemplate).findAndModify(query.capture(), update.capture(), options.capture(), eq(Patient.class));
+        verifyNoMoreInteractions(mongoTemplate);
+        verifyNoInteractions(patientRepository);
+
+        assertEquals("NIC1", query.getValue().getQueryObject().get("patientNIC"));
+        Document set = (Document) update.getValue().getUpdateObject().get("$set");
+        assertEquals("New Name", set.get("patientName"));
+        assertFalse(set.containsKey("patientNIC"));
+        assertFalse(set.containsKey("_id"));
+        assertTrue(options.getValue().isReturnNew());
+        verify(eventPublisher).publishEvent(new PatientUpdatedEvent(changes));
+    }
+
+    @Test
+    void testUpdateOfUnknownNicReturnsNull() {
+        Patient changes = new Patient(null, "NIC9", "Name", "Male", 30, "Street", "a@example.com", 771234567L);
+
+        assertNull(patientService.updatePatient("NIC9", changes));
+        assertEquals(0, patientNameIndex.size());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void testBlankNicIsRejectedWithoutARoundTrip() {
+        Patient changes = new Patient(null, " ", "Name", "Male", 30, "Street", "a@example.com", 771234567L);
+
+        assertThrows(IllegalArgumentException.class, () -> patientService.updatePatient("NIC1", changes));
+        verifyNoInteractions(mongoTemplate, patientRepository);
+    }
+
+    private static PatientRequest request(String nic) {
+        PatientRequest request = new PatientRequest();
+        request.setPatientNIC(nic);
+        request.setPatientName("Patient " + nic);
+        request.setGender("Male");
+        request.setAge(50);
+        request.setAddress("Street");
+        request.setEmail("patient@example.com");
+        request.setContactNumber(771234567L);
+        return request;
+    }
+}
@@ -0,0 +1,365 @@
+package com.guardianMed.patientRecordManagement.system;
+
+import com.guardianMed.patientRecordManagement.system.models.Bill;
+import com.guardianMed.patientRecordManagement.system.models.CatalogMedication;
+import com.guardianMed.patientRecordManagement.system.models.Medication;
+import com.guardianMed.patientRecordManagement.system.models.Patient;
+import com.guardianMed.patientRecordManagement.system.models.Prescription;
+import com.guardianMed.patientRecordManagement.system.payload.requests.BillRequest;
+import com.guardianMed.patientRecordManagement.system.repositories.BillRepository;
+import com.guardianMed.patientRecordManagement.system.services.BillService;
+import com.guardianMed.patientRecordManagement.system.services.EmailService;
+import com.guardianMed.patientRecordManagement.system.services.MedicationCatalog;
+import com.guardianMed.patientRecordManagement.system.services.NotificationTemplates;
+import com.guardianMed.patientRecordManagement.system.services.PatientService;
+import com.guardianMed.patientRecordManagement.system.services.PrescriptionService;
+import com.guardianMed.patientRecordManagement.system.services.RecordArchiver;
+import com.guardianMed.patientRecordManagement.system.services.SequenceService;
+import com.mongodb.MongoException;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PrescriptionClaimTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BillRepository billRepository = mock(BillRepository.class);
+    private final RecordArchiver recordArchiver = mock(RecordArchiver.class);
+    private final MongoTemplate catalogTemplate = mock(MongoTemplate.class);
+    private final PatientService patientService = mock(PatientService.class);
+    private final EmailService emailService = mock(EmailService.class);
+    private final MedicationCatalog medicationCatalog = new MedicationCatalog(catalogTemplate, 100, 0);
+    private final PrescriptionService prescriptionService = new PrescriptionService();
+    private final BillService billService = new BillService();
+    private final Authentication authentication = new UsernamePasswordAuthenticationToken("admin1", null);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(prescriptionService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(prescriptionService, "recordArchiver", recordArchiver);
+        ReflectionTestUtils.setField(prescriptionService, "medicationCatalog", medicationCatalog);
+        ReflectionTestUtils.setField(billService, "prescriptionService", prescriptionService);
+        ReflectionTestUtils.setField(billService, "billRepository", billRepository);
+        ReflectionTestUtils.setField(billService, "patientService", patientService);
+        ReflectionTestUtils.setField(billService, "emailService", emailService);
+        ReflectionTestUtils.setField(billService, "medicationCatalog", medicationCatalog);
+        ReflectionTestUtils.setField(billService, "sequenceService", mock(SequenceService.class));
+        ReflectionTestUtils.setField(billService, "notificationTemplates", new NotificationTemplates("classpath*:notifications/"));
+        when(catalogTemplate.findAll(CatalogMedication.class)).thenReturn(List.of(new CatalogMedication("PARA500", "Paracetamol", 5000)));
+        medicationCatalog.reload();
+        when(billRepository.insert(any(Bill.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void testClaimIsOneConditionalFindAndModify() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Prescription.class)))
+                .thenReturn(prescription("P1", Prescription.State.INACTIVE));
+
+        Bill bill = billService.createBillFromRequest(authentication, request(), "P1");
+
+        assertEquals("NIC1", bill.getPatientNIC());
+        assertEquals(500.0, bill.getTotalAmount());
+        assertEquals(50000, bill.getTotalCents());
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).findAndModify(query.capture(), update.capture(), any(FindAndModifyOptions.class), eq(Prescription.class));
+        assertEquals(new Document("_id", "P1").append("state", Prescription.State.ACTIVE), query.getValue().getQueryObject());
+        assertEquals(new Document("$set", new Document("state", Prescription.State.INACTIVE)), update.getValue().getUpdateObject());
+        verify(mongoTemplate, never()).exists(any(Query.class), eq(Prescription.class));
+        verify(billRepository).insert(any(Bill.class));
+    }
+
+    @Test
+    void testMissingPrescription() {
+        when(mongoTemplate.exists(any(Query.class), eq(Prescription.class))).thenReturn(false);
+
+        assertThrows(NoSuchElementException.class, () -> billService.createBillFromRequest(authentication, request(), "P1"));
+        verifyNoInteractions(billRepository);
+    }
+
+    @Test
+    void testAlreadyBilledPrescription() {
+        when(mongoTemplate.exists(any(Query.class), eq(Prescription.class))).thenReturn(true);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> billService.createBillFromRequest(authentication, request(), "P1"));
+        assertEquals("Prescription is already inactive", e.getMessage());
+        verifyNoInteractions(billRepository);
+    }
+
+    @Test
+    void testArchivedPrescriptionCountsAsAlreadyBilled() {
+        when(mongoTemplate.exists(any(Query.class), eq(Prescription.class))).thenReturn(false);
+        when(recordArchiver.isArchived("P1", Prescription.class)).thenReturn(true);
+
+        assertThrows(IllegalStateException.class, () -> billService.createBillFromRequest(authentication, request(), "P1"));
+    }
+
+    @Test
+    void testClaimIsReleasedWhenTheBillInsertFails() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Prescription.class)))
+                .thenReturn(prescription("P1", Prescription.State.INACTIVE));
+        when(billRepository.insert(any(Bill.class))).thenThrow(new DataAccessResourceFailureException("down"));
+
+        assertThrows(DataAccessResourceFailureException.class,
+                () -> billService.createBillFromRequest(authentication, request(), "P1"));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(query.capture(), update.capture(), eq(Prescription.class));
+        assertEquals(new Document("_id", "P1").append("state", Prescription.State.INACTIVE), query.getValue().getQueryObject());
+        assertEquals(new Document("$set", new Document("state", Prescription.State.ACTIVE)), update.getValue().getUpdateObject());
+    }
+
+    @Test
+    void testClaimIsKeptWhenTheFailedInsertWasWritten() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Prescription.class)))
+                .thenReturn(prescription("P1", Prescription.State.INACTIVE));
+        // The write reached the server but the acknowledgement was lost
+        when(billRepository.insert(any(Bill.class))).thenThrow(new DataAccessResourceFailureException("timed out"));
+        when(billRepository.existsByCustomerBillId(anyString())).thenReturn(true);
+
+        assertThrows(DataAccessResourceFailureException.class,
+                () -> billService.createBillFromRequest(authentication, request(), "P1"));
+
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(Prescription.class));
+    }
+
+    @Test
+    void testConcurrentRequestsBillAPrescriptionOnce() throws Exception {
+        // Stands in for the server applying the conditional update to one document atomically
+        AtomicBoolean active = new AtomicBoolean(true);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Prescription.class)))
+                .thenAnswer(invocation -> active.compareAndSet(true, false) ? prescription("P1", Prescription.State.INACTIVE) : null);
+        when(mongoTemplate.exists(any(Query.class), eq(Prescription.class))).thenReturn(true);
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<Bill>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                try {
+                    return billService.createBillFromRequest(authentication, request(), "P1");
+                } catch (IllegalStateException e) {
+                    rejected.incrementAndGet();
+                    return null;
+                }
+            }));
+        }
+        start.countDown();
+        int billed = 0;
+        for (Future<Bill> result : results) {
+            if (result.get(10, TimeUnit.SECONDS) != null) {
+                billed++;
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(1, billed);
+        assertEquals(threads - 1, rejected.get());
+        verify(billRepository, times(1)).insert(any(Bill.class));
+    }
+
+    @Test
+    void testUpdateCannotReactivateAPrescriptionClaimedBeforeItsWrite() {
+        // Stands in for the server: a findAndModify applies to the document only when its query still matches
+        AtomicReference<Prescription.State> state = new AtomicReference<>(Prescription.State.ACTIVE);
+        AtomicBoolean claimRaced = new AtomicBoolean();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Prescription.class)))
+                .thenAnswer(invocation -> {
+                    Document set = ((Update) invocation.getArgument(1)).getUpdateObject().get("$set", Document.class);
+                    if (set.containsKey("diagnosis") && claimRaced.compareAndSet(false, true)) {
+                        // The claim lands after the update was requested but before it is applied
+                        prescriptionService.claimPrescription("P1");
+                    }
+                    Object wanted = ((Query) invocation.getArgument(0)).getQueryObject().get("state");
+                    if (!state.compareAndSet((Prescription.State) wanted, (Prescription.State) set.getOrDefault("state", wanted))) {
+                        return null;
+                    }
+                    return prescription("P1", state.get());
+                });
+        when(mongoTemplate.exists(any(Query.class), eq(Prescription.class))).thenReturn(true);
+        Prescription changes = new Prescription();
+        changes.setDiagnosis("Flu");
+        changes.setMedications(List.of("PARA500"));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> prescriptionService.updatePrescription("P1", changes));
+
+        assertEquals("Cannot update an inactive prescription.", e.getMessage());
+        assertEquals(Prescription.State.INACTIVE, state.get());
+        assertThrows(IllegalStateException.class, () -> prescriptionService.claimPrescription("P1"));
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(3)).findAndModify(any(Query.class), update.capture(), any(FindAndModifyOptions.class), eq(Prescription.class));
+        Document set = update.getAllValues().get(0).getUpdateObject().get("$set", Document.class);
+        assertEquals(List.of("date", "diagnosis", "medications", "instructions"), List.copyOf(set.keySet()));
+    }
+
+    @Test
+    void testUpdateOfAMissingPrescription() {
+        when(mongoTemplate.exists(any(Query.class), eq(Prescription.class))).thenReturn(false);
+
+        Prescription changes = new Prescription();
+        changes.setMedications(List.of());
+
+        assertThrows(NoSuchElementException.class, () -> prescriptionService.updatePrescription("P1", changes));
+    }
+
+    @Test
+    void testUpdateWithoutMedicationsKeepsTheStoredOnes() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Prescription.class)))
+                .thenReturn(prescription("P1", Prescription.State.ACTIVE));
+        Prescription changes = new Prescription();
+        changes.setDiagnosis("Flu");
+
+        prescriptionService.updatePrescription("P1", changes);
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).findAndModify(any(Query.class), update.capture(), any(FindAndModifyOptions.class), eq(Prescription.class));
+        Document set = update.getValue().getUpdateObject().get("$set", Document.class);
+        assertEquals("Flu", set.get("diagnosis"));
+        assertFalse(set.containsKey("medications"));
+    }
+
+    @Test
+    void testBillingReadsThePrescriptionOnceAndMailsItsPatient() {
+        Prescription claimed = prescription("P1", Prescription.State.INACTIVE);
+        Patient patient = new Patient();
+        patient.setEmail("nimal@example.com");
+        claimed.setPatient(patient);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Prescription.class)))
+                .thenReturn(claimed);
+
+        billService.createBillFromRequest(authentication, request(), "P1");
+
+        verify(mongoTemplate, times(1)).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Prescription.class));
+        verifyNoMoreInteractions(mongoTemplate);
+        verify(billRepository, times(1)).insert(any(Bill.class));
+        verifyNoMoreInteractions(billRepository);
+        verifyNoInteractions(patientService);
+        ArgumentCaptor<NotificationTemplates.Rendered> email = ArgumentCaptor.forClass(NotificationTemplates.Rendered.class);
+        verify(emailService).sendEmail(eq("nimal@example.com"), any(), email.capture());
+        assertTrue(email.getValue().text().contains("  Paracetamol x 10 @ Rs 50.00\n"));
+        assertTrue(email.getValue().text().contains("Total Amount (Rs): 500.00\n"));
+        assertTrue(email.getValue().html().contains("<td>Paracetamol</td>"));
+    }
+
+    @Test
+    void testClaimAndInsertCommitTogetherInATransaction() {
+        PlatformTransactionManager transactionManager = transactionManager();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Prescription.class)))
+                .thenReturn(prescription("P1", Prescription.State.INACTIVE));
+
+        billService.createBillFromRequest(authentication, request(), "P1");
+
+        verify(transactionManager).getTransaction(any(TransactionDefinition.class));
+        verify(transactionManager).commit(any());
+        verify(transactionManager, never()).rollback(any());
+    }
+
+    @Test
+    void testFailedInsertRollsTheClaimBackInsteadOfReleasingIt() {
+        PlatformTransactionManager transactionManager = transactionManager();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Prescription.class)))
+                .thenReturn(prescription("P1", Prescription.State.INACTIVE));
+        when(billRepository.insert(any(Bill.class))).thenThrow(new DataAccessResourceFailureException("down"));
+
+        assertThrows(DataAccessResourceFailureException.class,
+                () -> billService.createBillFromRequest(authentication, request(), "P1"));
+
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(Prescription.class));
+    }
+
+    @Test
+    void testTransientTransactionErrorsAreRetried() {
+        PlatformTransactionManager transactionManager = transactionManager();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Prescription.class)))
+                .thenReturn(prescription("P1", Prescription.State.INACTIVE));
+        MongoException writeConflict = new MongoException(112, "WriteConflict");
+        writeConflict.addLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL);
+        when(billRepository.insert(any(Bill.class)))
+                .thenThrow(new UncategorizedMongoDbException("WriteConflict", writeConflict))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        Bill bill = billService.createBillFromRequest(authentication, request(), "P1");
+
+        assertEquals("NIC1", bill.getPatientNIC());
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
+        verify(billRepository, times(2)).insert(any(Bill.class));
+    }
+
+    @Test
+    void testArchivedBillsCanBeDeleted() {
+        ReflectionTestUtils.setField(billService, "recordArchiver", recordArchiver);
+        when(billRepository.findById("B1")).thenReturn(Optional.empty());
+        when(recordArchiver.deleteArchived("B1", Bill.class)).thenReturn(true);
+
+        assertEquals(HttpStatus.OK, billService.deleteBill("B1").getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, billService.deleteBill("B2").getStatusCode());
+    }
+
+    private PlatformTransactionManager transactionManager() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any(TransactionDefinition.class))).thenAnswer(invocation -> new SimpleTransactionStatus());
+        ReflectionTestUtils.setField(billService, "transactionManager", transactionManager);
+        billService.initTransactions();
+        return transactionManager;
+    }
+
+    private static Prescription prescription(String id, Prescription.State state) {
+        Prescription prescription = new Prescription();
+        prescription.setId(id);
+        prescription.setPatientNIC("NIC1");
+        prescription.setPatientName("Nimal Perera");
+        prescription.setMedications(List.of("Paracetamol"));
+        prescription.setState(state);
+        return prescription;
+    }
+
+    private static BillRequest request() {
+        Medication medication = new Medication();
+        medication.setName("Paracetamol");
+        medication.setQuantity(10);
+        BillRequest request = new BillRequest();
+        request.setMedications(List.of(medication));
+        return request;
+    }
+}
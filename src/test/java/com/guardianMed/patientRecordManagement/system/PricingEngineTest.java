@@ -0,0 +1,149 @@
+package com.guardianMed.patientRecordManagement.system;
+
+import com.guardianMed.patientRecordManagement.system.services.PricingEngine;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Randomized checks of PricingEngine against the same calculation done in BigDecimal.
+ */
+class PricingEngineTest {
+
+    private static final BigDecimal BASIS_POINTS = BigDecimal.valueOf(PricingEngine.BASIS_POINTS);
+
+    @Test
+    void testTotalsMatchBigDecimalExactly() {
+        Random random = new Random(20240601L);
+        PricingEngine.LineItems items = new PricingEngine.LineItems(4);
+        for (int run = 0; run < 20_000; run++) {
+            items.clear();
+            int lines = 1 + random.nextInt(40);
+            long[] prices = new long[lines];
+            int[] quantities = new int[lines];
+            BigDecimal subtotal = BigDecimal.ZERO;
+            for (int i = 0; i < lines; i++) {
+                prices[i] = random.nextInt(run % 2 == 0 ? 1_000 : 50_000_000);
+                quantities[i] = random.nextInt(1_000);
+                items.add(prices[i], quantities[i]);
+                subtotal = subtotal.add(BigDecimal.valueOf(prices[i]).multiply(BigDecimal.valueOf(quantities[i])));
+            }
+            int discountBasisPoints = random.nextInt(PricingEngine.BASIS_POINTS + 1);
+            int[] taxBasisPoints = new int[random.nextInt(4)];
+            for (int i = 0; i < taxBasisPoints.length; i++) {
+                taxBasisPoints[i] = random.nextInt(3_000);
+            }
+
+            PricingEngine.Totals totals = new PricingEngine.Totals(taxBasisPoints.length);
+            PricingEngine.price(items, discountBasisPoints, taxBasisPoints, totals);
+
+            BigDecimal discount = percent(subtotal, discountBasisPoints);
+            BigDecimal taxable = subtotal.subtract(discount);
+            BigDecimal tax = BigDecimal.ZERO;
+            for (int i = 0; i < taxBasisPoints.length; i++) {
+                BigDecimal line = percent(taxable, taxBasisPoints[i]);
+                assertEquals(line.longValueExact(), totals.getTaxLineCents(i));
+                tax = tax.add(line);
+            }
+            assertEquals(subtotal.longValueExact(), totals.getSubtotalCents());
+            assertEquals(discount.longValueExact(), totals.getDiscountCents());
+            assertEquals(tax.longValueExact(), totals.getTaxCents());
+            assertEquals(taxable.add(tax).longValueExact(), totals.getTotalCents());
+            assertTrue(totals.getDiscountCents() >= 0 && totals.getDiscountCents() <= totals.getSubtotalCents());
+        }
+    }
+
+    @Test
+    void testSubtotalDoesNotDependOnLineOrder() {
+        Random random = new Random(7L);
+        for (int run = 0; run < 1_000; run++) {
+            int lines = 2 + random.nextInt(30);
+            PricingEngine.LineItems forward = new PricingEngine.LineItems(lines);
+            PricingEngine.LineItems backward = new PricingEngine.LineItems(lines);
+            long[] prices = random.longs(lines, 0, 10_000_000).toArray();
+            int[] quantities = random.ints(lines, 0, 500).toArray();
+            for (int i = 0; i < lines; i++) {
+                forward.add(prices[i], quantities[i]);
+                backward.add(prices[lines - 1 - i], quantities[lines - 1 - i]);
+            }
+            assertEquals(PricingEngine.subtotal(forward), PricingEngine.subtotal(backward));
+        }
+    }
+
+    @Test
+    void testDoubleArithmeticDriftsWhereCentsDoNot() {
+        // How bill totals used to be summed: price * quantity as doubles
+        double total = 0.0;
+        PricingEngine.LineItems items = new PricingEngine.LineItems(1);
+        for (int i = 0; i < 1_000; i++) {
+            total += 0.10 * 3;
+            items.add(PricingEngine.toCents("0.10"), 3);
+        }
+        assertNotEquals(300.0, total);
+        assertEquals(30_000, PricingEngine.subtotal(items));
+        assertEquals(1_000, items.size());
+    }
+
+    @Test
+    void testRoundingAndConversions() {
+        assertEquals(1, PricingEngine.portion(5, 1_000));
+        assertEquals(0, PricingEngine.portion(4, 1_000));
+        assertEquals(18, PricingEngine.portion(99, 1_800));
+        assertEquals(1234, PricingEngine.toCents("12.34"));
+        assertEquals(1200, PricingEngine.toCents(" 12 "));
+        assertEquals(29, PricingEngine.toCents(0.285));
+        assertThrows(ArithmeticException.class, () -> PricingEngine.toCents("1.005"));
+        assertEquals(12.34, PricingEngine.toMajor(1234));
+    }
+
+    @Test
+    void testInvalidInputIsRejected() {
+        PricingEngine.LineItems items = new PricingEngine.LineItems(1);
+        assertThrows(IllegalArgumentException.class, () -> items.add(-1, 1));
+        assertThrows(IllegalArgumentException.class, () -> items.add(1, -1));
+        items.add(Long.MAX_VALUE / 2, 3);
+        assertThrows(ArithmeticException.class, () -> PricingEngine.subtotal(items));
+
+        PricingEngine.LineItems small = new PricingEngine.LineItems(1);
+        small.add(100, 1);
+        PricingEngine.Totals totals = new PricingEngine.Totals(0);
+        assertThrows(IllegalArgumentException.class, () -> PricingEngine.price(small, 10_001, new int[0], totals));
+        assertThrows(IllegalArgumentException.class, () -> PricingEngine.price(small, 0, new int[]{1_800}, totals));
+    }
+
+    @Test
+    void testPricingDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        PricingEngine.LineItems items = new PricingEngine.LineItems(64);
+        for (int i = 0; i < 64; i++) {
+            items.add(100 + i, 1 + i);
+        }
+        int[] taxes = {1_800, 200};
+        PricingEngine.Totals totals = new PricingEngine.Totals(taxes.length);
+        long checksum = 0;
+        for (int i = 0; i < 20_000; i++) {
+            PricingEngine.price(items, i % 1_000, taxes, totals);
+            checksum += totals.getTotalCents();
+        }
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 20_000; i++) {
+            PricingEngine.price(items, i % 1_000, taxes, totals);
+            checksum += totals.getTotalCents();
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertTrue(checksum > 0);
+        // Allow for the measurement itself; 20000 calls allocating even one object each would be far above this
+        assertTrue(allocated < 10_000, "allocated " + allocated + " bytes");
+    }
+
+    private static BigDecimal percent(BigDecimal amount, int basisPoints) {
+        return amount.multiply(BigDecimal.valueOf(basisPoints)).divide(BASIS_POINTS, 0, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,155 @@
+package com.guardianMed.patientRecordManagement.system;
+
+import com.guardianMed.patientRecordManagement.system.models.Bill;
+import com.guardianMed.patientRecordManagement.system.models.Prescription;
+import com.guardianMed.patientRecordManagement.system.repositories.BillRepository;
+import com.guardianMed.patientRecordManagement.system.services.BillService;
+import com.guardianMed.patientRecordManagement.system.services.RecordArchiver;
+import com.mongodb.client.result.DeleteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class RecordArchiverTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations prescriptionCopy = mock(BulkOperations.class);
+    private final BulkOperations billCopy = mock(BulkOperations.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RecordArchiver archiver = new RecordArchiver(mongoTemplate, meterRegistry, true, 730, 2, 0, 100, 60);
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.getCollectionName(Prescription.class)).thenReturn("prescriptions");
+        when(mongoTemplate.getCollectionName(Bill.class)).thenReturn("bills");
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, "prescriptions_archive")).thenReturn(prescriptionCopy);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, "bills_archive")).thenReturn(billCopy);
+        // Removes everything the _id filter names, like the server would when nothing changed in between
+        when(mongoTemplate.remove(any(Query.class), anyString()))
+                .thenAnswer(invocation -> DeleteResult.acknowledged(idsIn(invocation.getArgument(0)).size()));
+    }
+
+    @Test
+    void testDueRecordsAreCopiedBeforeTheyAreRemovedInBatches() {
+        // Two full prescription batches, then a short one; one short bill batch
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("prescriptions")))
+                .thenReturn(documents(2)).thenReturn(documents(2)).thenReturn(documents(1));
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("bills")))
+                .thenReturn(documents(1));
+
+        int moved = archiver.archiveOnce(LocalDate.of(2026, 1, 1));
+
+        assertEquals(6, moved);
+        verify(prescriptionCopy, times(5)).replaceOne(any(Query.class), any(Document.class), any(FindAndReplaceOptions.class));
+        verify(billCopy, times(1)).replaceOne(any(Query.class), any(Document.class), any(FindAndReplaceOptions.class));
+        InOrder order = inOrder(prescriptionCopy, mongoTemplate);
+        order.verify(prescriptionCopy).execute();
+        order.verify(mongoTemplate).remove(any(Query.class), eq("prescriptions"));
+
+        ArgumentCaptor<Query> due = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(3)).find(due.capture(), eq(Document.class), eq("prescriptions"));
+        Document filter = due.getValue().getQueryObject();
+        assertEquals("INACTIVE", filter.get("state"));
+        assertEquals(new Date(LocalDate.of(2024, 1, 2).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli()),
+                filter.get("date", Document.class).get("$lt"));
+        assertEquals(2, due.getValue().getLimit());
+        assertEquals(5.0, meterRegistry.get("records.archived").tag("collection", "prescriptions").counter().count());
+    }
+
+    @Test
+    void testRunStopsAtTheMaximum() {
+        RecordArchiver capped = new RecordArchiver(mongoTemplate, meterRegistry, true, 730, 2, 0, 3, 60);
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("prescriptions")))
+                .thenReturn(documents(2)).thenReturn(documents(1));
+
+        assertEquals(3, capped.archiveOnce(LocalDate.of(2026, 1, 1)));
+
+        ArgumentCaptor<Query> due = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).find(due.capture(), eq(Document.class), eq("prescriptions"));
+        assertEquals(1, due.getValue().getLimit());
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Document.class), eq("bills"));
+    }
+
+    @Test
+    void testRecordsThatChangedStayHotAndLeaveNoArchiveCopy() {
+        List<Document> batch = documents(2);
+        Object released = batch.get(1).get("_id");
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("prescriptions"))).thenReturn(batch).thenReturn(List.of());
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("bills"))).thenReturn(List.of());
+        // The second prescription was released back to ACTIVE after it was read, so the due filter skips it
+        when(mongoTemplate.remove(any(Query.class), eq("prescriptions"))).thenReturn(DeleteResult.acknowledged(1));
+        when(mongoTemplate.findDistinct(any(Query.class), eq("_id"), eq("prescriptions"), eq(Object.class)))
+                .thenReturn(List.of(released));
+
+        assertEquals(1, archiver.archiveOnce(LocalDate.of(2026, 1, 1)));
+
+        ArgumentCaptor<Query> cleanup = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).remove(cleanup.capture(), eq("prescriptions_archive"));
+        assertEquals(List.of(released), idsIn(cleanup.getValue()));
+        assertEquals(1.0, meterRegistry.get("records.archived").tag("collection", "prescriptions").counter().count());
+    }
+
+    @Test
+    void testNothingDue() {
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), anyString())).thenReturn(List.of());
+
+        assertEquals(0, archiver.archiveOnce(LocalDate.of(2026, 1, 1)));
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), anyString());
+        verify(mongoTemplate, never()).remove(any(Query.class), anyString());
+    }
+
+    @Test
+    void testBillReadsFallBackToTheArchive() {
+        BillRepository billRepository = mock(BillRepository.class);
+        BillService billService = new BillService();
+        ReflectionTestUtils.setField(billService, "billRepository", billRepository);
+        ReflectionTestUtils.setField(billService, "recordArchiver", archiver);
+        Bill archived = new Bill();
+        archived.setId("B1");
+        when(billRepository.findById("B1")).thenReturn(Optional.empty());
+        when(mongoTemplate.findById("B1", Bill.class, "bills_archive")).thenReturn(archived);
+        when(billRepository.findAllByPatientNIC("NIC1")).thenReturn(List.of(new Bill()));
+        when(mongoTemplate.find(any(Query.class), eq(Bill.class), eq("bills_archive"))).thenReturn(List.of(archived));
+
+        assertSame(archived, billService.getBillById("B1"));
+        assertEquals(2, billService.getBillsByPatientNIC("NIC1").size());
+    }
+
+    private static List<Object> idsIn(Query query) {
+        Document filter = query.getQueryObject();
+        if (filter.containsKey("$and")) {
+            filter = filter.getList("$and", Document.class).get(0);
+        }
+        return filter.get("_id", Document.class).getList("$in", Object.class);
+    }
+
+    private static List<Document> documents(int count) {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            documents.add(new Document("_id", new ObjectId()).append("patientNIC", "NIC" + i));
+        }
+        return documents;
+    }
+}
@@ -0,0 +1,115 @@
+package com.guardianMed.patientRecordManagement.system;
+
+import com.guardianMed.patientRecordManagement.system.services.BillService;
+import com.guardianMed.patientRecordManagement.system.services.SequenceService;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class SequenceServiceTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    // Stands in for the counters collection: $inc on a document is atomic on the server
+    private final Map<Object, Long> counters = new ConcurrentHashMap<>();
+    private final AtomicInteger roundTrips = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Document.class), eq("counters"))).thenAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            Update update = invocation.getArgument(1);
+            FindAndModifyOptions options = invocation.getArgument(2);
+            assertTrue(options.isUpsert() && options.isReturnNew());
+            long by = update.getUpdateObject().get("$inc", Document.class).get("value", Number.class).longValue();
+            roundTrips.incrementAndGet();
+            return new Document("value", counters.merge(query.getQueryObject().get("_id"), by, Long::sum));
+        });
+    }
+
+    @Test
+    void testNumbersAreLeasedInBlocks() {
+        SequenceService sequences = new SequenceService(mongoTemplate, 10);
+
+        for (long expected = 1; expected <= 25; expected++) {
+            assertEquals(expected, sequences.next("bills"));
+        }
+        assertEquals(1, sequences.next("other"));
+
+        assertEquals(4, roundTrips.get());
+        assertEquals(30L, counters.get("bills"));
+        assertThrows(IllegalArgumentException.class, () -> new SequenceService(mongoTemplate, 0));
+    }
+
+    @Test
+    void testNodesAndThreadsNeverShareANumber() throws Exception {
+        List<SequenceService> nodes = List.of(new SequenceService(mongoTemplate, 50), new SequenceService(mongoTemplate, 50));
+        int threads = 8;
+        int perThread = 5_000;
+        Set<Long> seen = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            SequenceService node = nodes.get(t % nodes.size());
+            results.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    assertTrue(seen.add(node.next("bills")));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertEquals(threads * perThread, seen.size());
+        // One round trip per block, plus at most one partly used block per node
+        assertTrue(roundTrips.get() <= threads * perThread / 50 + nodes.size(), "round trips: " + roundTrips.get());
+    }
+
+    @Test
+    void testBillIdsUseTheBranchAndDayAsTheirOwnSeries() {
+        BillService billService = new BillService();
+        ReflectionTestUtils.setField(billService, "sequenceService", new SequenceService(mongoTemplate, 100));
+        ReflectionTestUtils.setField(billService, "billIdBranch", " COL ");
+        ReflectionTestUtils.setField(billService, "billIdPerDay", true);
+        String today = LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE);
+
+        assertEquals("BILL-COL-" + today + "-000001", billService.generateBillId());
+        assertEquals("BILL-COL-" + today + "-000002", billService.generateBillId());
+        assertEquals(100L, counters.get("BILL-COL-" + today + "-"));
+        assertEquals(1, roundTrips.get());
+
+        ReflectionTestUtils.setField(billService, "billIdBranch", "");
+        ReflectionTestUtils.setField(billService, "billIdPerDay", false);
+        assertEquals("BILL-000001", billService.generateBillId());
+    }
+}
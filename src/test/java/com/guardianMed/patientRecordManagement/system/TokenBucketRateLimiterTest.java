@@ -0,0 +1,101 @@
+package com.guardianMed.patientRecordManagement.system;
+
+import com.guardianMed.patientRecordManagement.system.security.TokenBucketRateLimiter;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketRateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void testBurstThenSustainedRate() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(60, 3, 100);
+        long now = 1_000 * SECOND;
+
+        assertEquals(0, limiter.tryAcquire("ip:1", now));
+        assertEquals(0, limiter.tryAcquire("ip:1", now));
+        assertEquals(0, limiter.tryAcquire("ip:1", now));
+        long wait = limiter.tryAcquire("ip:1", now);
+        assertEquals(SECOND, wait);
+
+        // Other keys have their own bucket
+        assertEquals(0, limiter.tryAcquire("ip:2", now));
+
+        // One token per second refills
+        assertEquals(0, limiter.tryAcquire("ip:1", now + SECOND));
+        assertTrue(limiter.tryAcquire("ip:1", now + SECOND) > 0);
+    }
+
+    @Test
+    void testIdleKeysAreEvicted() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(60, 2, 2);
+        long now = 1_000 * SECOND;
+        limiter.tryAcquire("a", now);
+        limiter.tryAcquire("b", now);
+        assertEquals(2, limiter.size());
+
+        // Both buckets are full again after a second, so the sweep drops them and frees room for new keys
+        limiter.evictIdle(now + SECOND);
+        assertEquals(0, limiter.size());
+
+        limiter.tryAcquire("c", now + SECOND);
+        limiter.tryAcquire("d", now + SECOND);
+        assertEquals(2, limiter.size());
+        limiter.evictIdle(now + 10 * SECOND);
+        assertEquals(0, limiter.size());
+    }
+
+    @Test
+    void testKeysBeyondTheCapShareOneBucket() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(60, 2, 2);
+        long now = System.nanoTime();
+        limiter.tryAcquire("a", now);
+        limiter.tryAcquire("b", now);
+
+        // The map is full: every new key spends from the same overflow bucket and nothing is added
+        assertEquals(0, limiter.tryAcquire("c", now));
+        assertEquals(0, limiter.tryAcquire("d", now));
+        assertTrue(limiter.tryAcquire("e", now) > 0);
+        assertEquals(2, limiter.size());
+
+        // Tracked keys keep their own bucket
+        assertEquals(0, limiter.tryAcquire("a", now));
+    }
+
+    @Test
+    void testConcurrentNewKeysNeverExceedTheCap() throws InterruptedException {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(60, 5, 100);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 10_000; i++) {
+            String key = "ip:" + i;
+            pool.execute(() -> limiter.tryAcquire(key));
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(100, limiter.size());
+    }
+
+    @Test
+    void testConcurrentCallersNeverExceedBurst() throws InterruptedException {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 50, 100);
+        AtomicInteger allowed = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 1_000; i++) {
+            pool.execute(() -> {
+                if (limiter.tryAcquire("user:admin") == 0) {
+                    allowed.incrementAndGet();
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(50, allowed.get());
+    }
+}
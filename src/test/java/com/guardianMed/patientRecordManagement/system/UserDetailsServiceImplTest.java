@@ -0,0 +1,56 @@
+package com.guardianMed.patientRecordManagement.system;
+
+import com.guardianMed.patientRecordManagement.system.models.User;
+import com.guardianMed.patientRecordManagement.system.repositories.UserRepository;
+import com.guardianMed.patientRecordManagement.system.services.UserDetailsServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+class UserDetailsServiceImplTest {
+
+    private UserRepository userRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private UserDetailsServiceImpl userDetailsService;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        userDetailsService = new UserDetailsServiceImpl(userRepository, meterRegistry, true, 100, 300);
+        User user = new User("admin", "admin@example.com", "hash");
+        user.setId("1");
+        when(userRepository.findByUsername("admin")).thenReturn(Optional.of(user));
+    }
+
+    @Test
+    void testRepeatedLoadsHitCache() {
+        userDetailsService.loadUserByUsername("admin");
+        userDetailsService.loadUserByUsername("admin");
+        verify(userRepository, times(1)).findByUsername("admin");
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "userDetails").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void testEvictForcesReload() {
+        userDetailsService.loadUserByUsername("admin");
+        userDetailsService.evict("admin");
+        userDetailsService.loadUserByUsername("admin");
+        verify(userRepository, times(2)).findByUsername("admin");
+    }
+
+    @Test
+    void testUnknownUserIsNotCached() {
+        when(userRepository.findByUsername("ghost")).thenReturn(Optional.empty());
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("ghost"));
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("ghost"));
+        verify(userRepository, times(2)).findByUsername("ghost");
+    }
+}